@@ -0,0 +1,263 @@
+/*
+ * This class is responsible for the append-only change log that sits next to the catalogue CSV.
+ * Adds, edits and deletes are appended as small records instead of rewriting the whole CSV,
+ * the log is replayed over the base CSV when the catalogue is loaded, and a compaction step
+ * folds the log back into the CSV once the log grows past a set size.
+ * Each record is itself a CSV record, so a quoted field may span lines; the log and the CSV are split
+ * into records and ids with CatalogueCsvReader's quoting rules rather than line by line.
+ */
+package furnitureCatalogue;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class CatalogueChangeLog {
+    /**
+     * Default size in bytes the log may reach before it is folded back into the CSV.
+     */
+    static final long DEFAULT_COMPACT_THRESHOLD = 1L << 20;
+
+    static final char ADD = 'A';
+    static final char EDIT = 'E';
+    static final char DELETE = 'D';
+
+    private final File csvFile;
+    private final File logFile;
+    private long compactThreshold;
+    // Set once a record cut short by a crash has been trimmed from the end of the log
+    private boolean tailChecked;
+
+    /**
+     * A single change record. For adds and edits, line holds the full CSV line.
+     */
+    static class Record {
+        final char op;
+        final String id;
+        final String line;
+
+        Record(char op, String id, String line) {
+            this.op = op;
+            this.id = id;
+            this.line = line;
+        }
+
+        /**
+         * Returns the record as it is written to the log, without the line break.
+         */
+        String format() {
+            switch (op) {
+                case ADD:
+                    return ADD + "," + line;
+                case EDIT:
+                    return EDIT + "," + id + "," + line;
+                default:
+                    return DELETE + "," + id;
+            }
+        }
+    }
+
+    CatalogueChangeLog(File csvFile) {
+        this.csvFile = csvFile;
+        this.logFile = new File(csvFile.getPath() + ".log");
+        this.compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+    }
+
+    /**
+     * Returns true if this log belongs to the given CSV file.
+     */
+    boolean isFor(File file) {
+        return csvFile.equals(file);
+    }
+
+    File getLogFile() {
+        return logFile;
+    }
+
+    void setCompactThreshold(long bytes) {
+        this.compactThreshold = bytes;
+    }
+
+    void appendAdd(String line) throws IOException {
+        append(List.of(new Record(ADD, idOf(line), line)));
+    }
+
+    void appendEdit(String lineID, String line) throws IOException {
+        append(List.of(new Record(EDIT, lineID, line)));
+    }
+
+    void appendDelete(String lineID) throws IOException {
+        append(List.of(new Record(DELETE, lineID, null)));
+    }
+
+    /**
+     * Appends a batch of records in one sequential write, forces it to disk, and compacts the log
+     * if it has grown past the threshold.
+     */
+    synchronized void append(List<Record> records) throws IOException {
+        if (!tailChecked) {
+            trimTornTail();
+            tailChecked = true;
+        }
+        try (FileOutputStream out = new FileOutputStream(logFile, true);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            for (Record record : records) {
+                writer.write(record.format());
+                writer.newLine();
+            }
+            writer.flush();
+            out.getChannel().force(false);
+        }
+        if (logFile.length() > compactThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Cuts a record left incomplete by an interrupted write off the end of the log, so the records
+     * appended after it are not read as part of it (an unclosed quote would swallow them).
+     */
+    private void trimTornTail() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        String text = read(logFile);
+        long complete = text.substring(0, CatalogueCsvReader.completeLength(text))
+                .getBytes(StandardCharsets.UTF_8).length;
+        if (complete < logFile.length()) {
+            try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Reads a whole file as UTF-8. Bytes torn mid-character are replaced rather than failing the read.
+     */
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads every record in the log, in the order they were written.
+     */
+    synchronized List<Record> readRecords() throws IOException {
+        List<Record> records = new ArrayList<>();
+        if (!logFile.exists()) {
+            return records;
+        }
+        for (String text : CatalogueCsvReader.splitRecords(read(logFile))) {
+            Record record = parseRecord(text);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static Record parseRecord(String line) {
+        if (line.length() < 3 || line.charAt(1) != ',') {
+            return null; // Torn or blank line from an interrupted write
+        }
+        char op = line.charAt(0);
+        String rest = line.substring(2);
+        switch (op) {
+            case ADD:
+                return new Record(op, idOf(rest), rest);
+            case EDIT:
+                int comma = CatalogueCsvReader.fieldEnd(rest, 0);
+                if (comma >= rest.length()) {
+                    return null;
+                }
+                return new Record(op, idOf(rest), rest.substring(comma + 1));
+            case DELETE:
+                return new Record(op, rest, null);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the id (first field, unquoted and trimmed) of a CSV record.
+     */
+    static String idOf(String line) {
+        return CatalogueCsvReader.firstField(line).trim();
+    }
+
+    /**
+     * Applies the records to a map of CSV lines keyed by id, keeping the position of edited lines.
+     */
+    static void apply(List<Record> records, LinkedHashMap<String, String> lines) {
+        for (Record r : records) {
+            switch (r.op) {
+                case ADD:
+                    lines.put(r.id, r.line);
+                    break;
+                case EDIT:
+                    if (lines.containsKey(r.id)) {
+                        String newID = idOf(r.line);
+                        if (!newID.equals(r.id)) {
+                            lines.remove(r.id);
+                        }
+                        lines.put(newID, r.line);
+                    }
+                    break;
+                case DELETE:
+                    lines.remove(r.id);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Folds the log back into the CSV. The new CSV is written to a temporary file and moved over
+     * the old one before the log is removed, so a crash at any point leaves a replayable state.
+     */
+    synchronized void compact() throws IOException {
+        List<Record> records = readRecords();
+        if (records.isEmpty()) {
+            Files.deleteIfExists(logFile.toPath());
+            return;
+        }
+        List<String> csv = CatalogueCsvReader.splitRecords(read(csvFile));
+        String header = csv.isEmpty() ? null : csv.get(0);
+        LinkedHashMap<String, String> lines = new LinkedHashMap<>();
+        for (String line : csv.subList(Math.min(1, csv.size()), csv.size())) {
+            lines.put(idOf(line), line);
+        }
+        apply(records, lines);
+
+        File parent = csvFile.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(csvFile.getName(), ".tmp", parent);
+        try (FileOutputStream out = new FileOutputStream(temp);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            if (header != null) {
+                writer.write(header);
+                writer.newLine();
+            }
+            for (Map.Entry<String, String> e : lines.entrySet()) {
+                writer.write(e.getValue());
+                writer.newLine();
+            }
+            writer.flush();
+            // On disk before it replaces the CSV, so the move never exposes a partly written file
+            out.getChannel().force(true);
+        }
+        try {
+            Files.move(temp.toPath(), csvFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), csvFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(logFile.toPath());
+    }
+}
@@ -0,0 +1,582 @@
+/*
+ * This class is responsible for parsing the catalogue CSV.
+ * The file is memory-mapped and scanned byte by byte, following RFC 4180 quoting rules
+ * (quoted fields may contain commas, line breaks and doubled quotes).
+ * Rows are put straight into the catalogue and the column widths are computed in the same pass.
+ * Large files can also be read in parallel: the file is split into byte ranges aligned to line breaks,
+ * each range is parsed on a fork-join pool, and the partial results are merged. If a range boundary
+ * lands on a line break inside a quoted field, or a range fails to parse, the file is read sequentially.
+ */
+package furnitureCatalogue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+class CatalogueCsvReader {
+    /**
+     * Largest region mapped at once. Bigger files are read through a sliding window.
+     */
+    static final int MAX_WINDOW = 1 << 30;
+    /**
+     * Byte ranges smaller than this are not split any further when reading in parallel.
+     */
+    static final int MIN_CHUNK = 4 << 20;
+
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private byte[] scratch = new byte[256];
+    private String[] headers;
+    private int rows;
+
+    /**
+     * Throughput figures for one load of the catalogue.
+     */
+    static class LoadStats {
+        final int rows;
+        final long bytes;
+        final long nanos;
+        final int threads;
+
+        LoadStats(int rows, long bytes, long nanos, int threads) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.threads = threads;
+        }
+
+        double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Loaded %d rows (%.1f MB) in %.1f ms on %d thread(s): %.0f rows/s, %.1f MB/s",
+                    rows, bytes / (1024.0 * 1024.0), nanos / 1e6, threads, rowsPerSecond(), megabytesPerSecond());
+        }
+    }
+
+    /**
+     * Returns the header row of the last file read.
+     */
+    String[] getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Reads the whole file into the catalogue, updating maxLengths with the widest value of each column.
+     * @return Number of rows read.
+     */
+    int read(File file, Map<Integer, ArrayList<String>> catalogue, int[] maxLengths) throws IOException {
+        return read(file, MAX_WINDOW, catalogue, maxLengths);
+    }
+
+    /**
+     * Reads the file through windows of at most the given size. A row cut off at the end of a window
+     * is parsed again from the start of the next one.
+     */
+    int read(File file, int window, Map<Integer, ArrayList<String>> catalogue, int[] maxLengths) throws IOException {
+        headers = null;
+        rows = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(window, size - position);
+                boolean last = position + length == size;
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int start = 0;
+                if (headers == null) {
+                    start = readHeaders(buf, length, last);
+                }
+                int consumed = parseRows(buf, start, length, last, catalogue, maxLengths);
+                if (consumed == 0 && !last) {
+                    throw new IOException("Row is longer than the read window at byte " + position);
+                }
+                position += consumed;
+            }
+        }
+        if (headers == null) {
+            throw new IOException("Empty catalogue file: " + file);
+        }
+        return rows;
+    }
+
+    /**
+     * Parses the header row at the start of the buffer.
+     * @return Offset of the first data row.
+     */
+    int readHeaders(ByteBuffer buf, int limit, boolean last) throws IOException {
+        int end = rowEnd(buf, 0, limit, last);
+        if (end < 0) {
+            throw new IOException("Header row is longer than the read window");
+        }
+        List<String> fields = new ArrayList<>();
+        parseRow(buf, 0, end, fields);
+        headers = fields.toArray(new String[0]);
+        return skipLineBreak(end, limit);
+    }
+
+    /**
+     * Parses every complete row in buf[start, limit).
+     * @param last True if limit is the end of the file, so a final row without a line break is complete.
+     * @return Offset just past the last complete row.
+     */
+    int parseRows(ByteBuffer buf, int start, int limit, boolean last,
+                  Map<Integer, ArrayList<String>> catalogue, int[] maxLengths) {
+        int pos = start;
+        ArrayList<String> fields = new ArrayList<>(headers == null ? 16 : headers.length);
+        while (pos < limit) {
+            int end = rowEnd(buf, pos, limit, last);
+            if (end < 0) {
+                break; // Row continues past this buffer
+            }
+            if (end > pos && !(end == pos + 1 && buf.get(pos) == CR)) {
+                fields.clear();
+                int id = parseRow(buf, pos, end, fields);
+                if (id < 0) {
+                    id = Integer.parseInt(fields.get(0).trim());
+                }
+                ArrayList<String> row = new ArrayList<>(fields.subList(1, fields.size()));
+                for (int i = 0; i < row.size() && i < maxLengths.length; i++) {
+                    if (row.get(i).length() > maxLengths[i]) {
+                        maxLengths[i] = row.get(i).length();
+                    }
+                }
+                catalogue.put(id, row);
+                rows++;
+            }
+            pos = skipLineBreak(end, limit);
+        }
+        return pos;
+    }
+
+    /**
+     * Reads the file in parallel on the given pool. Rows that share an id keep the one furthest
+     * into the file, as with a sequential read. Chunk boundaries are placed after the next line break,
+     * so one inside a quoted field would split a row: the chunk before it then ends in the middle of a
+     * row. If any chunk does, or any chunk fails to parse, nothing parsed in parallel is kept and the
+     * file is read sequentially instead, which gives the same rows or fails with the same error.
+     * @return Rows read and load throughput.
+     */
+    LoadStats readParallel(File file, ForkJoinPool pool, Map<Integer, ArrayList<String>> catalogue,
+                           int[] maxLengths) throws IOException {
+        return readParallel(file, pool, MIN_CHUNK, catalogue, maxLengths);
+    }
+
+    LoadStats readParallel(File file, ForkJoinPool pool, int minChunk, Map<Integer, ArrayList<String>> catalogue,
+                           int[] maxLengths) throws IOException {
+        long startTime = System.nanoTime();
+        headers = null;
+        rows = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = alignToLine(channel, 0, size);
+            if (size == 0) {
+                throw new IOException("Empty catalogue file: " + file);
+            }
+            ByteBuffer headerBuf = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataStart);
+            if (rowEnd(headerBuf, 0, (int) dataStart, dataStart == size) < 0) {
+                return readSequential(file, catalogue, maxLengths, startTime); // Line break quoted in a header
+            }
+            readHeaders(headerBuf, (int) dataStart, dataStart == size);
+
+            ChunkResult result = pool.invoke(new ChunkTask(channel, headers, minChunk, dataStart, size, true));
+            if (result.failed) {
+                return readSequential(file, catalogue, maxLengths, startTime);
+            }
+            catalogue.putAll(result.catalogue);
+            for (int i = 0; i < maxLengths.length; i++) {
+                maxLengths[i] = Math.max(maxLengths[i], result.maxLengths[i]);
+            }
+            rows = result.rows;
+            return new LoadStats(rows, size, System.nanoTime() - startTime, pool.getParallelism());
+        }
+    }
+
+    /**
+     * Reads the file sequentially after a parallel read has given up.
+     * @param startTime When the parallel read started, so the time it took is counted.
+     */
+    private LoadStats readSequential(File file, Map<Integer, ArrayList<String>> catalogue, int[] maxLengths,
+                                     long startTime) throws IOException {
+        read(file, catalogue, maxLengths);
+        return new LoadStats(rows, file.length(), System.nanoTime() - startTime, 1);
+    }
+
+    /**
+     * Returns the offset just past the first line break at or after pos, or size if there is none.
+     */
+    private static long alignToLine(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        while (pos < size) {
+            probe.clear();
+            int n = channel.read(probe, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == LF) {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * Partial catalogue parsed from one or more chunks.
+     */
+    private static class ChunkResult {
+        final HashMap<Integer, ArrayList<String>> catalogue = new HashMap<>();
+        final int[] maxLengths = new int[CatalogueUI.maxLengths.length];
+        int rows;
+        // True if a chunk ended in the middle of a row or failed to parse, so the file has to be read in order
+        boolean failed;
+
+        /**
+         * Merges a result from later in the file into this one.
+         */
+        ChunkResult merge(ChunkResult later) {
+            failed |= later.failed;
+            if (failed) {
+                return this;
+            }
+            catalogue.putAll(later.catalogue);
+            for (int i = 0; i < maxLengths.length; i++) {
+                maxLengths[i] = Math.max(maxLengths[i], later.maxLengths[i]);
+            }
+            rows += later.rows;
+            return this;
+        }
+    }
+
+    /**
+     * Parses the byte range [start, end), splitting it in half at a line break while it is large. An
+     * IOException or RuntimeException while parsing, such as a row split inside a quoted field whose
+     * second half has no integer id, marks the result as failed rather than escaping the pool.
+     */
+    private static class ChunkTask extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+        // Tasks only run inside one parse and are never serialized
+        private final transient FileChannel channel;
+        private final String[] headers;
+        private final int minChunk;
+        private final long start;
+        private final long end;
+        // True if end is the end of the file, where a final row needs no line break
+        private final boolean last;
+
+        ChunkTask(FileChannel channel, String[] headers, int minChunk, long start, long end, boolean last) {
+            this.channel = channel;
+            this.headers = headers;
+            this.minChunk = minChunk;
+            this.start = start;
+            this.end = end;
+            this.last = last;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            try {
+                if (end - start > minChunk) {
+                    long mid = alignToLine(channel, start + (end - start) / 2, end);
+                    if (mid > start && mid < end) {
+                        ChunkTask left = new ChunkTask(channel, headers, minChunk, start, mid, false);
+                        ChunkTask right = new ChunkTask(channel, headers, minChunk, mid, end, last);
+                        left.fork();
+                        ChunkResult later = right.compute();
+                        return left.join().merge(later);
+                    }
+                }
+                ChunkResult result = new ChunkResult();
+                if (end > start) {
+                    ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    CatalogueCsvReader reader = new CatalogueCsvReader();
+                    reader.headers = headers;
+                    int length = (int) (end - start);
+                    int parsed = reader.parseRows(buf, 0, length, last, result.catalogue, result.maxLengths);
+                    // A row left open at the end means the boundary after this chunk is inside quotes
+                    result.failed = parsed < length;
+                    result.rows = reader.rows;
+                }
+                return result;
+            } catch (IOException | RuntimeException e) {
+                ChunkResult failed = new ChunkResult();
+                failed.failed = true;
+                return failed;
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the row starting at pos (the index of its line break, or limit). As in parseRow,
+     * only a quote at the start of a field opens quoting, so a bare quote inside a value such as
+     * 12" shelf is kept as text.
+     * @return -1 if the row is not complete within the buffer.
+     */
+    private static int rowEnd(ByteBuffer buf, int pos, int limit, boolean last) {
+        boolean quoted = false;
+        boolean fieldStart = true;
+        for (int i = pos; i < limit; i++) {
+            byte b = buf.get(i);
+            if (quoted) {
+                if (b == QUOTE) {
+                    quoted = false;
+                    fieldStart = true; // A quote right after it is the second of a doubled quote
+                }
+            } else if (b == LF) {
+                return i;
+            } else if (b == QUOTE && fieldStart) {
+                quoted = true;
+            } else {
+                fieldStart = b == COMMA;
+            }
+        }
+        return last ? limit : -1;
+    }
+
+    private static int skipLineBreak(int end, int limit) {
+        return end < limit ? end + 1 : end;
+    }
+
+    /**
+     * Splits one row into fields.
+     * @return The first field parsed as an integer id, or -1 if it is not a plain integer.
+     */
+    private int parseRow(ByteBuffer buf, int pos, int end, List<String> fields) {
+        if (end > pos && buf.get(end - 1) == CR) {
+            end--;
+        }
+        int id = -1;
+        int i = pos;
+        while (true) {
+            int len = 0;
+            if (i < end && buf.get(i) == QUOTE) {
+                i++;
+                while (i < end) {
+                    byte b = buf.get(i);
+                    if (b == QUOTE) {
+                        if (i + 1 < end && buf.get(i + 1) == QUOTE) {
+                            i++;
+                        } else {
+                            i++;
+                            break;
+                        }
+                    }
+                    ensureScratch(len + 1);
+                    scratch[len++] = buf.get(i);
+                    i++;
+                }
+                while (i < end && buf.get(i) != COMMA) {
+                    ensureScratch(len + 1);
+                    scratch[len++] = buf.get(i++); // Tolerate text after a closing quote
+                }
+            } else {
+                int fieldStart = i;
+                while (i < end && buf.get(i) != COMMA) {
+                    i++;
+                }
+                len = i - fieldStart;
+                ensureScratch(len);
+                buf.get(fieldStart, scratch, 0, len);
+            }
+            if (fields.isEmpty()) {
+                id = parseId(scratch, len);
+            }
+            fields.add(new String(scratch, 0, len, StandardCharsets.UTF_8));
+            if (i >= end) {
+                break;
+            }
+            i++; // Skip the comma
+        }
+        return id;
+    }
+
+    private static int parseId(byte[] bytes, int len) {
+        if (len == 0 || len > 9) {
+            return -1;
+        }
+        int id = 0;
+        for (int i = 0; i < len; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+    private void ensureScratch(int len) {
+        if (len > scratch.length) {
+            byte[] bigger = new byte[Math.max(len, scratch.length * 2)];
+            System.arraycopy(scratch, 0, bigger, 0, scratch.length);
+            scratch = bigger;
+        }
+    }
+
+    /**
+     * Reads only the header row of a file.
+     */
+    static String[] readHeaderRow(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Empty catalogue file: " + file);
+            }
+            return parseLine(line).toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Splits text into CSV records at the line breaks outside quoted fields, as the file reader does,
+     * dropping the line breaks and blank records. A record cut short by the end of the text is kept.
+     */
+    static List<String> splitRecords(String text) {
+        List<String> records = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = recordEnd(text, start);
+            int stop = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            if (stop > start) {
+                records.add(text.substring(start, stop));
+            }
+            start = end + 1;
+        }
+        return records;
+    }
+
+    /**
+     * Returns the length of the complete records at the start of the text, up to and including the last
+     * line break outside quoted fields. Anything after it is a record cut short, such as a torn write.
+     */
+    static int completeLength(String text) {
+        int complete = 0;
+        int start = 0;
+        while (start < text.length()) {
+            int end = recordEnd(text, start);
+            if (end < text.length()) {
+                complete = end + 1;
+            }
+            start = end + 1;
+        }
+        return complete;
+    }
+
+    /**
+     * Returns the index of the line break ending the record starting at pos, or the length of the text.
+     */
+    private static int recordEnd(String text, int pos) {
+        return endOutsideQuotes(text, pos, '\n');
+    }
+
+    /**
+     * Returns the index of the comma ending the field that starts at pos, or the length of the line.
+     */
+    static int fieldEnd(String line, int pos) {
+        return endOutsideQuotes(line, pos, ',');
+    }
+
+    /**
+     * Returns the index of the first stop character outside quoted fields at or after pos, or the length
+     * of the text. Quoting follows parseLine and the file reader: only a quote at the start of a field
+     * opens it, so a bare quote inside a value such as 12" shelf is kept as text.
+     */
+    private static int endOutsideQuotes(String text, int pos, char stop) {
+        boolean quoted = false;
+        boolean fieldStart = true;
+        for (int i = pos; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    quoted = false;
+                    fieldStart = true; // A quote right after it is the second of a doubled quote
+                }
+            } else if (ch == stop) {
+                return i;
+            } else if (ch == '"' && fieldStart) {
+                quoted = true;
+            } else {
+                fieldStart = ch == ',';
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * Returns the first field of a CSV record, unquoted.
+     */
+    static String firstField(String line) {
+        return parseLine(line.substring(0, fieldEnd(line, 0))).get(0);
+    }
+
+    /**
+     * Splits a single CSV line (without its line break) into fields, following the same quoting rules.
+     */
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    sb.append(ch);
+                }
+            } else if (ch == '"' && sb.length() == 0) {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(ch);
+            }
+        }
+        fields.add(sb.toString());
+        return fields;
+    }
+
+    /**
+     * Builds a CSV line for an entry, quoting any value that needs it.
+     */
+    static String formatLine(int id, List<String> row) {
+        StringBuilder sb = new StringBuilder().append(id);
+        for (String value : row) {
+            sb.append(',');
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.toString();
+    }
+}
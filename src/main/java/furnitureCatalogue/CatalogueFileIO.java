@@ -2,7 +2,12 @@
  * This class is responsible for handling the file I/O operations of the catalogue.
  * It interacts with the CatalogueUI class to load the catalogue from a CSV file, 
  * add, edit, delete entries, and perform searches.  
- * It also provides a method to get a random entry from the catalogue.
+ * It also provides methods to get a random entry from the catalogue, uniformly or weighted by a field.
+ * Adds, edits and deletes are appended to a change log next to the CSV (see CatalogueChangeLog),
+ * which is replayed on load and folded back into the CSV by compaction. The changes are written
+ * by a background writer (see CatalogueWriteBehind), so callers never wait on disk I/O.
+ * After a CSV load the store is saved as a binary snapshot (see CatalogueSnapshot), which later
+ * loads use instead of parsing the CSV for as long as the snapshot is newer than the CSV.
  */
 package furnitureCatalogue;
 
@@ -10,14 +15,44 @@ import java.io.*;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 
 public class CatalogueFileIO {
+    /**
+     * Number of results relevancySearch returns when no limit is given.
+     */
+    static final int DEFAULT_RELEVANCY_RESULTS = 20;
+    /**
+     * Number of names autocomplete returns when no limit is given.
+     */
+    static final int DEFAULT_COMPLETIONS = 8;
+
     private String fileName;
     public CatalogueUI UI;
     private File csvFile;
+    private CatalogueChangeLog changeLog;
+    private CatalogueWriteBehind writeBehind;
+    /**
+     * Parse the CSV on a fork-join pool, enabled with -Dcatalogue.parallelLoad=true.
+     */
+    private boolean parallelLoad = Boolean.getBoolean("catalogue.parallelLoad");
+    /**
+     * Load from and save binary snapshots, disabled with -Dcatalogue.snapshot=false.
+     */
+    private boolean useSnapshot = !"false".equals(System.getProperty("catalogue.snapshot"));
+    private CatalogueSnapshot snapshot;
+    private CatalogueCsvReader.LoadStats lastLoadStats;
+    private final Random rand = new Random();
+    /**
+     * Weighted sampler for the last field asked for, kept up to date by the store.
+     */
+    private CatalogueSampler sampler;
+    private CatalogueSearchIndex searchIndex;
+    private CatalogueNameTrie nameTrie;
+    private CatalogueNameIndex nameIndex;
 
     public CatalogueFileIO(String fileName, CatalogueUI catalogueUI) {
         this.UI = catalogueUI;
@@ -26,7 +61,8 @@ public class CatalogueFileIO {
     }
 
     /**
-     * Loads the CSV file into a HashMap.
+     * Loads the catalogue into the column store, from the snapshot when it is newer than the CSV
+     * and from the CSV otherwise, then replays the change log.
      */
     public void loadFile() {
         try {
@@ -35,7 +71,11 @@ public class CatalogueFileIO {
                 throw new FileNotFoundException("File not found: " + fileName);
             }
             // If running from a jar, the protocol will be "jar"
+            long sourceModified;
             if ("jar".equals(resource.getProtocol())) {
+                sourceModified = resource.openConnection().getLastModified();
+                snapshot = new CatalogueSnapshot(new File(System.getProperty("java.io.tmpdir"),
+                        "furnitureCatalogue-" + new File(fileName).getName() + ".snap"));
                 InputStream is = getClass().getClassLoader().getResourceAsStream(fileName);
                 if (is == null) {
                     throw new FileNotFoundException("Resource stream not found: " + fileName);
@@ -46,28 +86,38 @@ public class CatalogueFileIO {
                 is.close();
             } else {
                 csvFile = new File(resource.toURI());
+                sourceModified = csvFile.lastModified();
+                snapshot = new CatalogueSnapshot(new File(csvFile.getPath() + ".snap"));
             }
-    
-            // Load the file into memory
-            Scanner fileScanner = new Scanner(csvFile);
-            this.UI.headers = fileScanner.nextLine().split(",");
-            this.UI.catalogue = new HashMap<>();
-            while (fileScanner.hasNextLine()) {
-                String[] line = fileScanner.nextLine().split(",");
-                ArrayList<String> temp = new ArrayList<>(Arrays.asList(line).subList(1, line.length));
-                UI.catalogue.put(Integer.parseInt(line[0]), temp);
-            }
-            fileScanner.close();
-    
-            // Compute maxLengths for formatting
-            for (int i = 1; i < UI.headers.length; i++) {
-                int maxLength = 0;
-                for (ArrayList<String> entry : UI.catalogue.values()) {
-                    if (entry.get(i - 1).length() > maxLength) {
-                        maxLength = entry.get(i - 1).length();
+
+            Arrays.fill(CatalogueUI.maxLengths, 0);
+            if (!(useSnapshot && snapshot.isNewerThan(sourceModified) && loadSnapshot())) {
+                loadCSV();
+                if (useSnapshot) {
+                    try {
+                        snapshot.write(UI.catalogue, CatalogueUI.maxLengths);
+                    } catch (IOException e) {
+                        System.err.println("Error writing snapshot: " + e.getMessage());
                     }
                 }
-                UI.maxLengths[i - 1] = maxLength;
+            }
+
+            // Replay any edits that have not been compacted into the CSV yet
+            awaitDurable();
+            for (CatalogueChangeLog.Record r : getChangeLog().readRecords()) {
+                switch (r.op) {
+                    case CatalogueChangeLog.ADD:
+                        putCSVLine(r.line);
+                        break;
+                    case CatalogueChangeLog.EDIT:
+                        if (UI.catalogue.remove(Integer.parseInt(r.id)) != null) {
+                            putCSVLine(r.line);
+                        }
+                        break;
+                    case CatalogueChangeLog.DELETE:
+                        UI.catalogue.remove(Integer.parseInt(r.id));
+                        break;
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException("Error loading file: " + e.getMessage(), e);
@@ -75,88 +125,296 @@ public class CatalogueFileIO {
     }
 
     /**
-     * Appends a new line to the CSV file.
+     * Loads the CSV file into memory, computing maxLengths for formatting in the same pass.
      */
-    public void addCSVLine(String newLine) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile, true))) {
-            writer.write(newLine);
-            writer.newLine();
-        } catch (IOException e) {
-            System.err.println("Error writing to CSV file: " + e.getMessage());
+    private void loadCSV() throws IOException {
+        this.UI.catalogue = new CatalogueStore(CatalogueCsvReader.readHeaderRow(csvFile));
+        CatalogueCsvReader reader = new CatalogueCsvReader();
+        if (parallelLoad) {
+            lastLoadStats = reader.readParallel(csvFile, ForkJoinPool.commonPool(),
+                    UI.catalogue, CatalogueUI.maxLengths);
+        } else {
+            long start = System.nanoTime();
+            int rows = reader.read(csvFile, UI.catalogue, CatalogueUI.maxLengths);
+            lastLoadStats = new CatalogueCsvReader.LoadStats(rows, csvFile.length(), System.nanoTime() - start, 1);
         }
+        this.UI.headers = reader.getHeaders();
     }
 
     /**
-     * Edits an existing CSV line (matching by first field).
+     * Loads the catalogue from the binary snapshot. Returns false (after clearing maxLengths again)
+     * if the snapshot is damaged or from another version, so the caller falls back to the CSV.
      */
-    public void editCSVLine(String lineID, String newLine) {
+    private boolean loadSnapshot() {
+        long start = System.nanoTime();
         try {
-            ArrayList<String> lines = new ArrayList<>();
-            BufferedReader reader = new BufferedReader(new FileReader(csvFile));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length > 0 && parts[0].equals(lineID)) {
-                    lines.add(newLine);
-                } else {
-                    lines.add(line);
-                }
-            }
-            reader.close();
-            BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile));
-            for (String l : lines) {
-                writer.write(l);
-                writer.newLine();
+            CatalogueStore store = snapshot.read(CatalogueUI.maxLengths);
+            UI.catalogue = store;
+            UI.headers = store.getHeaders();
+            lastLoadStats = new CatalogueCsvReader.LoadStats(store.rowCount(), snapshot.getFile().length(),
+                    System.nanoTime() - start, 1);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring snapshot " + snapshot.getFile() + ": " + e.getMessage());
+            Arrays.fill(CatalogueUI.maxLengths, 0);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the snapshot used by the last load.
+     */
+    CatalogueSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Turns binary snapshots on or off for the next call to loadFile.
+     */
+    public void setUseSnapshot(boolean useSnapshot) {
+        this.useSnapshot = useSnapshot;
+    }
+
+    /**
+     * Turns the parallel load mode on or off for the next call to loadFile.
+     */
+    public void setParallelLoad(boolean parallelLoad) {
+        this.parallelLoad = parallelLoad;
+    }
+
+    /**
+     * Returns the row count and throughput of the last load.
+     */
+    CatalogueCsvReader.LoadStats getLastLoadStats() {
+        return lastLoadStats;
+    }
+
+    /**
+     * Splits a CSV line and puts it into the in-memory catalogue.
+     */
+    private void putCSVLine(String csvLine) {
+        List<String> line = CatalogueCsvReader.parseLine(csvLine);
+        ArrayList<String> temp = new ArrayList<>(line.subList(1, line.size()));
+        for (int i = 0; i < temp.size() && i < CatalogueUI.maxLengths.length; i++) {
+            CatalogueUI.maxLengths[i] = Math.max(CatalogueUI.maxLengths[i], temp.get(i).length());
+        }
+        UI.catalogue.put(Integer.parseInt(line.get(0).trim()), temp);
+    }
+
+    /**
+     * Returns the change log for the current CSV file.
+     */
+    CatalogueChangeLog getChangeLog() {
+        if (changeLog == null || !changeLog.isFor(csvFile)) {
+            changeLog = new CatalogueChangeLog(csvFile);
+        }
+        return changeLog;
+    }
+
+    /**
+     * Returns the background writer for the current change log, draining the previous one if the
+     * CSV file has changed.
+     */
+    CatalogueWriteBehind getWriteBehind() {
+        CatalogueChangeLog log = getChangeLog();
+        if (writeBehind == null || writeBehind.getChangeLog() != log) {
+            if (writeBehind != null) {
+                writeBehind.close();
             }
-            writer.close();
-        } catch (IOException e) {
-            System.err.println("Error editing CSV file: " + e.getMessage());
+            writeBehind = new CatalogueWriteBehind(log);
         }
+        return writeBehind;
     }
 
     /**
-     * Deletes a line from the CSV file.
+     * Appends a new line to the catalogue (queued for the change log).
+     */
+    public void addCSVLine(String newLine) {
+        getWriteBehind().add(newLine);
+    }
+
+    /**
+     * Edits an existing CSV line (matching by first field, queued for the change log).
+     */
+    public void editCSVLine(String lineID, String newLine) {
+        getWriteBehind().edit(lineID, newLine);
+    }
+
+    /**
+     * Deletes a line from the catalogue (queued for the change log).
      */
     public void deleteCSVLine(String lineID) {
+        getWriteBehind().delete(lineID);
+    }
+
+    /**
+     * Asks the background writer to write queued changes now, without waiting for them.
+     */
+    public void flush() {
+        if (writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    /**
+     * Waits until every change made so far has been written to the change log on disk.
+     */
+    public void awaitDurable() {
+        if (writeBehind == null) {
+            return;
+        }
         try {
-            ArrayList<String> lines = new ArrayList<>();
-            BufferedReader reader = new BufferedReader(new FileReader(csvFile));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length > 0 && !parts[0].equals(lineID)) {
-                    lines.add(line);
-                }
-            }
-            reader.close();
-            BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile));
-            for (String l : lines) {
-                writer.write(l);
-                writer.newLine();
-            }
-            writer.close();
+            writeBehind.awaitDurable();
+        } catch (IOException e) {
+            System.err.println("Error writing to CSV file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Folds the change log back into the CSV file, after writing any queued changes.
+     */
+    public void compactChangeLog() {
+        awaitDurable();
+        try {
+            getChangeLog().compact();
         } catch (IOException e) {
-            System.err.println("Error deleting lineID=" + lineID + ": " + e.getMessage());
+            System.err.println("Error compacting change log: " + e.getMessage());
         }
     }
 
     /**
-     * Returns a random entry from the in-memory catalogue.
+     * Returns a random entry from the in-memory catalogue, each entry equally likely, in O(1).
      */
     public ArrayList<String> getRandomEntry() {
         if (UI.catalogue.isEmpty()) {
             return null;
         }
-        Random rand = new Random();
-        Integer randomId = (Integer) UI.catalogue.keySet().toArray()[rand.nextInt(UI.catalogue.size())];
-        return UI.catalogue.get(randomId);
+        return UI.catalogue.getRow(rand.nextInt(UI.catalogue.rowCount()));
     }
 
     /**
-     * Stub for relevancy search (can be enhanced later).
+     * Returns a random entry picked with probability proportional to a numeric field, e.g. "Quantity",
+     * or null if no entry has a positive value in that field.
+     */
+    public ArrayList<String> getRandomEntry(String weightHeader) {
+        int row = getRandomRow(weightHeader);
+        return row < 0 ? null : UI.catalogue.getRow(row);
+    }
+
+    /**
+     * Returns a row picked with probability proportional to a numeric field, or -1.
+     */
+    int getRandomRow(String weightHeader) {
+        int field = UI.catalogue.fieldOf(weightHeader);
+        if (field < 0 || !UI.catalogue.isNumeric(field)) {
+            throw new IllegalArgumentException("Not a numeric field: " + weightHeader);
+        }
+        if (sampler == null || sampler.getStore() != UI.catalogue || sampler.getField() != field) {
+            if (sampler != null) {
+                sampler.getStore().removeListener(sampler);
+            }
+            sampler = new CatalogueSampler(UI.catalogue, field);
+        }
+        return sampler.pickRow(rand);
+    }
+
+    /**
+     * Returns the entries that best match the search words as CSV lines, best first.
+     * Uses the ranked inverted index (see CatalogueSearchIndex), built on first use.
      */
     public List<String> relevancySearch(String search) {
-        // Implementation omitted; returns an empty list.
-        return new ArrayList<>();
+        return relevancySearch(search, DEFAULT_RELEVANCY_RESULTS);
+    }
+
+    /**
+     * Returns at most limit entries that best match the search words as CSV lines, best first.
+     */
+    public List<String> relevancySearch(String search, int limit) {
+        List<String> results = new ArrayList<>();
+        if (search == null || UI.catalogue == null) {
+            return results;
+        }
+        for (int row : getSearchIndex().search(search, limit)) {
+            results.add(CatalogueCsvReader.formatLine(UI.catalogue.idAt(row), UI.catalogue.getRow(row)));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the search index for the current store, building it if the store has been replaced.
+     */
+    CatalogueSearchIndex getSearchIndex() {
+        if (searchIndex == null || searchIndex.getStore() != UI.catalogue) {
+            if (searchIndex != null) {
+                searchIndex.getStore().removeListener(searchIndex);
+            }
+            searchIndex = new CatalogueSearchIndex(UI.catalogue);
+        }
+        return searchIndex;
+    }
+
+    /**
+     * Returns the names starting with the prefix, ignoring case, most stocked first.
+     * Uses the name trie (see CatalogueNameTrie), built on first use.
+     */
+    public List<String> autocomplete(String prefix) {
+        return autocomplete(prefix, DEFAULT_COMPLETIONS);
+    }
+
+    /**
+     * Returns at most limit names starting with the prefix, ignoring case, most stocked first.
+     */
+    public List<String> autocomplete(String prefix, int limit) {
+        if (prefix == null || UI.catalogue == null) {
+            return new ArrayList<>();
+        }
+        return getNameTrie().complete(prefix, limit);
+    }
+
+    /**
+     * Returns the name trie for the current store, building it if the store has been replaced.
+     */
+    CatalogueNameTrie getNameTrie() {
+        if (nameTrie == null || nameTrie.getStore() != UI.catalogue) {
+            if (nameTrie != null) {
+                nameTrie.getStore().removeListener(nameTrie);
+            }
+            nameTrie = new CatalogueNameTrie(UI.catalogue);
+        }
+        return nameTrie;
+    }
+
+    /**
+     * Returns the ids of the entries with exactly this name, in catalogue order.
+     * Uses the name index (see CatalogueNameIndex), built on first use.
+     */
+    public List<Integer> findByName(String name) {
+        return findByName(name, false);
+    }
+
+    /**
+     * Returns the ids of the entries with this name, in catalogue order, optionally ignoring case.
+     */
+    public List<Integer> findByName(String name, boolean ignoreCase) {
+        if (name == null || UI.catalogue == null) {
+            return new ArrayList<>();
+        }
+        CatalogueNameIndex index = getNameIndex(ignoreCase);
+        return ignoreCase ? index.findIgnoreCase(name) : index.find(name);
+    }
+
+    /**
+     * Returns the name index for the current store, building it if the store has been replaced or case
+     * folding is asked for the first time. Once folding, the index keeps folding.
+     */
+    CatalogueNameIndex getNameIndex(boolean foldCase) {
+        if (nameIndex == null || nameIndex.getStore() != UI.catalogue || (foldCase && !nameIndex.isFoldCase())) {
+            boolean fold = foldCase || (nameIndex != null && nameIndex.isFoldCase());
+            if (nameIndex != null) {
+                nameIndex.getStore().removeListener(nameIndex);
+            }
+            nameIndex = new CatalogueNameIndex(UI.catalogue, fold);
+        }
+        return nameIndex;
     }
-}
\ No newline at end of file
+}
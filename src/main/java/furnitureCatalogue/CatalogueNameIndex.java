@@ -0,0 +1,157 @@
+/*
+ * This class is responsible for finding entries by their exact name.
+ * It keeps a hash map from each name to the ids of the entries with that name, so a lookup costs the
+ * same however large the catalogue is, instead of comparing the name of every entry. It can also keep a
+ * second map keyed by the lower-case name, for lookups that ignore case. Ids are used rather than rows
+ * because they do not move when the store swaps the last row into a removed one. The index listens to
+ * the store and moves one id per add, edit or remove.
+ */
+package furnitureCatalogue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+class CatalogueNameIndex implements CatalogueStore.Listener {
+    /**
+     * Field matched by name, the first one after the id, as the specific search has always done.
+     */
+    static final int NAME_FIELD = 0;
+
+    private final CatalogueStore store;
+    private final boolean foldCase;
+    private final HashMap<String, Set<Integer>> exact = new HashMap<>();
+    // Same ids keyed by lower-case name, or null if case is not folded
+    private final HashMap<String, Set<Integer>> folded;
+
+    /**
+     * Builds the index over the current rows and starts following the store.
+     * @param foldCase Also keep the map used by findIgnoreCase.
+     */
+    CatalogueNameIndex(CatalogueStore store, boolean foldCase) {
+        this.store = store;
+        this.foldCase = foldCase;
+        folded = foldCase ? new HashMap<>() : null;
+        // Held so no change is made between reading the rows and starting to follow them
+        store.readLock().lock();
+        try {
+            rebuild();
+            store.addListener(this);
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    CatalogueStore getStore() {
+        return store;
+    }
+
+    boolean isFoldCase() {
+        return foldCase;
+    }
+
+    /**
+     * Returns the ids of the entries with exactly this name, in the order the catalogue lists them.
+     */
+    List<Integer> find(String name) {
+        return lookup(exact, name);
+    }
+
+    /**
+     * Returns the ids of the entries with this name in any case, in the order the catalogue lists them.
+     * @throws IllegalStateException If the index was built without folding case.
+     */
+    List<Integer> findIgnoreCase(String name) {
+        if (!foldCase) {
+            throw new IllegalStateException("Name index does not fold case");
+        }
+        return lookup(folded, fold(name));
+    }
+
+    private List<Integer> lookup(HashMap<String, Set<Integer>> map, String name) {
+        store.readLock().lock();
+        try {
+            Set<Integer> ids = map.get(name);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            List<Integer> found = new ArrayList<>(ids);
+            // Only the matches are sorted, to list them as a scan of the catalogue would
+            found.sort(Comparator.comparingInt(store::rowOf));
+            return found;
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private void add(String name, int id) {
+        if (name == null) {
+            return;
+        }
+        exact.computeIfAbsent(name, k -> new LinkedHashSet<>()).add(id);
+        if (foldCase) {
+            folded.computeIfAbsent(fold(name), k -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    private void remove(String name, int id) {
+        if (name == null) {
+            return;
+        }
+        remove(exact, name, id);
+        if (foldCase) {
+            remove(folded, fold(name), id);
+        }
+    }
+
+    private static void remove(HashMap<String, Set<Integer>> map, String name, int id) {
+        Set<Integer> ids = map.get(name);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            map.remove(name);
+        }
+    }
+
+    private void rebuild() {
+        exact.clear();
+        if (foldCase) {
+            folded.clear();
+        }
+        for (int row = 0; row < store.rowCount(); row++) {
+            add(store.getValue(row, NAME_FIELD), store.idAt(row));
+        }
+    }
+
+    private static String old(ArrayList<String> old) {
+        return NAME_FIELD < old.size() ? old.get(NAME_FIELD) : null;
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        add(store.getValue(row, NAME_FIELD), store.idAt(row));
+    }
+
+    @Override
+    public synchronized void rowChanged(int row, ArrayList<String> old) {
+        int id = store.idAt(row);
+        remove(old(old), id);
+        add(store.getValue(row, NAME_FIELD), id);
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        remove(old(old), id);
+    }
+
+    @Override
+    public synchronized void cleared() {
+        rebuild();
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * This class is responsible for autocompleting item names as they are typed.
+ * Names are kept in a radix trie (a prefix tree whose single-child chains are merged into one edge),
+ * keyed by the lower-case name, so a prefix is found in as many steps as it has characters and
+ * matches regardless of case. Each distinct spelling of a name keeps the number of entries with that
+ * name and their total Quantity, its score; without a Quantity column the score is the number of
+ * entries. Every node also keeps the best score below it, so the top N completions are found best
+ * first, visiting only the branches that can still hold one of them, instead of listing every name
+ * with the prefix. The trie listens to the store and updates one path per add, edit or remove.
+ */
+package furnitureCatalogue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+class CatalogueNameTrie implements CatalogueStore.Listener {
+    /**
+     * Separates the lower-case name from its spelling in a key, and sorts before any other character.
+     */
+    private static final char SPELLING = '\u0000';
+
+    private final CatalogueStore store;
+    private final int nameField;
+    private final int quantityField;
+    private Node root = new Node("");
+
+    /**
+     * One edge of the trie and the node it leads to. Children are kept sorted by the first character of
+     * their edge.
+     */
+    private static final class Node {
+        private static final Node[] NONE = new Node[0];
+
+        String label;
+        Node[] children = NONE;
+        int childCount;
+        // Spelling of the name ending here, or null if no name ends here
+        String name;
+        int entries;
+        long score;
+        // Highest score of a name at or below this node, -1 if there is none
+        long best = -1;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int find(char c) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char first = children[mid].label.charAt(0);
+                if (first < c) {
+                    low = mid + 1;
+                } else if (first > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -low - 1;
+        }
+
+        void insert(int i, Node child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+            }
+            System.arraycopy(children, i, children, i + 1, childCount - i);
+            children[i] = child;
+            childCount++;
+        }
+
+        void remove(int i) {
+            System.arraycopy(children, i + 1, children, i, childCount - i - 1);
+            children[--childCount] = null;
+        }
+
+        void updateBest() {
+            best = name == null ? -1 : score;
+            for (int i = 0; i < childCount; i++) {
+                best = Math.max(best, children[i].best);
+            }
+        }
+    }
+
+    /**
+     * A node still to be expanded, or a name ready to be returned, in the order completions come out.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final long score;
+        final String key;
+        final Node node;
+        final boolean done;
+
+        Candidate(long score, String key, Node node, boolean done) {
+            this.score = score;
+            this.key = key;
+            this.node = node;
+            this.done = done;
+        }
+
+        /**
+         * Higher scores first, then keys in order. A node sorts by its best score and its path, which
+         * is never after any name below it, so a name only comes out once nothing left can beat it.
+         */
+        @Override
+        public int compareTo(Candidate other) {
+            if (score != other.score) {
+                return Long.compare(other.score, score);
+            }
+            int c = key.compareTo(other.key);
+            return c != 0 ? c : Boolean.compare(other.done, done);
+        }
+    }
+
+    /**
+     * Builds the trie over the current rows and starts following the store.
+     */
+    CatalogueNameTrie(CatalogueStore store) {
+        this.store = store;
+        nameField = store.fieldOf("Name");
+        quantityField = store.fieldOf("Quantity");
+        // Held so no change is made between reading the rows and starting to follow them
+        store.readLock().lock();
+        try {
+            rebuild();
+            store.addListener(this);
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    CatalogueStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns up to limit names starting with the prefix, ignoring case, highest score first and then
+     * in alphabetical order. Each spelling of a name is returned once, however many entries share it.
+     */
+    List<String> complete(String prefix, int limit) {
+        List<String> names = new ArrayList<>();
+        store.readLock().lock();
+        try {
+            String key = prefix.toLowerCase(Locale.ROOT);
+            Node node = root;
+            StringBuilder path = new StringBuilder();
+            int pos = 0;
+            while (pos < key.length()) {
+                int i = node.find(key.charAt(pos));
+                if (i < 0) {
+                    return names;
+                }
+                node = node.children[i];
+                int common = commonPrefix(node.label, key, pos);
+                if (common < node.label.length() && pos + common < key.length()) {
+                    return names;
+                }
+                path.append(node.label);
+                pos += node.label.length();
+            }
+            PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            if (node.best >= 0) {
+                queue.add(new Candidate(node.best, path.toString(), node, false));
+            }
+            while (!queue.isEmpty() && names.size() < limit) {
+                Candidate next = queue.poll();
+                if (next.done) {
+                    names.add(next.node.name);
+                    continue;
+                }
+                Node n = next.node;
+                if (n.name != null) {
+                    queue.add(new Candidate(n.score, next.key, n, true));
+                }
+                for (int i = 0; i < n.childCount; i++) {
+                    Node child = n.children[i];
+                    queue.add(new Candidate(child.best, next.key + child.label, child, false));
+                }
+            }
+            return names;
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    private static int commonPrefix(String label, String key, int pos) {
+        int n = Math.min(label.length(), key.length() - pos);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(pos + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String keyOf(String name) {
+        return name.toLowerCase(Locale.ROOT) + SPELLING + name;
+    }
+
+    private long scoreOf(String quantity) {
+        if (quantityField < 0) {
+            return 1;
+        }
+        Integer value = quantity == null ? null : CatalogueStore.intValueOf(quantity);
+        return value == null ? 0 : Math.max(0, value);
+    }
+
+    /**
+     * Adds or takes away entries of a name, creating or pruning the nodes on its path.
+     */
+    private void change(String name, String quantity, int entries) {
+        if (name == null || name.isEmpty()) {
+            return;
+        }
+        change(root, keyOf(name), 0, name, entries, entries * scoreOf(quantity));
+    }
+
+    private void change(Node node, String key, int pos, String name, int entries, long score) {
+        if (pos == key.length()) {
+            node.entries += entries;
+            node.score += score;
+            node.name = node.entries > 0 ? name : null;
+            if (node.name == null) {
+                node.entries = 0;
+                node.score = 0;
+            }
+            node.updateBest();
+            return;
+        }
+        int i = node.find(key.charAt(pos));
+        if (i < 0) {
+            if (entries < 0) {
+                return; // Not in the trie
+            }
+            i = -i - 1;
+            node.insert(i, new Node(key.substring(pos)));
+        }
+        Node child = node.children[i];
+        int common = commonPrefix(child.label, key, pos);
+        if (common < child.label.length()) {
+            if (entries < 0) {
+                return;
+            }
+            // Split the edge where the key leaves it
+            Node split = new Node(child.label.substring(0, common));
+            child.label = child.label.substring(common);
+            split.insert(0, child);
+            split.updateBest();
+            node.children[i] = split;
+            child = split;
+        }
+        change(child, key, pos + common, name, entries, score);
+        if (child.name == null && child.childCount == 0) {
+            node.remove(i);
+        } else if (child.name == null && child.childCount == 1) {
+            // Merge a node left with one child into that child's edge
+            Node only = child.children[0];
+            only.label = child.label + only.label;
+            node.children[i] = only;
+        }
+        node.updateBest();
+    }
+
+    private void rebuild() {
+        root = new Node("");
+        for (int row = 0; row < store.rowCount(); row++) {
+            change(value(row, nameField), value(row, quantityField), 1);
+        }
+    }
+
+    private String value(int row, int field) {
+        return field >= 0 ? store.getValue(row, field) : null;
+    }
+
+    private static String old(ArrayList<String> old, int field) {
+        return field >= 0 && field < old.size() ? old.get(field) : null;
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        change(value(row, nameField), value(row, quantityField), 1);
+    }
+
+    @Override
+    public synchronized void rowChanged(int row, ArrayList<String> old) {
+        change(old(old, nameField), old(old, quantityField), -1);
+        change(value(row, nameField), value(row, quantityField), 1);
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        change(old(old, nameField), old(old, quantityField), -1);
+    }
+
+    @Override
+    public synchronized void cleared() {
+        rebuild();
+    }
+}
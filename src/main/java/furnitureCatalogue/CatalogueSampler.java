@@ -0,0 +1,140 @@
+/*
+ * This class is responsible for picking random catalogue entries weighted by a numeric field,
+ * such as Quantity or Price, so an entry with twice the weight is picked twice as often.
+ * The weights of all rows are kept in a Fenwick tree (binary indexed tree), so a pick and the
+ * update for an added, edited or removed row each cost O(log n). The sampler listens to the store
+ * and follows its swap-remove: when the last row moves into a hole, its weight moves with it.
+ * Rows whose field is missing, not an integer, or negative have weight 0 and are never picked.
+ */
+package furnitureCatalogue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+class CatalogueSampler implements CatalogueStore.Listener {
+    private final CatalogueStore store;
+    private final int field;
+    private long[] weights;
+    private long[] tree; // tree[i] holds the sum of weights (i - (i & -i), i], one-based
+    private int rows;
+
+    /**
+     * Builds the sampler over the current rows in O(n) and starts following the store.
+     * @param field Field index of an integer column (see CatalogueStore.fieldOf).
+     */
+    CatalogueSampler(CatalogueStore store, int field) {
+        if (field < 0 || !store.isNumeric(field)) {
+            throw new IllegalArgumentException("Weights must come from a numeric field");
+        }
+        this.store = store;
+        this.field = field;
+        rebuild(Math.max(16, store.rowCount()));
+        store.addListener(this);
+    }
+
+    CatalogueStore getStore() {
+        return store;
+    }
+
+    int getField() {
+        return field;
+    }
+
+    private long weightOf(int row) {
+        return store.hasInt(row, field) ? Math.max(0, store.getInt(row, field)) : 0;
+    }
+
+    /**
+     * Rebuilds the tree for the store's rows with room for the given number of rows.
+     */
+    private void rebuild(int capacity) {
+        rows = store.rowCount();
+        weights = new long[capacity];
+        tree = new long[capacity + 1];
+        for (int row = 0; row < rows; row++) {
+            weights[row] = weightOf(row);
+        }
+        // Each node adds its finished sum to its parent, so every node is built once
+        for (int i = 1; i <= capacity; i++) {
+            tree[i] += weights[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    private void set(int row, long weight) {
+        long delta = weight - weights[row];
+        if (delta == 0) {
+            return;
+        }
+        weights[row] = weight;
+        for (int i = row + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Returns the sum of all weights.
+     */
+    long totalWeight() {
+        long sum = 0;
+        for (int i = rows; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns a row picked with probability weight / totalWeight, or -1 if every weight is 0.
+     */
+    int pickRow(Random rand) {
+        long total = totalWeight();
+        if (total <= 0) {
+            return -1;
+        }
+        long target = rand.nextLong(total);
+        // Walk down the tree to the first row whose prefix sum passes the target
+        int pos = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < tree.length && tree[next] <= target) {
+                pos = next;
+                target -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    @Override
+    public void rowAdded(int row) {
+        if (row >= weights.length) {
+            rebuild(Math.max(row + 1, weights.length * 2));
+            return;
+        }
+        rows = row + 1;
+        set(row, weightOf(row));
+    }
+
+    @Override
+    public void rowChanged(int row, ArrayList<String> old) {
+        set(row, weightOf(row));
+    }
+
+    @Override
+    public void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        long moved = weights[movedFrom];
+        set(movedFrom, 0);
+        set(row, row == movedFrom ? 0 : moved);
+        rows = movedFrom;
+    }
+
+    @Override
+    public void cleared() {
+        Arrays.fill(weights, 0);
+        Arrays.fill(tree, 0);
+        rows = 0;
+    }
+}
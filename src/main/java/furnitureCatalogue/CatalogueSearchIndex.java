@@ -0,0 +1,359 @@
+/*
+ * This class is responsible for ranked free-text search over the catalogue.
+ * It keeps an inverted index from each word of Name and the other text fields to the rows that
+ * contain it, scores matching rows with BM25, and keeps the best K in a bounded heap, so a search
+ * only touches the posting lists of the query words instead of scanning the catalogue.
+ * Words in Name count twice, so "Oak Table" ranks a table made of oak above an oak chair sold by
+ * a company called Table. The index listens to the store and is updated on every add, edit and
+ * remove; it follows the store's swap-remove by renumbering the moved row in its posting lists.
+ */
+package furnitureCatalogue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+class CatalogueSearchIndex implements CatalogueStore.Listener {
+    static final float K1 = 1.2f;
+    static final float B = 0.75f;
+    static final int NAME_WEIGHT = 2;
+
+    private final CatalogueStore store;
+    private final int[] fields; // Text fields that are indexed
+    private final int nameField;
+
+    // Term dictionary and one posting list per term
+    private final HashMap<String, Integer> termIds = new HashMap<>();
+    private final ArrayList<Postings> postings = new ArrayList<>();
+
+    // Per row: the terms it contains, its position in each term's postings, and its length
+    private int[][] rowTerms;
+    private int[][] rowPositions;
+    private int[] rowLengths;
+    private long totalLength;
+
+    // Score accumulator reused between searches
+    private float[] scores;
+    private int[] touched;
+
+    /**
+     * Rows of one term, with the weighted number of times the term occurs in each row.
+     * Removing a row moves the last entry into its place.
+     */
+    private static class Postings {
+        int[] rows = new int[4];
+        int[] counts = new int[4];
+        int size;
+
+        int add(int row, int count) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            rows[size] = row;
+            counts[size] = count;
+            return size++;
+        }
+    }
+
+    /**
+     * Builds the index over the current rows and starts following the store.
+     */
+    CatalogueSearchIndex(CatalogueStore store) {
+        this.store = store;
+        ArrayList<Integer> text = new ArrayList<>();
+        for (int field = 0; field < store.fieldCount(); field++) {
+            if (!store.isNumeric(field)) {
+                text.add(field);
+            }
+        }
+        fields = text.stream().mapToInt(Integer::intValue).toArray();
+        nameField = store.fieldOf("Name");
+        allocate(Math.max(16, store.rowCount()));
+        for (int row = 0; row < store.rowCount(); row++) {
+            addRow(row);
+        }
+        store.addListener(this);
+    }
+
+    CatalogueStore getStore() {
+        return store;
+    }
+
+    private void allocate(int capacity) {
+        rowTerms = new int[capacity][];
+        rowPositions = new int[capacity][];
+        rowLengths = new int[capacity];
+        scores = new float[capacity];
+        touched = new int[capacity];
+    }
+
+    private void grow(int capacity) {
+        rowTerms = Arrays.copyOf(rowTerms, capacity);
+        rowPositions = Arrays.copyOf(rowPositions, capacity);
+        rowLengths = Arrays.copyOf(rowLengths, capacity);
+        scores = new float[capacity];
+        touched = new int[capacity];
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits. Apostrophes are dropped, so
+     * "Leon's" is the single word "leons".
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (c != '\'' && word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    private void addRow(int row) {
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        int length = 0;
+        for (int field : fields) {
+            String value = store.getValue(row, field);
+            if (value == null) {
+                continue;
+            }
+            int weight = field == nameField ? NAME_WEIGHT : 1;
+            for (String word : tokenize(value)) {
+                counts.merge(word, weight, Integer::sum);
+                length += weight;
+            }
+        }
+        int[] terms = new int[counts.size()];
+        int[] positions = new int[counts.size()];
+        int k = 0;
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            Integer term = termIds.get(e.getKey());
+            if (term == null) {
+                term = postings.size();
+                termIds.put(e.getKey(), term);
+                postings.add(new Postings());
+            }
+            terms[k] = term;
+            positions[k] = postings.get(term).add(row, e.getValue());
+            k++;
+        }
+        rowTerms[row] = terms;
+        rowPositions[row] = positions;
+        rowLengths[row] = length;
+        totalLength += length;
+    }
+
+    private void removeRow(int row) {
+        int[] terms = rowTerms[row];
+        for (int k = 0; k < terms.length; k++) {
+            Postings p = postings.get(terms[k]);
+            int pos = rowPositions[row][k];
+            int last = --p.size;
+            if (pos != last) {
+                int moved = p.rows[last];
+                p.rows[pos] = moved;
+                p.counts[pos] = p.counts[last];
+                rowPositions[moved][indexOf(rowTerms[moved], terms[k])] = pos;
+            }
+        }
+        totalLength -= rowLengths[row];
+        rowTerms[row] = null;
+        rowPositions[row] = null;
+        rowLengths[row] = 0;
+    }
+
+    /**
+     * Renumbers a row in every posting list it appears in.
+     */
+    private void moveRow(int from, int to) {
+        int[] terms = rowTerms[from];
+        for (int k = 0; k < terms.length; k++) {
+            postings.get(terms[k]).rows[rowPositions[from][k]] = to;
+        }
+        rowTerms[to] = terms;
+        rowPositions[to] = rowPositions[from];
+        rowLengths[to] = rowLengths[from];
+        rowTerms[from] = null;
+        rowPositions[from] = null;
+        rowLengths[from] = 0;
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        if (row >= rowTerms.length) {
+            grow(Math.max(row + 1, rowTerms.length * 2));
+        }
+        addRow(row);
+    }
+
+    @Override
+    public synchronized void rowChanged(int row, ArrayList<String> old) {
+        removeRow(row);
+        addRow(row);
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        removeRow(row);
+        if (movedFrom != row) {
+            moveRow(movedFrom, row);
+        }
+    }
+
+    @Override
+    public synchronized void cleared() {
+        termIds.clear();
+        postings.clear();
+        allocate(rowTerms.length);
+        totalLength = 0;
+    }
+
+    /**
+     * Returns the rows that best match the query, best first, at most k of them.
+     * Rows with equal scores are ordered by id.
+     */
+    synchronized int[] search(String query, int k) {
+        int docs = store.rowCount();
+        if (docs == 0 || k <= 0) {
+            return new int[0];
+        }
+        float avgLength = Math.max(1f, (float) totalLength / docs);
+        int touchedCount = 0;
+        for (String word : new LinkedHashSet<>(tokenize(query))) {
+            Integer term = termIds.get(word);
+            if (term == null) {
+                continue;
+            }
+            Postings p = postings.get(term);
+            if (p.size == 0) {
+                continue;
+            }
+            float idf = (float) Math.log(1 + (docs - p.size + 0.5) / (p.size + 0.5));
+            for (int i = 0; i < p.size; i++) {
+                int row = p.rows[i];
+                float tf = p.counts[i];
+                float norm = K1 * (1 - B + B * rowLengths[row] / avgLength);
+                if (scores[row] == 0) {
+                    touched[touchedCount++] = row;
+                }
+                scores[row] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+        TopK top = new TopK(Math.min(k, touchedCount));
+        for (int i = 0; i < touchedCount; i++) {
+            int row = touched[i];
+            top.offer(scores[row], row);
+            scores[row] = 0;
+        }
+        return top.drain();
+    }
+
+    /**
+     * Bounded min-heap holding the best k (score, row) pairs seen so far.
+     */
+    private class TopK {
+        private final float[] heapScores;
+        private final int[] heapRows;
+        private int size;
+
+        TopK(int k) {
+            heapScores = new float[k];
+            heapRows = new int[k];
+        }
+
+        /**
+         * Returns true if a ranks below b: a lower score, or the same score and a higher id.
+         */
+        private boolean below(float aScore, int aRow, float bScore, int bRow) {
+            if (aScore != bScore) {
+                return aScore < bScore;
+            }
+            return store.idAt(aRow) > store.idAt(bRow);
+        }
+
+        void offer(float score, int row) {
+            if (heapRows.length == 0) {
+                return;
+            }
+            if (size < heapRows.length) {
+                heapScores[size] = score;
+                heapRows[size] = row;
+                siftUp(size++);
+            } else if (below(heapScores[0], heapRows[0], score, row)) {
+                heapScores[0] = score;
+                heapRows[0] = row;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Empties the heap, returning rows best first.
+         */
+        int[] drain() {
+            int[] rows = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                rows[i] = heapRows[0];
+                size--;
+                heapScores[0] = heapScores[size];
+                heapRows[0] = heapRows[size];
+                siftDown(0);
+            }
+            return rows;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!below(heapScores[i], heapRows[i], heapScores[parent], heapRows[parent])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (below(heapScores[child], heapRows[child], heapScores[smallest], heapRows[smallest])) {
+                        smallest = child;
+                    }
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            float s = heapScores[a];
+            heapScores[a] = heapScores[b];
+            heapScores[b] = s;
+            int r = heapRows[a];
+            heapRows[a] = heapRows[b];
+            heapRows[b] = r;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * This class is responsible for the binary snapshot of the catalogue.
+ * A snapshot holds the column store exactly as it sits in memory (ids, numeric columns, dictionaries,
+ * codes and text bytes) behind a versioned header, followed by a CRC32 checksum of the whole file.
+ * Reading one maps the file and copies each column block in bulk, so nothing is parsed from text.
+ * CatalogueFileIO uses the snapshot instead of the CSV whenever the snapshot is newer than the CSV.
+ *
+ * Layout (little-endian):
+ *   magic "NNCS", version, header count, headers, maxLengths count, maxLengths, row count,
+ *   ids block, row widths block, one block per column, CRC32 of everything before it.
+ */
+package furnitureCatalogue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+class CatalogueSnapshot {
+    static final int MAGIC = 0x53434E4E; // "NNCS" read as a little-endian int
+    static final int VERSION = 1;
+
+    private final File file;
+
+    CatalogueSnapshot(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns true if a snapshot exists and was written after the given time.
+     */
+    boolean isNewerThan(long lastModified) {
+        return file.exists() && file.lastModified() > lastModified;
+    }
+
+    /**
+     * Writes the store to a temporary file next to the snapshot, then moves it into place.
+     */
+    void write(CatalogueStore store, int[] maxLengths) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            String[] headers = store.getHeaders();
+            out.putInt(headers.length);
+            for (String header : headers) {
+                out.putString(header);
+            }
+            out.putInt(maxLengths.length);
+            out.putInts(maxLengths, maxLengths.length);
+            store.writeColumns(out);
+            out.finish();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Maps the snapshot, checks its version and checksum, and rebuilds the store.
+     * @param maxLengths Filled with the column widths saved with the snapshot.
+     */
+    CatalogueStore read(int[] maxLengths) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 16 || size > Integer.MAX_VALUE) {
+                throw new IOException("Bad snapshot size: " + size);
+            }
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            crc.update(in.slice(0, (int) size - 8));
+            if (crc.getValue() != in.getLong((int) size - 8)) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            in.limit((int) size - 8);
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a catalogue snapshot");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            String[] headers = new String[in.getInt()];
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = getString(in);
+            }
+            int[] saved = new int[in.getInt()];
+            getInts(in, saved, saved.length);
+            System.arraycopy(saved, 0, maxLengths, 0, Math.min(saved.length, maxLengths.length));
+            CatalogueStore store = new CatalogueStore(headers);
+            store.readColumns(in);
+            return store;
+        }
+    }
+
+    static void getInts(ByteBuffer in, int[] values, int count) {
+        in.asIntBuffer().get(values, 0, count);
+        in.position(in.position() + count * 4);
+    }
+
+    static void getShorts(ByteBuffer in, short[] values, int count) {
+        in.asShortBuffer().get(values, 0, count);
+        in.position(in.position() + count * 2);
+    }
+
+    static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffered little-endian writer that keeps a running CRC32 of everything written.
+     */
+    static class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        void putByte(int value) throws IOException {
+            ensure(1);
+            buf.put((byte) value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buf.putInt(value);
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            int pos = 0;
+            while (pos < count) {
+                ensure(4);
+                int n = Math.min(count - pos, buf.remaining() / 4);
+                buf.asIntBuffer().put(values, pos, n);
+                buf.position(buf.position() + n * 4);
+                pos += n;
+            }
+        }
+
+        void putShorts(short[] values, int count) throws IOException {
+            int pos = 0;
+            while (pos < count) {
+                ensure(2);
+                int n = Math.min(count - pos, buf.remaining() / 2);
+                buf.asShortBuffer().put(values, pos, n);
+                buf.position(buf.position() + n * 2);
+                pos += n;
+            }
+        }
+
+        void putBytes(byte[] values, int offset, int count) throws IOException {
+            int pos = 0;
+            while (pos < count) {
+                ensure(1);
+                int n = Math.min(count - pos, buf.remaining());
+                buf.put(values, offset + pos, n);
+                pos += n;
+            }
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Writes the checksum trailer and flushes everything to the channel.
+         */
+        void finish() throws IOException {
+            flush();
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            trailer.putLong(crc.getValue()).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(false);
+        }
+    }
+}
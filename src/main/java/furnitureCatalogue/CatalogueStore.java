@@ -0,0 +1,1014 @@
+/*
+ * This class holds the in-memory catalogue as columns instead of one ArrayList<String> per entry.
+ * Ids and the numeric fields (Price, Quantity, Weight) are kept in int arrays, and the text fields
+ * are kept as UTF-8 bytes in one shared array per column, so scans over a column stay cache-friendly
+ * and numbers are never re-parsed. Low-cardinality text fields (Furniture Type, Colour, Materials,
+ * Size, Company, Style) are dictionary-encoded: each row keeps a small integer code into a shared
+ * list of distinct values, so equality filters compare codes instead of strings.
+ * Entries live in dense rows; an id-to-row hash map finds the row of an id, and removing an entry
+ * moves the last row into the hole so rows stay dense. Iterating the map therefore goes in row order,
+ * which is insertion order until the first removal, not id order; sort by id where order matters.
+ * The class is also a Map<Integer, ArrayList<String>> so the existing catalogue code keeps working.
+ * Rows handed out through the Map methods are copies: put a row back to change the entry.
+ * Indexes built over the rows register a Listener to be told about every change.
+ * Changes through the Map methods hold the write lock, and listeners run inside it, so a reader holding
+ * readLock() sees the rows and every index over them at the same version while other readers run alongside.
+ */
+package furnitureCatalogue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class CatalogueStore extends AbstractMap<Integer, ArrayList<String>> {
+    /**
+     * Headers (lower case) of the fields that are dictionary-encoded.
+     */
+    static final Set<String> DICTIONARY_HEADERS =
+            Set.of("furniture type", "colour", "materials", "size", "company", "style");
+
+    private final String[] headers;
+    private final Column[] columns;
+    private int[] ids;
+    private byte[] widths;
+    private int size;
+    private volatile long version;
+    private final IdIndex rowOf;
+    // Copied on write, so an index can register from a reader thread while another reader holds the lock
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Receives every change to the rows, after it has been made.
+     */
+    public interface Listener {
+        /**
+         * A new entry was stored in the given (last) row.
+         */
+        default void rowAdded(int row) {
+        }
+
+        /**
+         * An entry's values were replaced; old holds the previous values.
+         */
+        default void rowChanged(int row, ArrayList<String> old) {
+        }
+
+        /**
+         * An entry was removed from row. The entry that was in movedFrom (the old last row) now sits
+         * in row; movedFrom equals row if the removed entry was the last one.
+         */
+        default void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        }
+
+        default void cleared() {
+        }
+    }
+
+    /**
+     * @param headers CSV header row, with the id column first.
+     */
+    public CatalogueStore(String[] headers) {
+        this.headers = headers.clone();
+        int fields = Math.max(headers.length - 1, 0);
+        columns = new Column[fields];
+        for (int i = 0; i < fields; i++) {
+            if (isNumericHeader(headers[i + 1])) {
+                columns[i] = new IntColumn();
+            } else if (DICTIONARY_HEADERS.contains(headers[i + 1].toLowerCase())) {
+                columns[i] = new DictionaryColumn();
+            } else {
+                columns[i] = new StringColumn();
+            }
+        }
+        ids = new int[16];
+        widths = new byte[16];
+        for (Column column : columns) {
+            column.grow(16);
+        }
+        rowOf = new IdIndex();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the lock readers hold to keep the rows from changing under them. Any number of readers can
+     * hold it at once; put, remove and clear wait until they are done.
+     */
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    static boolean isNumericHeader(String header) {
+        String lower = header.toLowerCase();
+        return lower.contains("price") || lower.contains("quantity") || lower.contains("weight");
+    }
+
+    // --- Column access ---
+
+    /**
+     * Returns the header row this store was created with.
+     */
+    public String[] getHeaders() {
+        return headers.clone();
+    }
+
+    /**
+     * Returns the field index (0 = first column after id) for a header, or -1 if there is no such column.
+     */
+    public int fieldOf(String header) {
+        for (int i = 1; i < headers.length; i++) {
+            if (headers[i].equalsIgnoreCase(header)) {
+                return i - 1;
+            }
+        }
+        return -1;
+    }
+
+    public int fieldCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns true if the field is kept as integers.
+     */
+    public boolean isNumeric(int field) {
+        return columns[field] instanceof IntColumn;
+    }
+
+    /**
+     * Returns a counter that goes up with every change to the rows, so a result computed at one
+     * version is still valid while the version stays the same.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Number of rows, equal to size().
+     */
+    public int rowCount() {
+        return size;
+    }
+
+    public int idAt(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Returns the row holding the given id, or -1.
+     */
+    public int rowOf(int id) {
+        return rowOf.get(id);
+    }
+
+    /**
+     * Returns true if the row has a value for the field (shorter rows leave trailing fields empty).
+     */
+    public boolean hasValue(int row, int field) {
+        return field < widths[row];
+    }
+
+    /**
+     * Returns the text of one cell, or null if the row has no value for the field.
+     */
+    public String getValue(int row, int field) {
+        return hasValue(row, field) ? columns[field].get(row) : null;
+    }
+
+    /**
+     * Returns true if the cell holds an integer, so getInt can be used.
+     */
+    public boolean hasInt(int row, int field) {
+        return hasValue(row, field) && columns[field] instanceof IntColumn
+                && ((IntColumn) columns[field]).isInt(row);
+    }
+
+    /**
+     * Returns the integer in a numeric cell. Only meaningful when hasInt is true.
+     */
+    public int getInt(int row, int field) {
+        return ((IntColumn) columns[field]).values[row];
+    }
+
+    /**
+     * Returns the integer a numeric field stores for the given text, or null if the text would be kept
+     * as text (see hasInt). Lets listeners read the old values they are given the way the store did.
+     */
+    public static Integer intValueOf(String value) {
+        return IntColumn.parseCanonical(value);
+    }
+
+    /**
+     * Returns true if the field is dictionary-encoded, so codeAt and the dictionary methods can be used.
+     */
+    public boolean isDictionary(int field) {
+        return columns[field] instanceof DictionaryColumn;
+    }
+
+    /**
+     * Returns the dictionary code of a cell in a dictionary-encoded field.
+     */
+    public int codeAt(int row, int field) {
+        return ((DictionaryColumn) columns[field]).code(row);
+    }
+
+    /**
+     * Returns the number of distinct values ever seen in a dictionary-encoded field.
+     */
+    public int dictionarySize(int field) {
+        return ((DictionaryColumn) columns[field]).values.size();
+    }
+
+    public String dictionaryValue(int field, int code) {
+        return ((DictionaryColumn) columns[field]).values.get(code);
+    }
+
+    /**
+     * Returns the code of a value in a dictionary-encoded field, matching case exactly, or -1 if no
+     * entry has ever held the value.
+     */
+    public int codeOf(int field, String value) {
+        Integer code = ((DictionaryColumn) columns[field]).lookup.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns a table indexed by code that is true for every dictionary value equal to the given
+     * value, ignoring case. The table is looked up once per filter, then rows only compare codes.
+     */
+    public boolean[] codesMatching(int field, String value) {
+        DictionaryColumn column = (DictionaryColumn) columns[field];
+        boolean[] matches = new boolean[column.values.size()];
+        for (int code = 0; code < matches.length; code++) {
+            matches[code] = column.values.get(code).equalsIgnoreCase(value);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns a copy of a row's fields.
+     */
+    public ArrayList<String> getRow(int row) {
+        ArrayList<String> values = new ArrayList<>(widths[row]);
+        for (int i = 0; i < widths[row]; i++) {
+            values.add(columns[i].get(row));
+        }
+        return values;
+    }
+
+    // --- Map methods ---
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        lock.readLock().lock();
+        try {
+            return key instanceof Integer && rowOf.get((Integer) key) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ArrayList<String> get(Object key) {
+        lock.readLock().lock();
+        try {
+            if (!(key instanceof Integer)) {
+                return null;
+            }
+            int row = rowOf.get((Integer) key);
+            return row < 0 ? null : getRow(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the entry, or replaces the one with the same id.
+     * @throws IllegalArgumentException If the id is Integer.MIN_VALUE, which the id index keeps for empty slots.
+     */
+    @Override
+    public ArrayList<String> put(Integer id, ArrayList<String> values) {
+        if (id == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Id " + id + " is reserved");
+        }
+        lock.writeLock().lock();
+        try {
+            int row = rowOf.get(id);
+            ArrayList<String> old = null;
+            if (row < 0) {
+                row = size;
+                ensureCapacity(size + 1);
+                size++;
+                ids[row] = id;
+                rowOf.put(id, row);
+            } else {
+                old = getRow(row);
+            }
+            int width = Math.min(values.size(), columns.length);
+            widths[row] = (byte) width;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].set(row, i < width ? values.get(i) : null);
+            }
+            for (Column column : columns) {
+                column.maybeCompact(size);
+            }
+            version++;
+            for (Listener listener : listeners) {
+                if (old == null) {
+                    listener.rowAdded(row);
+                } else {
+                    listener.rowChanged(row, old);
+                }
+            }
+            return old;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public ArrayList<String> remove(Object key) {
+        lock.writeLock().lock();
+        try {
+            if (!(key instanceof Integer)) {
+                return null;
+            }
+            int row = rowOf.get((Integer) key);
+            if (row < 0) {
+                return null;
+            }
+            ArrayList<String> old = getRow(row);
+            removeRow(row, old);
+            return old;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     * @param old The row's values for the listeners, or null to read them here.
+     */
+    private void removeRow(int row, ArrayList<String> old) {
+        lock.writeLock().lock();
+        try {
+            if (old == null && !listeners.isEmpty()) {
+                old = getRow(row);
+            }
+            int last = size - 1;
+            int id = ids[row];
+            rowOf.remove(id);
+            if (row != last) {
+                ids[row] = ids[last];
+                widths[row] = widths[last];
+                for (Column column : columns) {
+                    column.move(last, row);
+                }
+                rowOf.put(ids[row], row);
+            }
+            for (Column column : columns) {
+                column.clear(last);
+            }
+            size--;
+            for (Column column : columns) {
+                column.maybeCompact(size);
+            }
+            version++;
+            for (Listener listener : listeners) {
+                listener.rowRemoved(row, id, old, last);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                for (Column column : columns) {
+                    column.clear(row);
+                }
+            }
+            rowOf.clear();
+            size = 0;
+            version++;
+            for (Listener listener : listeners) {
+                listener.cleared();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, ArrayList<String>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<Integer, ArrayList<String>>> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+                    private int current = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, ArrayList<String>> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        current = next++;
+                        return new RowEntry(ids[current], getRow(current));
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (current < 0) {
+                            throw new IllegalStateException();
+                        }
+                        removeRow(current, null);
+                        next = current; // The last row was moved here and has not been visited
+                        current = -1;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Map entry over a copied row. setValue writes the row back to the store.
+     */
+    private class RowEntry extends AbstractMap.SimpleEntry<Integer, ArrayList<String>> {
+        private static final long serialVersionUID = 1L;
+
+        RowEntry(Integer id, ArrayList<String> row) {
+            super(id, row);
+        }
+
+        @Override
+        public ArrayList<String> setValue(ArrayList<String> value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        widths = Arrays.copyOf(widths, newCapacity);
+        for (Column column : columns) {
+            column.grow(newCapacity);
+        }
+    }
+
+    // --- Snapshots ---
+
+    /**
+     * Writes the row count, ids, row widths and one block per column to a snapshot.
+     */
+    void writeColumns(CatalogueSnapshot.Writer out) throws IOException {
+        out.putInt(size);
+        out.putInts(ids, size);
+        out.putBytes(widths, 0, size);
+        for (Column column : columns) {
+            out.putByte(column.type());
+            column.write(out, size);
+        }
+    }
+
+    /**
+     * Fills an empty store from the blocks written by writeColumns.
+     */
+    void readColumns(ByteBuffer in) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int rows = in.getInt();
+            clear();
+            ensureCapacity(rows);
+            CatalogueSnapshot.getInts(in, ids, rows);
+            in.get(widths, 0, rows);
+            for (Column column : columns) {
+                byte type = in.get();
+                if (type != column.type()) {
+                    throw new IOException("Snapshot column type " + type + " does not match " + column.type());
+                }
+                column.read(in, rows);
+            }
+            size = rows;
+            for (int row = 0; row < rows; row++) {
+                rowOf.put(ids[row], row);
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Columns ---
+
+    /**
+     * Storage for one field of every row.
+     */
+    abstract static class Column {
+        abstract String get(int row);
+
+        /**
+         * Sets a cell. A null value stores an empty placeholder for a row that is too short.
+         */
+        abstract void set(int row, String value);
+
+        /**
+         * Copies the cell at from over the cell at to.
+         */
+        abstract void move(int from, int to);
+
+        abstract void clear(int row);
+
+        abstract void grow(int capacity);
+
+        void maybeCompact(int rows) {
+        }
+
+        /**
+         * Tag written before the column block in a snapshot.
+         */
+        abstract byte type();
+
+        abstract void write(CatalogueSnapshot.Writer out, int rows) throws IOException;
+
+        /**
+         * Reads a block written by write. The column has already been grown to hold the rows.
+         */
+        abstract void read(ByteBuffer in, int rows);
+    }
+
+    /**
+     * Integer column. Values that are not canonical integers (e.g. "300.50" or "") are kept as text
+     * on the side so they round-trip unchanged.
+     */
+    static class IntColumn extends Column {
+        int[] values = new int[0];
+        private final BitSet textRows = new BitSet();
+        private final HashMap<Integer, String> text = new HashMap<>();
+
+        boolean isInt(int row) {
+            return !textRows.get(row);
+        }
+
+        @Override
+        String get(int row) {
+            return textRows.get(row) ? text.get(row) : String.valueOf(values[row]);
+        }
+
+        @Override
+        void set(int row, String value) {
+            Integer parsed = parseCanonical(value);
+            if (parsed != null) {
+                values[row] = parsed;
+                if (textRows.get(row)) {
+                    textRows.clear(row);
+                    text.remove(row);
+                }
+            } else {
+                values[row] = 0;
+                textRows.set(row);
+                text.put(row, value == null ? "" : value);
+            }
+        }
+
+        @Override
+        void move(int from, int to) {
+            values[to] = values[from];
+            if (textRows.get(from)) {
+                textRows.set(to);
+                text.put(to, text.get(from));
+            } else if (textRows.get(to)) {
+                textRows.clear(to);
+                text.remove(to);
+            }
+        }
+
+        @Override
+        void clear(int row) {
+            values[row] = 0;
+            if (textRows.get(row)) {
+                textRows.clear(row);
+                text.remove(row);
+            }
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        byte type() {
+            return 0;
+        }
+
+        @Override
+        void write(CatalogueSnapshot.Writer out, int rows) throws IOException {
+            out.putInts(values, rows);
+            out.putInt(textRows.get(0, rows).cardinality());
+            for (int row = textRows.nextSetBit(0); row >= 0 && row < rows; row = textRows.nextSetBit(row + 1)) {
+                out.putInt(row);
+                out.putString(text.get(row));
+            }
+        }
+
+        @Override
+        void read(ByteBuffer in, int rows) {
+            CatalogueSnapshot.getInts(in, values, rows);
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int row = in.getInt();
+                textRows.set(row);
+                text.put(row, CatalogueSnapshot.getString(in));
+            }
+        }
+
+        /**
+         * Parses a value only if it prints back exactly the same, so "007" or "+5" stay text.
+         */
+        static Integer parseCanonical(String value) {
+            if (value == null || value.isEmpty() || value.length() > 11) {
+                return null;
+            }
+            try {
+                int parsed = Integer.parseInt(value);
+                return String.valueOf(parsed).equals(value) ? parsed : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Text column. Every value is stored as UTF-8 bytes in one shared array, addressed by offset and
+     * length. Overwritten values leave garbage behind, which is reclaimed once it outweighs live data.
+     */
+    static class StringColumn extends Column {
+        private byte[] arena = new byte[1024];
+        private int used;
+        private int garbage;
+        int[] offsets = new int[0];
+        int[] lengths = new int[0];
+
+        @Override
+        String get(int row) {
+            return new String(arena, offsets[row], lengths[row], StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void set(int row, String value) {
+            garbage += lengths[row];
+            if (value == null || value.isEmpty()) {
+                offsets[row] = 0;
+                lengths[row] = 0;
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (used + bytes.length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(used + bytes.length, arena.length * 2));
+            }
+            System.arraycopy(bytes, 0, arena, used, bytes.length);
+            offsets[row] = used;
+            lengths[row] = bytes.length;
+            used += bytes.length;
+        }
+
+        @Override
+        void move(int from, int to) {
+            garbage += lengths[to];
+            offsets[to] = offsets[from];
+            lengths[to] = lengths[from];
+            offsets[from] = 0;
+            lengths[from] = 0;
+        }
+
+        @Override
+        void clear(int row) {
+            garbage += lengths[row];
+            offsets[row] = 0;
+            lengths[row] = 0;
+        }
+
+        @Override
+        void grow(int capacity) {
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+
+        @Override
+        void maybeCompact(int rows) {
+            if (garbage < 64 * 1024 || garbage < used - garbage) {
+                return;
+            }
+            byte[] compacted = new byte[Math.max(1024, (used - garbage) * 2)];
+            int pos = 0;
+            for (int row = 0; row < rows; row++) {
+                System.arraycopy(arena, offsets[row], compacted, pos, lengths[row]);
+                offsets[row] = pos;
+                pos += lengths[row];
+            }
+            arena = compacted;
+            used = pos;
+            garbage = 0;
+        }
+
+        @Override
+        byte type() {
+            return 1;
+        }
+
+        /**
+         * Writes the lengths, then the live bytes in row order, so the snapshot never holds garbage.
+         */
+        @Override
+        void write(CatalogueSnapshot.Writer out, int rows) throws IOException {
+            out.putInts(lengths, rows);
+            out.putInt(used - garbage);
+            for (int row = 0; row < rows; row++) {
+                out.putBytes(arena, offsets[row], lengths[row]);
+            }
+        }
+
+        @Override
+        void read(ByteBuffer in, int rows) {
+            CatalogueSnapshot.getInts(in, lengths, rows);
+            int total = in.getInt();
+            arena = new byte[Math.max(1024, total)];
+            in.get(arena, 0, total);
+            int pos = 0;
+            for (int row = 0; row < rows; row++) {
+                offsets[row] = pos;
+                pos += lengths[row];
+            }
+            used = total;
+            garbage = 0;
+        }
+    }
+
+    /**
+     * Dictionary-encoded text column. Codes start as bytes and are widened to shorts or ints only
+     * when the number of distinct values requires it.
+     */
+    static class DictionaryColumn extends Column {
+        final ArrayList<String> values = new ArrayList<>();
+        private final HashMap<String, Integer> lookup = new HashMap<>();
+        private byte[] byteCodes = new byte[0];
+        private short[] shortCodes;
+        private int[] intCodes;
+
+        int code(int row) {
+            if (byteCodes != null) {
+                return byteCodes[row] & 0xFF;
+            }
+            return shortCodes != null ? shortCodes[row] & 0xFFFF : intCodes[row];
+        }
+
+        /**
+         * Returns the code for a value, adding it to the dictionary if it is new.
+         */
+        int encode(String value) {
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                lookup.put(value, code);
+                widenFor(code);
+            }
+            return code;
+        }
+
+        private void widenFor(int code) {
+            if (byteCodes != null && code > 0xFF) {
+                shortCodes = new short[byteCodes.length];
+                for (int i = 0; i < byteCodes.length; i++) {
+                    shortCodes[i] = (short) (byteCodes[i] & 0xFF);
+                }
+                byteCodes = null;
+            }
+            if (shortCodes != null && code > 0xFFFF) {
+                intCodes = new int[shortCodes.length];
+                for (int i = 0; i < shortCodes.length; i++) {
+                    intCodes[i] = shortCodes[i] & 0xFFFF;
+                }
+                shortCodes = null;
+            }
+        }
+
+        private void setCode(int row, int code) {
+            if (byteCodes != null) {
+                byteCodes[row] = (byte) code;
+            } else if (shortCodes != null) {
+                shortCodes[row] = (short) code;
+            } else {
+                intCodes[row] = code;
+            }
+        }
+
+        @Override
+        String get(int row) {
+            return values.get(code(row));
+        }
+
+        @Override
+        void set(int row, String value) {
+            setCode(row, encode(value == null ? "" : value));
+        }
+
+        @Override
+        void move(int from, int to) {
+            setCode(to, code(from));
+        }
+
+        @Override
+        void clear(int row) {
+            setCode(row, 0);
+        }
+
+        @Override
+        void grow(int capacity) {
+            if (byteCodes != null) {
+                byteCodes = Arrays.copyOf(byteCodes, capacity);
+            } else if (shortCodes != null) {
+                shortCodes = Arrays.copyOf(shortCodes, capacity);
+            } else {
+                intCodes = Arrays.copyOf(intCodes, capacity);
+            }
+        }
+
+        @Override
+        byte type() {
+            return 2;
+        }
+
+        @Override
+        void write(CatalogueSnapshot.Writer out, int rows) throws IOException {
+            out.putInt(values.size());
+            for (String value : values) {
+                out.putString(value);
+            }
+            if (byteCodes != null) {
+                out.putByte(1);
+                out.putBytes(byteCodes, 0, rows);
+            } else if (shortCodes != null) {
+                out.putByte(2);
+                out.putShorts(shortCodes, rows);
+            } else {
+                out.putByte(4);
+                out.putInts(intCodes, rows);
+            }
+        }
+
+        @Override
+        void read(ByteBuffer in, int rows) {
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                String value = CatalogueSnapshot.getString(in);
+                lookup.put(value, values.size());
+                values.add(value);
+            }
+            int width = in.get();
+            widenFor(width == 1 ? 0 : width == 2 ? 0x100 : 0x10000);
+            if (byteCodes != null) {
+                in.get(byteCodes, 0, rows);
+            } else if (shortCodes != null) {
+                CatalogueSnapshot.getShorts(in, shortCodes, rows);
+            } else {
+                CatalogueSnapshot.getInts(in, intCodes, rows);
+            }
+        }
+    }
+
+    /**
+     * Open-addressing hash map from id to row, without boxing. Integer.MIN_VALUE marks empty slots, so it
+     * is never a key: put rejects it, and get and remove find nothing for it.
+     */
+    static class IdIndex {
+        private static final int EMPTY = Integer.MIN_VALUE;
+        private int[] keys;
+        private int[] values;
+        private int count;
+
+        IdIndex() {
+            keys = new int[32];
+            values = new int[32];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private static int slot(int key, int mask) {
+            int h = key * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        int get(int key) {
+            if (key == EMPTY) {
+                return -1;
+            }
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                if (keys[i] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(int key, int value) {
+            if (key == EMPTY) {
+                throw new IllegalArgumentException("Id " + key + " is reserved");
+            }
+            if ((count + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                count++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        void remove(int key) {
+            if (key == EMPTY) {
+                return;
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == EMPTY) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            // Shift later entries of the probe run back so lookups never stop early
+            int gap = i;
+            for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = EMPTY;
+            count--;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            count = 0;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
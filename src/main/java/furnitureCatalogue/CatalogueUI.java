@@ -9,24 +9,47 @@
 package furnitureCatalogue;
 
 import furnitureCatalogue.SearchPackage.SearchController;
+import furnitureCatalogue.SearchPackage.SearchPage;
+import furnitureCatalogue.SearchPackage.SearchQuery;
 import furnitureCatalogue.SearchPackage.SearchView;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 public class CatalogueUI extends JFrame {
-    public HashMap<Integer, ArrayList<String>> catalogue;
+    // The window is never serialized, and unlike the HashMap it replaced the store is not Serializable
+    public transient CatalogueStore catalogue;
     public static int[] maxLengths = new int[10];
+    /**
+     * Number of results shown at a time by sort and advanced search.
+     */
+    static final int PAGE_SIZE = 50;
     public CatalogueFileIO fileIO;
     public String[] headers;
     private SearchController c;
     private SearchView v;
+    // Output area of the Swing UI, where results of background searches are printed once they arrive
+    private JTextArea outputArea;
+    // Enabled while the last paged result has more pages to show
+    private JButton moreButton;
+    // Prints the next page of the last paged result, or null if it has none
+    private transient Runnable nextPage;
+    // Background search started last by this window, cancelled when the window starts another
+    private transient CompletableFuture<SearchPage> pendingSearch;
     protected Login login;
     protected String role;
 
@@ -51,6 +74,7 @@ public class CatalogueUI extends JFrame {
         }
         fileIO = new CatalogueFileIO("Sample.csv", this);
         c = SearchController.getInstance();
+        c.setCatalogue(catalogue);
         v = SearchView.getInstance();
         initSwingUI();
     }
@@ -71,7 +95,7 @@ public class CatalogueUI extends JFrame {
 
         JPanel buttonPanel = new JPanel();
         buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.Y_AXIS));
-        JTextArea outputArea = new JTextArea();
+        outputArea = new JTextArea();
         outputArea.setEditable(false);
         // FONT MAKES SURE THAT SPACING IS CONSISTENT, NOT NEEDED IF/WHEN A TABLE IS USED FOR OUTPUT
         outputArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
@@ -129,18 +153,72 @@ public class CatalogueUI extends JFrame {
             addButton(buttonPanel, "Search",
                     e -> captureConsoleOutput(outputArea, this::specificSearchSwing));
         }
+        moreButton = addButton(buttonPanel, "More Results",
+                e -> captureConsoleOutput(outputArea, this::showMoreResults));
+        moreButton.setEnabled(false);
         addButton(buttonPanel, "Exit", e -> System.exit(0));
         mainPanel.add(buttonPanel, BorderLayout.WEST);
         mainPanel.add(scrollPane, BorderLayout.CENTER);
     }
 
     // Helper method to create and add a button to a panel.
-    private void addButton(JPanel panel, String text, ActionListener al) {
+    private JButton addButton(JPanel panel, String text, ActionListener al) {
         JButton btn = new JButton(text);
         btn.setAlignmentX(Component.CENTER_ALIGNMENT);
         btn.addActionListener(al);
         panel.add(btn);
         panel.add(Box.createVerticalStrut(10));
+        return btn;
+    }
+
+    /**
+     * Asks for an item name, listing the catalogue names that start with what has been typed so far,
+     * most stocked first. Clicking a suggestion puts it in the text field.
+     * @return Name entered, or null if the dialog was cancelled.
+     */
+    private String promptName(String message) {
+        JTextField field = new JTextField(25);
+        DefaultListModel<String> suggestions = new DefaultListModel<>();
+        JList<String> list = new JList<>(suggestions);
+        list.setVisibleRowCount(CatalogueFileIO.DEFAULT_COMPLETIONS);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            private void suggest() {
+                suggestions.clear();
+                if (!field.getText().isEmpty()) {
+                    suggestions.addAll(fileIO.autocomplete(field.getText()));
+                }
+            }
+
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                suggest();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                suggest();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                String picked = list.getSelectedValue();
+                if (picked != null) {
+                    field.setText(picked);
+                }
+            }
+        });
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        panel.add(new JLabel(message), BorderLayout.NORTH);
+        panel.add(field, BorderLayout.CENTER);
+        panel.add(new JScrollPane(list), BorderLayout.SOUTH);
+        int result = JOptionPane.showConfirmDialog(this, panel, "Search",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        return result == JOptionPane.OK_OPTION ? field.getText() : null;
     }
 
     // Capture console output and redirect it to the JTextArea.
@@ -200,10 +278,15 @@ public class CatalogueUI extends JFrame {
 
     // --- Swing-based catalogue methods (display, view, edit, add, etc.) ---
 
+    /**
+     * Lists the catalogue in id order, a page at a time. Listing by id checks nothing and keeps only a
+     * page of rows, so the first page is fetched directly rather than in the background.
+     */
     public void displayEntriesSwing() {
         System.out.println();
         printTableHeader();
-        catalogue.entrySet().forEach(this::printTableRow);
+        SearchQuery query = new SearchQuery("", Map.of(), Map.of(), headers[0], true);
+        showPages(query, c.searchPage(query, 0, PAGE_SIZE));
         System.out.println();
     }
 
@@ -237,6 +320,8 @@ public class CatalogueUI extends JFrame {
             }
             rowIndex++;
         }
+        // The store iterates in row order, which removals shuffle, so list the entries by id
+        Arrays.sort(data, Comparator.comparingInt(r -> (Integer) r[0]));
 
         JTable table = new JTable(data, columnNames) {
             @Override
@@ -347,7 +432,7 @@ public class CatalogueUI extends JFrame {
                 }
             }
             catalogue.put(id, row);
-            fileIO.editCSVLine(String.valueOf(id), id + "," + String.join(",", row));
+            fileIO.editCSVLine(String.valueOf(id), CatalogueCsvReader.formatLine(id, row));
             System.out.println("Updated entry for ID " + id);
         } else {
             System.out.println("Edit cancelled.");
@@ -400,7 +485,7 @@ public class CatalogueUI extends JFrame {
                 }
             }
             catalogue.put(id, row);
-            fileIO.addCSVLine(id + "," + String.join(",", row));
+            fileIO.addCSVLine(CatalogueCsvReader.formatLine(id, row));
             System.out.println("Added entry ID=" + id);
         } else {
             System.out.println("Add entry cancelled.");
@@ -430,24 +515,20 @@ public class CatalogueUI extends JFrame {
     }
 
     private void specificSearchSwing() {
-        String name = JOptionPane.showInputDialog(this, "Enter exact name to search:");
+        String name = promptName("Enter exact name to search:");
         if (name == null || name.isEmpty()) {
             System.out.println("Cancelled or blank.");
             return;
         }
-        boolean found = false;
-        for (Map.Entry<Integer, ArrayList<String>> entry : catalogue.entrySet()) {
-            if (entry.getValue().get(0).equals(name)) {
-                found = true;
-                int id = entry.getKey();
-                System.out.println("Found ID=" + id);
-                ArrayList<String> row = entry.getValue();
-                for (int i = 0; i < row.size(); i++) {
-                    System.out.println("   " + headers[i + 1] + ": " + row.get(i));
-                }
+        List<Integer> ids = fileIO.findByName(name);
+        for (int id : ids) {
+            System.out.println("Found ID=" + id);
+            ArrayList<String> row = catalogue.get(id);
+            for (int i = 0; i < row.size(); i++) {
+                System.out.println("   " + headers[i + 1] + ": " + row.get(i));
             }
         }
-        if (!found) {
+        if (ids.isEmpty()) {
             System.out.println("No item found with that name.");
         }
     }
@@ -470,15 +551,8 @@ public class CatalogueUI extends JFrame {
             return;
         }
         boolean ascending = mode.equalsIgnoreCase("A");
-        List<Map.Entry<Integer, ArrayList<String>>> myList = getEntries(index);
-        if (!ascending) {
-            Collections.reverse(myList);
-        }
-        printTableHeader();
-        for (Map.Entry<Integer, ArrayList<String>> entry : myList) {
-            printTableRow(entry);
-        }
         System.out.println("Sorted by: " + field + " (" + (ascending ? "A" : "D") + ")");
+        showPagesAsync(new SearchQuery("", Map.of(), Map.of(), field, ascending));
     }
 
     private void filterEntriesSwing() {
@@ -508,13 +582,9 @@ public class CatalogueUI extends JFrame {
                     minVal = maxVal;
                     maxVal = temp;
                 }
-                printTableHeader();
-                for (Map.Entry<Integer, ArrayList<String>> e : catalogue.entrySet()) {
-                    int val = (index == 0) ? e.getKey() : Integer.parseInt(e.getValue().get(index - 1));
-                    if (val >= minVal && val <= maxVal) {
-                        printTableRow(e);
-                    }
-                }
+                // Answered from the search engine's sorted index, in order of the field
+                List<String> range = List.of(String.valueOf(minVal), String.valueOf(maxVal));
+                showPagesAsync(new SearchQuery("", Map.of(), Map.of(field, range), field, true));
             } catch (NumberFormatException ex) {
                 System.out.println("Invalid numeric input. Aborting.");
             }
@@ -525,22 +595,33 @@ public class CatalogueUI extends JFrame {
                 return;
             }
             printTableHeader();
-            for (Map.Entry<Integer, ArrayList<String>> e : catalogue.entrySet()) {
-                String val = e.getValue().get(index - 1);
-                if (val.equalsIgnoreCase(match)) {
-                    printTableRow(e);
+            int col = index - 1;
+            if (catalogue.isDictionary(col)) {
+                // Resolve the match against the dictionary once, then compare codes per row
+                boolean[] codes = catalogue.codesMatching(col, match);
+                for (int row = 0; row < catalogue.rowCount(); row++) {
+                    if (catalogue.hasValue(row, col) && codes[catalogue.codeAt(row, col)]) {
+                        printTableRow(row);
+                    }
+                }
+            } else {
+                for (int row = 0; row < catalogue.rowCount(); row++) {
+                    String val = catalogue.getValue(row, col);
+                    if (val != null && val.equalsIgnoreCase(match)) {
+                        printTableRow(row);
+                    }
                 }
             }
         }
     }
 
     private void advancedSearchSwing() {
-        v.filters.clear();
-        v.ranges.clear();
-        while (true) {
-            v.query = JOptionPane.showInputDialog(
-                    this, "Enter name of item:");
-            break;
+        Map<String, String> filters = new LinkedHashMap<>();
+        Map<String, List<String>> ranges = new LinkedHashMap<>();
+        String name = promptName("Enter name of item:");
+        if (name == null) {
+            System.out.println("Cancelled. No advanced search done.");
+            return;
         }
         while (true) {
             String field = JOptionPane.showInputDialog(
@@ -560,12 +641,12 @@ public class CatalogueUI extends JFrame {
                     ArrayList<String> r = new ArrayList<>();
                     r.add(min);
                     r.add(max);
-                    v.ranges.put(field, r);
+                    ranges.put(field, r);
                 }
             } else {
                 String val = JOptionPane.showInputDialog(this, "Filter value for " + field + ":");
                 if (val != null) {
-                    v.filters.put(field, val);
+                    filters.put(field, val);
                 }
             }
         }
@@ -575,15 +656,103 @@ public class CatalogueUI extends JFrame {
             System.out.println("Cancelled. No advanced search done.");
             return;
         }
-        v.sortCategory = sortField;
         String mode = JOptionPane.showInputDialog(this, "Ascending or Descending? (A/D)");
         if (mode == null) {
             System.out.println("Cancelled. No advanced search done.");
             return;
         }
-        v.sortMode = mode.equalsIgnoreCase("A");
-        printTableHeader();
-        c.searchQuery();
+        showPagesAsync(new SearchQuery(name, filters, ranges, sortField, mode.equalsIgnoreCase("A")));
+    }
+
+    /**
+     * Starts a search on a background thread so the window stays responsive, and prints its first page
+     * once it arrives. A newer search replaces this one.
+     */
+    private void showPagesAsync(SearchQuery query) {
+        System.out.println("Searching...");
+        setNextPage(null);
+        showWhenReady(query, c.searchPageAsync(query, 0, PAGE_SIZE), true);
+    }
+
+    /**
+     * Prints a page of a background search on the Swing event thread once it arrives. Only the newest
+     * search of this window matters, so the one before is cancelled if it is still running; searches of
+     * other windows are left alone.
+     */
+    private void showWhenReady(SearchQuery query, CompletableFuture<SearchPage> pending, boolean first) {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+        }
+        pendingSearch = pending;
+        pending.whenComplete((page, e) -> SwingUtilities.invokeLater(() ->
+                captureConsoleOutput(outputArea, () -> showSearchResult(query, page, e, first))));
+    }
+
+    /**
+     * Prints the outcome of a background search: a page, under the table header if it is the first, or
+     * why there is none.
+     */
+    private void showSearchResult(SearchQuery query, SearchPage page, Throwable error, boolean first) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause == null) {
+            if (first) {
+                printTableHeader();
+            }
+            showPages(query, page);
+        } else if (cause instanceof CancellationException) {
+            System.out.println("Search replaced by a newer one.");
+        } else if (cause instanceof TimeoutException) {
+            System.out.println("Search took too long and was stopped.");
+        } else if (cause instanceof IllegalArgumentException) {
+            System.out.println("Invalid search: " + cause.getMessage());
+        } else {
+            cause.printStackTrace();
+        }
+    }
+
+    /**
+     * Prints a page that has already been fetched and, if there are more, leaves the next one to More
+     * Results, so the page is on screen before the user decides whether to read on. Later pages are
+     * fetched in the background, and every page comes from the same query, even if the view is changed
+     * in the meantime.
+     */
+    private void showPages(SearchQuery query, SearchPage page) {
+        for (int i = 0; i < page.getIds().size(); i++) {
+            printTableRow(page.getIds().get(i), page.getRows().get(i));
+        }
+        if (!page.hasNext()) {
+            System.out.println(page.getTotal() + " result(s).");
+            setNextPage(null);
+            return;
+        }
+        int shown = page.getOffset() + page.getIds().size();
+        System.out.println("Showing " + shown + " of " + page.getTotal()
+                + " result(s). Press More Results for the next " + PAGE_SIZE + ".");
+        SearchPage.Cursor next = page.getNext();
+        setNextPage(() -> {
+            System.out.println("Searching...");
+            showWhenReady(query, c.searchPageAsync(query, next, PAGE_SIZE), false);
+        });
+    }
+
+    /**
+     * Prints the next page of the last paged result, if it has one.
+     */
+    private void showMoreResults() {
+        Runnable action = nextPage;
+        if (action == null) {
+            System.out.println("No more results.");
+            return;
+        }
+        setNextPage(null);
+        action.run();
+    }
+
+    private void setNextPage(Runnable action) {
+        nextPage = action;
+        if (moreButton != null) {
+            moreButton.setEnabled(action != null);
+        }
     }
 
     private void randomEntrySwing() {
@@ -592,8 +761,9 @@ public class CatalogueUI extends JFrame {
             return;
         }
         Random rand = new Random();
-        Integer id = (Integer) catalogue.keySet().toArray()[rand.nextInt(catalogue.size())];
-        ArrayList<String> row = catalogue.get(id);
+        int index = rand.nextInt(catalogue.rowCount());
+        int id = catalogue.idAt(index);
+        ArrayList<String> row = catalogue.getRow(index);
         System.out.println("Random item: ID #" + id + " => " + row.get(0));
         for (int i = 0; i < row.size(); i++) {
             System.out.println("   " + headers[i + 1] + ": " + row.get(i));
@@ -618,9 +788,11 @@ public class CatalogueUI extends JFrame {
         System.out.println(sb);
     }
 
-    private void printTableRow(Map.Entry<Integer, ArrayList<String>> entry) {
-        Integer key = entry.getKey();
-        ArrayList<String> row = entry.getValue();
+    private void printTableRow(int row) {
+        printTableRow(catalogue.idAt(row), catalogue.getRow(row));
+    }
+
+    private void printTableRow(int key, List<String> row) {
         StringBuilder sb = new StringBuilder(key + "\t");
         for (int i = 0; i < row.size(); i++) {
             sb.append(row.get(i));
@@ -632,24 +804,6 @@ public class CatalogueUI extends JFrame {
         System.out.println(sb);
     }
 
-    private List<Map.Entry<Integer, ArrayList<String>>> getEntries(int index) {
-        List<Map.Entry<Integer, ArrayList<String>>> list = new ArrayList<>(catalogue.entrySet());
-        Comparator<Map.Entry<Integer, ArrayList<String>>> comp;
-        if (index == 2 || index == 7 || index == 10) {
-            comp = (o1, o2) -> {
-                int n = Integer.parseInt(o1.getValue().get(index - 1));
-                int m = Integer.parseInt(o2.getValue().get(index - 1));
-                return Integer.compare(n, m);
-            };
-        } else if (index == 0) {
-            comp = (o1, o2) -> Integer.compare(o1.getKey(), o2.getKey());
-        } else {
-            comp = (o1, o2) -> o1.getValue().get(index - 1).compareTo(o2.getValue().get(index - 1));
-        }
-        list.sort(comp);
-        return list;
-    }
-
     // --- Command-line interface wrapper methods for testing ---
 
     public void commandLineMenu() {
@@ -729,7 +883,7 @@ public class CatalogueUI extends JFrame {
             }
         }
         catalogue.put(id, value);
-        fileIO.editCSVLine(String.valueOf(id), id + "," + String.join(",", value));
+        fileIO.editCSVLine(String.valueOf(id), CatalogueCsvReader.formatLine(id, value));
     }
 
     public void addEntry() {
@@ -760,7 +914,7 @@ public class CatalogueUI extends JFrame {
             value.add(input);
         }
         catalogue.put(id, value);
-        fileIO.addCSVLine(id + "," + String.join(",", value));
+        fileIO.addCSVLine(CatalogueCsvReader.formatLine(id, value));
     }
 
     public void removeEntry() {
@@ -795,17 +949,15 @@ public class CatalogueUI extends JFrame {
             System.out.println("Blank input detected (Returning).");
             return;
         }
-        boolean found = false;
-        for (ArrayList<String> value : catalogue.values()) {
-            if (value.get(0).equals(inp)) {
-                found = true;
-                System.out.println(inp);
-                for (int i = 0; i < value.size(); i++) {
-                    System.out.println("\t" + headers[i + 1] + ": " + value.get(i));
-                }
+        List<Integer> ids = fileIO.findByName(inp);
+        for (int id : ids) {
+            ArrayList<String> value = catalogue.get(id);
+            System.out.println(inp);
+            for (int i = 0; i < value.size(); i++) {
+                System.out.println("\t" + headers[i + 1] + ": " + value.get(i));
             }
         }
-        if (!found) {
+        if (ids.isEmpty()) {
             System.out.println("No item found with that name");
         }
     }
@@ -0,0 +1,288 @@
+/*
+ * This class is responsible for writing catalogue changes to the change log in the background.
+ * Adds, edits and deletes are queued and the caller returns right away; a daemon writer thread
+ * drains the queue in batches, one sequential append per batch, once the batch is full or the
+ * oldest queued change has waited long enough. Repeated changes to the same id that are still
+ * queued are folded into one record, so a bulk edit of the same rows writes each row once.
+ * flush() asks for the queue to be written now, and awaitDurable() blocks until every change
+ * queued so far is on disk. A batch that fails to write goes back to the front of the queue and is
+ * retried with a growing delay, so a change is never counted as durable before it is on disk.
+ * A shutdown hook drains the queue when the program exits.
+ */
+package furnitureCatalogue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+class CatalogueWriteBehind {
+    /**
+     * Default number of queued changes that triggers a write, overridden with -Dcatalogue.writeBatch.
+     */
+    static final int DEFAULT_MAX_BATCH = 512;
+    /**
+     * Default time in milliseconds a change may wait in the queue, overridden with -Dcatalogue.writeLatency.
+     */
+    static final long DEFAULT_MAX_LATENCY = 50;
+    /**
+     * Delay in milliseconds before the first retry of a failed write, doubled after each failure.
+     */
+    static final long RETRY_DELAY = 100;
+    /**
+     * Longest delay in milliseconds between retries of a failed write.
+     */
+    static final long MAX_RETRY_DELAY = 5000;
+    /**
+     * Attempts made to write what is queued once the writer is closing, before the changes are given up.
+     */
+    static final int CLOSE_ATTEMPTS = 3;
+
+    private final CatalogueChangeLog changeLog;
+    private final int maxBatch;
+    private final long maxLatency;
+    private final Thread writer;
+    private final Thread shutdownHook;
+
+    // Guarded by this
+    private ArrayList<CatalogueChangeLog.Record> pending = new ArrayList<>();
+    private final HashMap<String, Integer> pendingIndex = new HashMap<>();
+    private long firstPendingAt;
+    private long submitted;
+    private long durable;
+    private long flushRequested;
+    private boolean closed;
+    private IOException lastError;
+    // Failed writes in a row, and in total so awaitDurable can tell a new failure from an old one
+    private int failures;
+    private long failedWrites;
+    private long retryAt;
+    private long batches;
+    private long coalesced;
+
+    CatalogueWriteBehind(CatalogueChangeLog changeLog) {
+        this(changeLog, Integer.getInteger("catalogue.writeBatch", DEFAULT_MAX_BATCH),
+                Long.getLong("catalogue.writeLatency", DEFAULT_MAX_LATENCY));
+    }
+
+    CatalogueWriteBehind(CatalogueChangeLog changeLog, int maxBatch, long maxLatencyMillis) {
+        this.changeLog = changeLog;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxLatency = Math.max(0, maxLatencyMillis);
+        writer = new Thread(this::run, "catalogue-writer");
+        writer.setDaemon(true);
+        writer.start();
+        shutdownHook = new Thread(this::close, "catalogue-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    CatalogueChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    void add(String line) {
+        submit(new CatalogueChangeLog.Record(CatalogueChangeLog.ADD, CatalogueChangeLog.idOf(line), line));
+    }
+
+    void edit(String lineID, String line) {
+        submit(new CatalogueChangeLog.Record(CatalogueChangeLog.EDIT, lineID, line));
+    }
+
+    void delete(String lineID) {
+        submit(new CatalogueChangeLog.Record(CatalogueChangeLog.DELETE, lineID, null));
+    }
+
+    /**
+     * Queues a record, folding it into a queued record for the same id where the result replays
+     * the same: an edit replaces the line of a queued add or edit, and a delete replaces a queued
+     * add or edit. An edit that changes the id ends folding for everything queued before it, and
+     * is itself never replaced, so the old id is still removed on replay.
+     */
+    private synchronized void submit(CatalogueChangeLog.Record r) {
+        if (closed) {
+            throw new IllegalStateException("Change log writer is closed");
+        }
+        submitted++;
+        Integer index = r.op == CatalogueChangeLog.ADD ? null : pendingIndex.get(r.id);
+        boolean keepsId = r.op != CatalogueChangeLog.EDIT || CatalogueChangeLog.idOf(r.line).equals(r.id);
+        CatalogueChangeLog.Record queued = index == null ? null : pending.get(index);
+        if (queued != null && keepsId && queued.id.equals(r.id)) {
+            coalesced++;
+            if (queued.op == CatalogueChangeLog.DELETE) {
+                return; // Replay ignores edits and deletes of a missing id
+            }
+            if (r.op == CatalogueChangeLog.EDIT) {
+                pending.set(index, new CatalogueChangeLog.Record(queued.op, queued.id, r.line));
+            } else {
+                pending.set(index, r);
+            }
+            return;
+        }
+        if (pending.isEmpty()) {
+            firstPendingAt = System.nanoTime();
+            notifyAll(); // The writer waits without a timeout while nothing is queued
+        }
+        if (!keepsId) {
+            pendingIndex.clear();
+        }
+        pending.add(r);
+        pendingIndex.put(keepsId ? r.id : CatalogueChangeLog.idOf(r.line), pending.size() - 1);
+        if (pending.size() >= maxBatch) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Asks the writer to write everything queued so far without waiting for the batch to fill.
+     */
+    synchronized void flush() {
+        flushRequested = submitted;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until every change queued before the call has been written and forced to disk.
+     * @throws IOException if a write failed while waiting. The changes stay queued and are retried.
+     */
+    void awaitDurable() throws IOException {
+        synchronized (this) {
+            long target = submitted;
+            long failedBefore = failedWrites;
+            flushRequested = target;
+            notifyAll();
+            boolean interrupted = false;
+            while (durable < target && writer.isAlive() && failedWrites == failedBefore) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durable < target) {
+                throw lastError != null ? lastError : new IOException("Change log writer stopped");
+            }
+        }
+    }
+
+    /**
+     * Writes what is queued and stops the writer thread. Called by the shutdown hook.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down
+            }
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of batches written and the number of changes folded into queued ones.
+     */
+    synchronized String getStats() {
+        return batches + " batches written, " + submitted + " changes queued, " + coalesced + " coalesced";
+    }
+
+    private void run() {
+        while (true) {
+            ArrayList<CatalogueChangeLog.Record> batch;
+            long batchEnd;
+            synchronized (this) {
+                while (!readyToWrite()) {
+                    try {
+                        if (pending.isEmpty()) {
+                            wait();
+                        } else {
+                            long wakeAt = failures > 0 ? retryAt : firstPendingAt + maxLatency * 1_000_000;
+                            wait(Math.max(1, (wakeAt - System.nanoTime()) / 1_000_000));
+                        }
+                    } catch (InterruptedException e) {
+                        // Keep draining; the thread only stops through close
+                    }
+                }
+                if (pending.isEmpty()) {
+                    durable = submitted;
+                    notifyAll();
+                    return; // Closed and drained
+                }
+                batch = pending;
+                batchEnd = submitted;
+                pending = new ArrayList<>();
+                pendingIndex.clear();
+            }
+            IOException error = null;
+            try {
+                changeLog.append(batch);
+            } catch (IOException e) {
+                System.err.println("Error writing change log: " + e.getMessage());
+                error = e;
+            }
+            synchronized (this) {
+                if (error == null) {
+                    batches++;
+                    durable = batchEnd;
+                    failures = 0;
+                    lastError = null;
+                } else {
+                    failures++;
+                    failedWrites++;
+                    lastError = error;
+                    if (closed && failures >= CLOSE_ATTEMPTS) {
+                        System.err.println("Giving up on " + (batch.size() + pending.size())
+                                + " changes that could not be written to the change log");
+                        notifyAll();
+                        return;
+                    }
+                    // Back to the front of the queue, ahead of anything queued since. Records queued
+                    // meanwhile are no longer folded into it, and replaying a batch that was partly
+                    // written before failing gives the same catalogue.
+                    batch.addAll(pending);
+                    pending = batch;
+                    pendingIndex.clear();
+                    long delay = Math.min(MAX_RETRY_DELAY, RETRY_DELAY << Math.min(failures - 1, 16));
+                    retryAt = System.nanoTime() + delay * 1_000_000;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean readyToWrite() {
+        if (failures > 0 && System.nanoTime() < retryAt) {
+            return false;
+        }
+        if (closed) {
+            return true;
+        }
+        if (pending.isEmpty()) {
+            if (durable < submitted) {
+                durable = submitted; // Everything queued since the last batch was folded away
+                notifyAll();
+            }
+            return false;
+        }
+        return pending.size() >= maxBatch || flushRequested > durable
+                || System.nanoTime() - firstPendingAt >= maxLatency * 1_000_000;
+    }
+}
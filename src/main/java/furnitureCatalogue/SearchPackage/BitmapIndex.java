@@ -0,0 +1,206 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitmap index over the dictionary-encoded fields (Furniture Type, Colour, Materials, Size, Company,
+ * Style): one RowBitmap per distinct value holding the rows with that value. An equality filter becomes
+ * the union of the bitmaps of the values it matches, and several filters become the intersection of
+ * those, smallest first, so combined filters are answered without reading a single row.
+ * The index follows the catalogue as entries are added, edited and removed, including the last row
+ * moving into the place of a removed one. A change it was not told about, such as loading a snapshot,
+ * shows up as a version it has not seen, and the index is rebuilt. Lookups only read the bitmaps, so
+ * any number of them run at once while their callers hold the catalogue's read lock.
+ */
+class BitmapIndex implements CatalogueStore.Listener {
+    private final CatalogueStore catalogue;
+    private final int[] fields;
+    // Per field, one bitmap per dictionary code; null for fields that are not dictionary-encoded
+    private final List<List<RowBitmap>> bitmaps = new ArrayList<>();
+    private volatile long version;
+
+    /**
+     * Builds the index over the current entries and starts following the catalogue.
+     * @param catalogue Catalogue to index.
+     */
+    BitmapIndex(CatalogueStore catalogue) {
+        this.catalogue = catalogue;
+        int[] indexed = new int[catalogue.fieldCount()];
+        int count = 0;
+        for (int field = 0; field < catalogue.fieldCount(); field++) {
+            if (catalogue.isDictionary(field)) {
+                indexed[count++] = field;
+            }
+            bitmaps.add(null);
+        }
+        fields = Arrays.copyOf(indexed, count);
+        rebuild();
+        catalogue.addListener(this);
+    }
+
+    /**
+     * @return Catalogue this index follows.
+     */
+    CatalogueStore getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Stops following the catalogue.
+     */
+    void close() {
+        catalogue.removeListener(this);
+    }
+
+    /**
+     * Returns true if the field has bitmaps, so it can be filtered with matching().
+     * @param field Field index in the catalogue.
+     * @return True for dictionary-encoded fields.
+     */
+    boolean isIndexed(int field) {
+        return bitmaps.get(field) != null;
+    }
+
+    /**
+     * Returns the rows whose value in every given field equals the filter value, ignoring case.
+     * Call with the catalogue's read lock held if other threads may change it.
+     * @param filters Field index to value. Every field must be indexed.
+     * @return New bitmap of the matching rows, which later changes to the catalogue do not affect.
+     */
+    RowBitmap matching(Map<Integer, String> filters) {
+        catchUp();
+        List<RowBitmap> operands = new ArrayList<>();
+        for (Map.Entry<Integer, String> e : filters.entrySet()) {
+            int field = e.getKey();
+            boolean[] codes = catalogue.codesMatching(field, e.getValue());
+            RowBitmap union = null;
+            for (int code = 0; code < codes.length; code++) {
+                if (codes[code] && code < bitmaps.get(field).size()) {
+                    RowBitmap bitmap = bitmaps.get(field).get(code);
+                    union = union == null ? bitmap : RowBitmap.or(union, bitmap);
+                }
+            }
+            if (union == null || union.getCardinality() == 0) {
+                return new RowBitmap();
+            }
+            operands.add(union);
+        }
+        // Intersect from the smallest up, so each step has the least left to look at
+        operands.sort(Comparator.comparingInt(RowBitmap::getCardinality));
+        RowBitmap result = operands.get(0);
+        if (operands.size() == 1) {
+            return result.copy();
+        }
+        for (int i = 1; i < operands.size() && result.getCardinality() > 0; i++) {
+            result = RowBitmap.and(result, operands.get(i));
+        }
+        return result;
+    }
+
+    private void rebuild() {
+        for (int field : fields) {
+            bitmaps.set(field, new ArrayList<>());
+        }
+        for (int row = 0; row < catalogue.rowCount(); row++) {
+            for (int field : fields) {
+                if (catalogue.hasValue(row, field)) {
+                    bitmap(field, catalogue.codeAt(row, field)).add(row);
+                }
+            }
+        }
+        version = catalogue.getVersion();
+    }
+
+    private RowBitmap bitmap(int field, int code) {
+        List<RowBitmap> codes = bitmaps.get(field);
+        while (codes.size() <= code) {
+            codes.add(new RowBitmap());
+        }
+        return codes.get(code);
+    }
+
+    /**
+     * Takes a row out of the bitmap of the value it held before a change.
+     */
+    private void removeOld(int row, int field, ArrayList<String> old) {
+        int code = field < old.size() ? catalogue.codeOf(field, old.get(field)) : -1;
+        if (code >= 0) {
+            bitmap(field, code).remove(row);
+        }
+    }
+
+    /**
+     * Rebuilds the index if the catalogue changed without telling it. Readers that find it current go
+     * ahead without taking the monitor; a rebuild only publishes its version once it is done.
+     */
+    private void catchUp() {
+        if (version != catalogue.getVersion()) {
+            synchronized (this) {
+                if (version != catalogue.getVersion()) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if this change follows directly on the last one seen. Otherwise a change was missed
+     * and the index is rebuilt from the catalogue as it is now.
+     */
+    private boolean inStep() {
+        if (catalogue.getVersion() == version + 1) {
+            version++;
+            return true;
+        }
+        rebuild();
+        return false;
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        if (inStep()) {
+            for (int field : fields) {
+                if (catalogue.hasValue(row, field)) {
+                    bitmap(field, catalogue.codeAt(row, field)).add(row);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void rowChanged(int row, ArrayList<String> old) {
+        if (inStep()) {
+            for (int field : fields) {
+                removeOld(row, field, old);
+                if (catalogue.hasValue(row, field)) {
+                    bitmap(field, catalogue.codeAt(row, field)).add(row);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        if (inStep()) {
+            for (int field : fields) {
+                removeOld(row, field, old);
+                if (movedFrom != row && catalogue.hasValue(row, field)) {
+                    RowBitmap moved = bitmap(field, catalogue.codeAt(row, field));
+                    moved.remove(movedFrom);
+                    moved.add(row);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void cleared() {
+        rebuild();
+    }
+}
@@ -0,0 +1,278 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Statistics of every column of the catalogue, taken in one pass, for estimating how many entries a filter
+ * or range keeps. Each field has its number of missing values and distinct values. Dictionary fields also
+ * keep the number of entries per code, so an equality filter is estimated from the values it actually
+ * matches. Numeric fields (Price, Quantity, Weight) and the id keep an equi-depth histogram: bounds
+ * splitting their sorted values into HISTOGRAM_BUCKETS buckets holding the same number of entries, so a
+ * range is estimated from the buckets it covers, interpolating within the two at its ends. The statistics
+ * are a snapshot and are not kept up to date. Once enough entries have changed since they were taken (see
+ * isStale) the planner takes new ones, so estimates drift a little between snapshots, which only costs
+ * speed: results never depend on them.
+ */
+class ColumnStatistics {
+    /**
+     * Number of buckets in each histogram.
+     */
+    static final int HISTOGRAM_BUCKETS = 32;
+    /**
+     * Fraction of the entries that may change before the statistics are taken again.
+     */
+    static final double STALE_FRACTION = 0.1;
+    /**
+     * Changes always allowed before the statistics are taken again, so small catalogues are not
+     * analyzed after every edit.
+     */
+    static final int STALE_MIN_CHANGES = 50;
+    /**
+     * Fraction of entries a range on a text field is assumed to keep, as text has no histogram.
+     */
+    static final double DEFAULT_TEXT_RANGE = 1.0 / 3;
+
+    private final long version;
+    private final int rows;
+    private final int[] nulls;
+    private final int[] distinct;
+    // Per field, entries per dictionary code; null for fields that are not dictionary-encoded
+    private final int[][] codeCounts;
+    // Per field, histogram bounds; null for fields that are not numeric
+    private final int[][] histograms;
+    private final int[] idHistogram;
+
+    private ColumnStatistics(CatalogueStore catalogue) {
+        version = catalogue.getVersion();
+        rows = catalogue.rowCount();
+        int fields = catalogue.fieldCount();
+        nulls = new int[fields];
+        distinct = new int[fields];
+        codeCounts = new int[fields][];
+        histograms = new int[fields][];
+        for (int field = 0; field < fields; field++) {
+            if (catalogue.isDictionary(field)) {
+                analyzeDictionary(catalogue, field);
+            } else if (catalogue.isNumeric(field)) {
+                analyzeNumeric(catalogue, field);
+            } else {
+                analyzeText(catalogue, field);
+            }
+        }
+        int[] ids = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            ids[row] = catalogue.idAt(row);
+        }
+        Arrays.sort(ids);
+        idHistogram = histogram(ids, rows);
+    }
+
+    /**
+     * Takes statistics of the catalogue as it is now. Call with the catalogue's read lock held if other
+     * threads may change it.
+     * @param catalogue Catalogue to analyze.
+     * @return New statistics.
+     */
+    static ColumnStatistics analyze(CatalogueStore catalogue) {
+        return new ColumnStatistics(catalogue);
+    }
+
+    private void analyzeDictionary(CatalogueStore catalogue, int field) {
+        int[] counts = new int[catalogue.dictionarySize(field)];
+        for (int row = 0; row < rows; row++) {
+            if (catalogue.hasValue(row, field)) {
+                counts[catalogue.codeAt(row, field)]++;
+            } else {
+                nulls[field]++;
+            }
+        }
+        // Filters ignore case, so spellings differing only in case count as one value
+        Set<String> values = new HashSet<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                values.add(catalogue.dictionaryValue(field, code).toLowerCase());
+            }
+        }
+        codeCounts[field] = counts;
+        distinct[field] = values.size();
+    }
+
+    private void analyzeNumeric(CatalogueStore catalogue, int field) {
+        int[] values = new int[rows];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (catalogue.hasInt(row, field)) {
+                values[count++] = catalogue.getInt(row, field);
+            } else {
+                nulls[field]++;
+            }
+        }
+        Arrays.sort(values, 0, count);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                distinct[field]++;
+            }
+        }
+        histograms[field] = histogram(values, count);
+    }
+
+    private void analyzeText(CatalogueStore catalogue, int field) {
+        Set<String> values = new HashSet<>();
+        for (int row = 0; row < rows; row++) {
+            String value = catalogue.getValue(row, field);
+            if (value == null) {
+                nulls[field]++;
+            } else {
+                values.add(value.toLowerCase());
+            }
+        }
+        distinct[field] = values.size();
+    }
+
+    /**
+     * Returns HISTOGRAM_BUCKETS + 1 bounds of the first count sorted values: the lowest, the value at each
+     * bucket boundary, and the highest. Returns null if there are no values.
+     */
+    private static int[] histogram(int[] sorted, int count) {
+        if (count == 0) {
+            return null;
+        }
+        int[] bounds = new int[HISTOGRAM_BUCKETS + 1];
+        for (int b = 0; b <= HISTOGRAM_BUCKETS; b++) {
+            bounds[b] = sorted[(int) ((long) b * (count - 1) / HISTOGRAM_BUCKETS)];
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns true once enough entries have been added, edited or removed since the statistics were taken
+     * that they should be taken again. A bulk change such as loading a snapshot counts as one change but
+     * moves the number of entries, so both are counted.
+     * @param catalogue Catalogue the statistics were taken of.
+     * @return True if the statistics are out of date.
+     */
+    boolean isStale(CatalogueStore catalogue) {
+        long changes = catalogue.getVersion() - version + Math.abs(catalogue.rowCount() - rows);
+        return changes > Math.max(STALE_MIN_CHANGES, rows * STALE_FRACTION);
+    }
+
+    /**
+     * @return Version of the catalogue the statistics were taken at.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Number of entries when the statistics were taken.
+     */
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * @param field Field index in the catalogue.
+     * @return Number of entries without a value in the field, or without an integer in a numeric field.
+     */
+    int getNulls(int field) {
+        return field < nulls.length ? nulls[field] : 0;
+    }
+
+    /**
+     * @param field Field index in the catalogue.
+     * @return Number of distinct values in the field, ignoring case for text.
+     */
+    int getDistinct(int field) {
+        return field < distinct.length ? distinct[field] : 0;
+    }
+
+    /**
+     * @param field Field index in the catalogue, or -1 for the id.
+     * @return Histogram bounds of a numeric field or the id, or null if it has none.
+     */
+    int[] getHistogram(int field) {
+        int[] bounds = field < 0 ? idHistogram : field < histograms.length ? histograms[field] : null;
+        return bounds == null ? null : bounds.clone();
+    }
+
+    /**
+     * Estimates the fraction of entries equal to the value, ignoring case. Dictionary fields add up the
+     * entries of every code the value matches; other fields assume every distinct value is equally common.
+     * @param catalogue Catalogue being searched, for its dictionary.
+     * @param field Field index in the catalogue, or -1 for the id.
+     * @param value Value filtered on.
+     * @return Fraction of entries from 0 to 1.
+     */
+    double equalTo(CatalogueStore catalogue, int field, String value) {
+        if (rows == 0) {
+            return 0;
+        }
+        if (field < 0) {
+            return 1.0 / rows;
+        }
+        if (field < codeCounts.length && codeCounts[field] != null && catalogue.isDictionary(field)) {
+            boolean[] codes = catalogue.codesMatching(field, value);
+            long matching = 0;
+            // Codes added since the statistics were taken have no count and add nothing
+            for (int code = 0; code < codes.length && code < codeCounts[field].length; code++) {
+                if (codes[code]) {
+                    matching += codeCounts[field][code];
+                }
+            }
+            return (double) matching / rows;
+        }
+        int values = getDistinct(field);
+        return values == 0 ? 0 : (double) (rows - getNulls(field)) / values / rows;
+    }
+
+    /**
+     * Estimates the fraction of entries whose value is between low and high, both inclusive, from the
+     * histogram of a numeric field or the id.
+     * @param field Field index in the catalogue, or -1 for the id.
+     * @param low Lowest value kept.
+     * @param high Highest value kept.
+     * @return Fraction of entries from 0 to 1.
+     */
+    double between(int field, int low, int high) {
+        int[] bounds = field < 0 ? idHistogram : field < histograms.length ? histograms[field] : null;
+        if (rows == 0 || bounds == null || low > high) {
+            return 0;
+        }
+        double withValue = (double) (rows - (field < 0 ? 0 : getNulls(field))) / rows;
+        return withValue * (below(bounds, high + 1L) - below(bounds, low));
+    }
+
+    /**
+     * Estimates the fraction of entries with a value in a text field between min and max, which has no
+     * histogram, as a fixed share of the entries with a value.
+     * @param field Field index in the catalogue.
+     * @return Fraction of entries from 0 to 1.
+     */
+    double textBetween(int field) {
+        return rows == 0 ? 0 : DEFAULT_TEXT_RANGE * (rows - getNulls(field)) / rows;
+    }
+
+    /**
+     * Returns the fraction of values below x, interpolating linearly within the bucket x falls in.
+     */
+    private static double below(int[] bounds, long x) {
+        if (x <= bounds[0]) {
+            return 0;
+        }
+        if (x > bounds[HISTOGRAM_BUCKETS]) {
+            return 1;
+        }
+        // Last bucket whose lower bound is below x; its upper bound is at least x
+        int bucket = 0;
+        while (bucket < HISTOGRAM_BUCKETS - 1 && bounds[bucket + 1] < x) {
+            bucket++;
+        }
+        double width = (double) bounds[bucket + 1] - bounds[bucket];
+        double within = width == 0 ? 1 : Math.min(1, (x - bounds[bucket]) / width);
+        return (bucket + within) / HISTOGRAM_BUCKETS;
+    }
+}
@@ -0,0 +1,341 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Typo-tolerant search on entry names. Every name is broken into trigrams (three-character pieces)
+ * and each trigram keeps the list of rows containing it. A query with k typos still shares most of
+ * its trigrams with a matching name, since one typo breaks at most three, so rows sharing too few
+ * trigrams are skipped without being looked at. The remaining candidates are checked with a bounded
+ * edit distance (substitutions only) and returned best match first. When a query is too short for its
+ * typo allowance to rule anything out, every name is checked directly, which is still a single pass
+ * over the names.
+ * The index follows the catalogue as entries are added, edited and removed. Searches only read it, each
+ * with its own candidate counters, so several can run at once under the catalogue's read lock.
+ */
+class FuzzyNameIndex implements CatalogueStore.Listener {
+    /**
+     * Marks the space between query words, where any text may appear in the name.
+     */
+    private static final char GAP = '\uFFFF';
+
+    private final CatalogueStore catalogue;
+    private final int nameField;
+
+    // Trigram dictionary and one posting list per trigram
+    private final HashMap<String, Integer> trigramIds = new HashMap<>();
+    private final ArrayList<Postings> postings = new ArrayList<>();
+
+    // Per row: the trigrams of its name and its position in each trigram's postings
+    private int[][] rowTrigrams;
+    private int[][] rowPositions;
+
+    // Candidate counters reused between searches, one set per search running at the time
+    private final ConcurrentLinkedQueue<Counters> counters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Per-row trigram counts of one search and the rows it counted, which are set back to zero before
+     * the counters are reused.
+     */
+    private static class Counters {
+        final int[] counts;
+        final int[] touched;
+
+        Counters(int capacity) {
+            counts = new int[capacity];
+            touched = new int[capacity];
+        }
+    }
+
+    /**
+     * Rows containing one trigram. Removing a row moves the last entry into its place.
+     */
+    private static class Postings {
+        int[] rows = new int[4];
+        int size;
+
+        int add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size] = row;
+            return size++;
+        }
+    }
+
+    /**
+     * Builds the index over the current entries and starts following the catalogue.
+     * @param catalogue Catalogue to index.
+     */
+    FuzzyNameIndex(CatalogueStore catalogue) {
+        this.catalogue = catalogue;
+        nameField = catalogue.fieldOf("Name");
+        allocate(Math.max(16, catalogue.rowCount()));
+        for (int row = 0; row < catalogue.rowCount(); row++) {
+            addRow(row);
+        }
+        catalogue.addListener(this);
+    }
+
+    /**
+     * @return Catalogue this index follows.
+     */
+    CatalogueStore getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Stops following the catalogue.
+     */
+    void close() {
+        catalogue.removeListener(this);
+    }
+
+    /**
+     * Number of typos a query may contain, matching the leniency advanced search has always had:
+     * none below 4 characters, 2 at exactly 6, 3 above 9, and length / 3 + 1 otherwise.
+     * @param query Search entry.
+     * @return Allowed number of edits.
+     */
+    static int maxEdits(String query) {
+        int length = query.length();
+        if (length < 4) {
+            return 0;
+        }
+        if (length == 6) {
+            return 2;
+        }
+        if (length > 9) {
+            return 3;
+        }
+        return length / 3 + 1;
+    }
+
+    /**
+     * Returns the ids of entries whose name contains the query with at most maxEdits typos, ignoring
+     * case. Words of the query must appear in order but may have other text between them. Results are
+     * ordered by number of typos, then id. Call with the catalogue's read lock held if other threads may
+     * change it.
+     * @param query Search entry.
+     * @return Matching ids, best match first.
+     */
+    int[] search(String query) {
+        if (nameField < 0) {
+            return new int[0];
+        }
+        char[] pattern = pattern(query);
+        int k = maxEdits(query);
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (String word : query.toLowerCase().trim().split(" +")) {
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                trigrams.add(word.substring(i, i + 3));
+            }
+        }
+        // Each typo breaks at most three of the query's trigrams
+        int needed = trigrams.size() - 3 * k;
+        List<long[]> matches = new ArrayList<>();
+        if (needed > 0) {
+            Counters c = counters.poll();
+            if (c == null || c.counts.length < catalogue.rowCount()) {
+                c = new Counters(Math.max(16, catalogue.rowCount()));
+            }
+            int[] counts = c.counts;
+            int[] touched = c.touched;
+            int touchedCount = 0;
+            for (String trigram : trigrams) {
+                Integer id = trigramIds.get(trigram);
+                if (id == null) {
+                    continue;
+                }
+                QueryEngine.checkCancelled();
+                Postings p = postings.get(id);
+                for (int i = 0; i < p.size; i++) {
+                    int row = p.rows[i];
+                    if (counts[row]++ == 0) {
+                        touched[touchedCount++] = row;
+                    }
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                if ((i & (QueryEngine.CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                    QueryEngine.checkCancelled();
+                }
+                int row = touched[i];
+                if (counts[row] >= needed) {
+                    check(row, pattern, k, matches);
+                }
+                counts[row] = 0;
+            }
+            // Not reached if the search is cancelled, as the counts may be left half done
+            counters.offer(c);
+        } else {
+            for (int row = 0; row < catalogue.rowCount(); row++) {
+                if ((row & (QueryEngine.CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                    QueryEngine.checkCancelled();
+                }
+                check(row, pattern, k, matches);
+            }
+        }
+        matches.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        int[] ids = new int[matches.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) matches.get(i)[1];
+        }
+        return ids;
+    }
+
+    private void check(int row, char[] pattern, int k, List<long[]> matches) {
+        String name = catalogue.getValue(row, nameField);
+        if (name == null) {
+            return;
+        }
+        int distance = distance(pattern, name.toLowerCase(), k);
+        if (distance <= k) {
+            matches.add(new long[] {distance, catalogue.idAt(row)});
+        }
+    }
+
+    /**
+     * Lower-cases the query and replaces each run of spaces between words with a gap marker.
+     */
+    static char[] pattern(String query) {
+        return String.join(String.valueOf(GAP), query.toLowerCase().trim().split(" +")).toCharArray();
+    }
+
+    /**
+     * Returns the fewest substituted characters that make some part of the text match the pattern, where
+     * a gap in the pattern matches any text for free. Only substitutions count, as with the wildcard
+     * matching advanced search used before, so a typo never shortens or lengthens a word. Anything above
+     * the limit is reported as limit + 1, and the scan stops early on an exact match.
+     * @param pattern Pattern from pattern().
+     * @param text Lower-case name.
+     * @param limit Largest distance of interest.
+     * @return Distance of the best matching part of the text, or limit + 1.
+     */
+    static int distance(char[] pattern, String text, int limit) {
+        int m = pattern.length;
+        int over = limit + 1;
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int i = 0; i < m; i++) {
+            prev[i + 1] = pattern[i] == GAP ? prev[i] : over; // No text matched yet
+        }
+        int best = prev[m];
+        for (int j = 0; j < text.length() && best > 0; j++) {
+            char c = text.charAt(j);
+            cur[0] = 0; // A match may start anywhere in the text
+            for (int i = 0; i < m; i++) {
+                if (pattern[i] == GAP) {
+                    cur[i + 1] = Math.min(cur[i], prev[i + 1]);
+                } else {
+                    cur[i + 1] = Math.min(over, prev[i] + (pattern[i] == c ? 0 : 1));
+                }
+            }
+            best = Math.min(best, cur[m]);
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        return best;
+    }
+
+    private void allocate(int capacity) {
+        rowTrigrams = new int[capacity][];
+        rowPositions = new int[capacity][];
+    }
+
+    private void addRow(int row) {
+        String name = nameField < 0 ? null : catalogue.getValue(row, nameField);
+        Set<String> trigrams = new LinkedHashSet<>();
+        if (name != null) {
+            String lower = name.toLowerCase();
+            for (int i = 0; i + 3 <= lower.length(); i++) {
+                trigrams.add(lower.substring(i, i + 3));
+            }
+        }
+        int[] ids = new int[trigrams.size()];
+        int[] positions = new int[trigrams.size()];
+        int k = 0;
+        for (String trigram : trigrams) {
+            Integer id = trigramIds.get(trigram);
+            if (id == null) {
+                id = postings.size();
+                trigramIds.put(trigram, id);
+                postings.add(new Postings());
+            }
+            ids[k] = id;
+            positions[k] = postings.get(id).add(row);
+            k++;
+        }
+        rowTrigrams[row] = ids;
+        rowPositions[row] = positions;
+    }
+
+    private void removeRow(int row) {
+        int[] ids = rowTrigrams[row];
+        for (int k = 0; k < ids.length; k++) {
+            Postings p = postings.get(ids[k]);
+            int pos = rowPositions[row][k];
+            int last = --p.size;
+            if (pos != last) {
+                int moved = p.rows[last];
+                p.rows[pos] = moved;
+                int[] movedIds = rowTrigrams[moved];
+                for (int i = 0; i < movedIds.length; i++) {
+                    if (movedIds[i] == ids[k]) {
+                        rowPositions[moved][i] = pos;
+                        break;
+                    }
+                }
+            }
+        }
+        rowTrigrams[row] = null;
+        rowPositions[row] = null;
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        if (row >= rowTrigrams.length) {
+            int capacity = Math.max(row + 1, rowTrigrams.length * 2);
+            rowTrigrams = Arrays.copyOf(rowTrigrams, capacity);
+            rowPositions = Arrays.copyOf(rowPositions, capacity);
+        }
+        addRow(row);
+    }
+
+    @Override
+    public synchronized void rowChanged(int row, ArrayList<String> old) {
+        removeRow(row);
+        addRow(row);
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        removeRow(row);
+        if (movedFrom != row) {
+            int[] ids = rowTrigrams[movedFrom];
+            for (int k = 0; k < ids.length; k++) {
+                postings.get(ids[k]).rows[rowPositions[movedFrom][k]] = row;
+            }
+            rowTrigrams[row] = ids;
+            rowPositions[row] = rowPositions[movedFrom];
+            rowTrigrams[movedFrom] = null;
+            rowPositions[movedFrom] = null;
+        }
+    }
+
+    @Override
+    public synchronized void cleared() {
+        trigramIds.clear();
+        postings.clear();
+        allocate(rowTrigrams.length);
+    }
+}
@@ -0,0 +1,758 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Runs advanced searches directly over the in-memory catalogue, without going through a database.
+ * A QueryPlanner picks where the candidate rows come from: every row, the ids the name matched, the
+ * bitmaps of the dictionary filters, or the rows in one range of the range index, whichever its column
+ * statistics say is cheapest. The other filters and ranges are compiled once per search into checks on
+ * the catalogue's columns, run most selective first: dictionary filters compare codes, ranges compare
+ * ints that were parsed when the entry was stored, and each row
+ * is reduced to one sortable long holding its sort key and id. Matching rows are sorted in one pass,
+ * or kept in a bounded heap when only the first page is wanted. Later pages continue after a cursor
+ * holding the last sort value and id, so they cost no more than the first. Each page also carries the
+ * number of matches per value of the facet fields and per price bucket, counted over the matching rows
+ * of that same search before they are sorted, rather than by one search per value.
+ */
+class QueryEngine {
+    /**
+     * Fields whose values are counted over the matches of every page.
+     */
+    static final List<String> FACET_HEADERS = List.of("Colour", "Materials", "Furniture Type", "Company", "Style");
+    /**
+     * Default width of the price buckets counted with every page, overridden with -Dsearch.priceBucket.
+     */
+    static final int DEFAULT_PRICE_BUCKET = 100;
+    /**
+     * Number of price buckets. The last one is open-ended and holds every higher price, so with the
+     * default width they run from "0-99" to "1900-1999" and then "2000+".
+     */
+    static final int PRICE_BUCKETS = 21;
+    /**
+     * Rows looked at between checks for a cancelled search. A power of two, so the check is a mask.
+     */
+    static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    private final CatalogueStore catalogue;
+    private final BitmapIndex bitmaps;
+    private final RangeIndex rangeIndex;
+    private final QueryPlanner planner;
+    private final int priceBucket;
+
+    /**
+     * One compiled filter or range.
+     */
+    private interface RowFilter {
+        boolean test(int row);
+    }
+
+    /**
+     * Creates an engine over a catalogue. The engine keeps nothing between searches but the planner's
+     * column statistics.
+     * @param catalogue Catalogue to search.
+     */
+    QueryEngine(CatalogueStore catalogue) {
+        this(catalogue, null, null);
+    }
+
+    /**
+     * Creates an engine that answers dictionary filters and ranges from indexes.
+     * @param catalogue Catalogue to search.
+     * @param bitmaps Bitmap index following the same catalogue, or null to check every row.
+     * @param rangeIndex Range index following the same catalogue, or null to check every row.
+     */
+    QueryEngine(CatalogueStore catalogue, BitmapIndex bitmaps, RangeIndex rangeIndex) {
+        this.catalogue = catalogue;
+        this.bitmaps = bitmaps;
+        this.rangeIndex = rangeIndex;
+        planner = new QueryPlanner(catalogue, bitmaps, rangeIndex);
+        int width = Integer.getInteger("search.priceBucket", DEFAULT_PRICE_BUCKET);
+        priceBucket = width > 0 ? width : DEFAULT_PRICE_BUCKET;
+    }
+
+    /**
+     * @return Catalogue this engine searches.
+     */
+    CatalogueStore getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Returns the rows passing every filter and range, ordered by the sort column. Rows with the same
+     * sort value are ordered by id.
+     * @param ids Ids the result is restricted to, or null for every entry.
+     * @param filters Header to value, matched ignoring case.
+     * @param ranges Header to [min, max], both inclusive.
+     * @param sortCategory Header to sort by.
+     * @param ascending True for ascending order.
+     * @param limit Most rows to return.
+     * @return Matching rows, in order.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     * @throws CancellationException If the thread is interrupted while searching.
+     */
+    int[] search(int[] ids, Map<String, String> filters, Map<String, ? extends List<String>> ranges,
+                 String sortCategory, boolean ascending, int limit) {
+        return run(ids, filters, ranges, sortCategory, ascending, null, 0, limit, false).rows;
+    }
+
+    /**
+     * Returns one page of the rows search() would return. Only the rows up to the end of the page are
+     * sorted, in a heap the size of offset + limit, while every match is still counted for the total
+     * and the facet counts.
+     * @param ids Ids the result is restricted to, or null for every entry.
+     * @param filters Header to value, matched ignoring case.
+     * @param ranges Header to [min, max], both inclusive.
+     * @param sortCategory Header to sort by.
+     * @param ascending True for ascending order.
+     * @param after Cursor from the previous page to continue after, or null to start at the beginning.
+     * @param offset Number of rows to skip, after the cursor if there is one.
+     * @param limit Most rows on the page.
+     * @return Page of results.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     * @throws CancellationException If the thread is interrupted while searching.
+     */
+    SearchPage page(int[] ids, Map<String, String> filters, Map<String, ? extends List<String>> ranges,
+                    String sortCategory, boolean ascending, SearchPage.Cursor after, int offset, int limit) {
+        Result result = run(ids, filters, ranges, sortCategory, ascending, after, offset, limit, true);
+        return toPage(result.rows, 0, result.rows.length, result.total, result.before + Math.max(0, offset),
+                result.sortColumn, result.facets == null ? Map.of() : result.facets.counts());
+    }
+
+    /**
+     * Every match of one search in order, with the facet counts over them, as kept in the result cache.
+     * Only valid for the catalogue version it was made at.
+     */
+    static class Matches {
+        /** Matching rows in order, not to be modified. */
+        final int[] rows;
+        final Map<String, Map<String, Integer>> facets;
+
+        Matches(int[] rows, Map<String, Map<String, Integer>> facets) {
+            this.rows = rows;
+            Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+            facets.forEach((header, values) -> counts.put(header, Collections.unmodifiableMap(values)));
+            this.facets = Collections.unmodifiableMap(counts);
+        }
+    }
+
+    /**
+     * Returns every row search() would return, sorted, with the facet counts page() would give.
+     * @param ids Ids the result is restricted to, or null for every entry.
+     * @param filters Header to value, matched ignoring case.
+     * @param ranges Header to [min, max], both inclusive.
+     * @param sortCategory Header to sort by.
+     * @param ascending True for ascending order.
+     * @return Every match, to be cut into pages with slice().
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     * @throws CancellationException If the thread is interrupted while searching.
+     */
+    Matches matches(int[] ids, Map<String, String> filters, Map<String, ? extends List<String>> ranges,
+                    String sortCategory, boolean ascending) {
+        Result result = run(ids, filters, ranges, sortCategory, ascending, null, 0, Integer.MAX_VALUE, true);
+        return new Matches(result.rows, result.facets == null ? Map.of() : result.facets.counts());
+    }
+
+    /**
+     * Returns one page of matches that are already sorted, the same page page() would return for the
+     * search without running it again. The cursor is found by a binary search over the sorted rows.
+     * @param matches Matches from matches(), made at the catalogue's current version.
+     * @param sortCategory Header the matches are sorted by.
+     * @param ascending True if they are in ascending order.
+     * @param after Cursor from the previous page to continue after, or null to start at the beginning.
+     * @param offset Number of rows to skip, after the cursor if there is one.
+     * @param limit Most rows on the page.
+     * @return Page of results.
+     */
+    SearchPage slice(Matches matches, String sortCategory, boolean ascending, SearchPage.Cursor after,
+                     int offset, int limit) {
+        int[] rows = matches.rows;
+        SortColumn column = new SortColumn(sortCategory);
+        int before = 0;
+        if (after != null) {
+            long cursor = column.byValue ? 0 : pack(column.keyOf(after.value), after.id, ascending);
+            int high = rows.length;
+            while (before < high) {
+                int mid = (before + high) >>> 1;
+                boolean later = column.byValue ? column.compareToCursor(rows[mid], after, ascending) > 0
+                        : pack(column.key(rows[mid]), catalogue.idAt(rows[mid]), ascending) > cursor;
+                if (later) {
+                    high = mid;
+                } else {
+                    before = mid + 1;
+                }
+            }
+        }
+        int from = (int) Math.min(rows.length, (long) before + Math.max(0, offset));
+        int to = (int) Math.min(rows.length, (long) from + Math.max(0, limit));
+        return toPage(rows, from, to, rows.length, from, column, matches.facets);
+    }
+
+    /**
+     * Copies rows from to to out of the catalogue into a page, with a cursor after the last of them if
+     * more matches follow.
+     */
+    private SearchPage toPage(int[] rows, int from, int to, int total, int offset, SortColumn column,
+                              Map<String, Map<String, Integer>> facets) {
+        List<Integer> pageIds = new ArrayList<>();
+        List<ArrayList<String>> values = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            pageIds.add(catalogue.idAt(rows[i]));
+            values.add(catalogue.getRow(rows[i]));
+        }
+        SearchPage.Cursor next = null;
+        if (to > from && offset + to - from < total) {
+            int last = rows[to - 1];
+            next = new SearchPage.Cursor(column.valueAt(last), catalogue.idAt(last));
+        }
+        return new SearchPage(pageIds, values, total, offset, next, facets);
+    }
+
+    /**
+     * Returns the cursor just after a row, for continuing a search sorted by the given header.
+     * @param sortCategory Header the search is sorted by.
+     * @param row Row of the last entry read.
+     * @return Cursor after the row.
+     */
+    SearchPage.Cursor cursorAt(String sortCategory, int row) {
+        Object value;
+        if (isId(sortCategory)) {
+            value = catalogue.idAt(row);
+        } else {
+            int field = field(sortCategory);
+            if (catalogue.isNumeric(field)) {
+                value = catalogue.hasInt(row, field) ? catalogue.getInt(row, field) : null;
+            } else {
+                value = catalogue.getValue(row, field);
+            }
+        }
+        return new SearchPage.Cursor(value, catalogue.idAt(row));
+    }
+
+    /**
+     * Rows of one search, with the number of matches in total and before the cursor.
+     */
+    private static class Result {
+        int[] rows;
+        int total;
+        int before;
+        SortColumn sortColumn;
+        FacetCounter facets;
+    }
+
+    /**
+     * Plans a search without running it.
+     * @param ids Ids the result is restricted to, or null for every entry.
+     * @param filters Header to value, matched ignoring case.
+     * @param ranges Header to [min, max], both inclusive.
+     * @return Plan the search would run with.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     */
+    QueryPlan plan(int[] ids, Map<String, String> filters, Map<String, ? extends List<String>> ranges) {
+        return planner.plan(ids, filters, ranges);
+    }
+
+    private Result run(int[] ids, Map<String, String> filters, Map<String, ? extends List<String>> ranges,
+                       String sortCategory, boolean ascending, SearchPage.Cursor after, int offset, int limit,
+                       boolean countFacets) {
+        Result result = new Result();
+        result.rows = new int[0];
+        QueryPlan plan = planner.plan(ids, filters, ranges);
+        List<RowFilter> checks = new ArrayList<>();
+        for (QueryPlan.Condition c : plan.getChecks()) {
+            RowFilter check = compile(c, ids);
+            if (check == null) {
+                return result; // No entry holds this value
+            }
+            checks.add(check);
+        }
+        int[] candidates = null;
+        if (plan.getAccess() == QueryPlan.Access.BITMAP) {
+            Map<Integer, String> indexed = new HashMap<>();
+            for (QueryPlan.Condition c : plan.getDriving()) {
+                indexed.put(field(c.header), c.value);
+            }
+            candidates = bitmaps.matching(indexed).toArray();
+        } else if (plan.getAccess() == QueryPlan.Access.RANGE) {
+            QueryPlan.Condition c = plan.getDriving().get(0);
+            candidates = rangeIndex.rowsBetween(c.header, Integer.parseInt(c.value.trim()),
+                    Integer.parseInt(c.max.trim()));
+        }
+        boolean byName = plan.getAccess() == QueryPlan.Access.FUZZY;
+        RowFilter[] all = checks.toArray(new RowFilter[0]);
+        FacetCounter facets = countFacets ? new FacetCounter() : null;
+        result.facets = facets;
+        int count = candidates != null ? candidates.length : byName ? ids.length : catalogue.rowCount();
+        int[] rows = new int[count];
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            if ((i & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                checkCancelled();
+            }
+            int row = candidates != null ? candidates[i] : byName ? catalogue.rowOf(ids[i]) : i;
+            if (row >= 0 && passes(row, all)) {
+                rows[matched++] = row;
+            }
+        }
+        checkCancelled();
+        if (facets != null) {
+            facets.count(rows, matched);
+        }
+        result.total = matched;
+        result.sortColumn = new SortColumn(sortCategory);
+        long skip = Math.max(0, offset);
+        int keep = (int) Math.min(Integer.MAX_VALUE, skip + Math.max(0, limit));
+        int[] sorted;
+        if (after == null) {
+            sorted = sort(rows, matched, result.sortColumn, ascending, keep);
+        } else {
+            // Keep only the rows ordered after the cursor, then sort those
+            SortColumn column = result.sortColumn;
+            long cursor = column.byValue ? 0 : pack(column.keyOf(after.value), after.id, ascending);
+            int remaining = 0;
+            for (int i = 0; i < matched; i++) {
+                boolean later = column.byValue ? column.compareToCursor(rows[i], after, ascending) > 0
+                        : pack(column.key(rows[i]), catalogue.idAt(rows[i]), ascending) > cursor;
+                if (later) {
+                    rows[remaining++] = rows[i];
+                }
+            }
+            result.before = matched - remaining;
+            sorted = sort(rows, remaining, column, ascending, keep);
+        }
+        int start = (int) Math.min(skip, sorted.length);
+        result.rows = Arrays.copyOfRange(sorted, start, sorted.length);
+        return result;
+    }
+
+    /**
+     * Stops the search if the thread running it has been interrupted, which is how an asynchronous search
+     * is cancelled. The interrupt is left set for the code that owns the thread.
+     * @throws CancellationException If the thread was interrupted.
+     */
+    static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search cancelled");
+        }
+    }
+
+    private static boolean passes(int row, RowFilter[] checks) {
+        for (RowFilter check : checks) {
+            if (!check.test(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the header names the id column rather than a field.
+     */
+    private boolean isId(String header) {
+        return header.equalsIgnoreCase(catalogue.getHeaders()[0]);
+    }
+
+    private int field(String header) {
+        int field = catalogue.fieldOf(header);
+        if (field < 0) {
+            throw new IllegalArgumentException("Unknown column: " + header);
+        }
+        return field;
+    }
+
+    /**
+     * Compiles one condition of a plan, or returns null if no entry can match it.
+     */
+    private RowFilter compile(QueryPlan.Condition c, int[] ids) {
+        switch (c.kind) {
+            case NAME:
+                boolean[] named = new boolean[catalogue.rowCount()];
+                for (int id : ids) {
+                    int row = catalogue.rowOf(id);
+                    if (row >= 0) {
+                        named[row] = true;
+                    }
+                }
+                return row -> named[row];
+            case FILTER:
+                return equalTo(c.header, c.value);
+            default:
+                return between(c.header, c.value, c.max);
+        }
+    }
+
+    /**
+     * Compiles an equality filter, or returns null if no entry can match it.
+     */
+    private RowFilter equalTo(String header, String value) {
+        if (isId(header)) {
+            int id = Integer.parseInt(value.trim());
+            return row -> catalogue.idAt(row) == id;
+        }
+        int field = field(header);
+        if (catalogue.isDictionary(field)) {
+            boolean[] codes = catalogue.codesMatching(field, value);
+            for (boolean match : codes) {
+                if (match) {
+                    return row -> catalogue.hasValue(row, field) && codes[catalogue.codeAt(row, field)];
+                }
+            }
+            return null;
+        }
+        if (catalogue.isNumeric(field)) {
+            int number = Integer.parseInt(value.trim());
+            return row -> catalogue.hasInt(row, field) && catalogue.getInt(row, field) == number;
+        }
+        return row -> value.equalsIgnoreCase(catalogue.getValue(row, field));
+    }
+
+    /**
+     * Compiles an inclusive range. Text fields compare as strings.
+     */
+    private RowFilter between(String header, String min, String max) {
+        if (isId(header)) {
+            int low = Integer.parseInt(min.trim());
+            int high = Integer.parseInt(max.trim());
+            return row -> catalogue.idAt(row) >= low && catalogue.idAt(row) <= high;
+        }
+        int field = field(header);
+        if (catalogue.isNumeric(field)) {
+            int low = Integer.parseInt(min.trim());
+            int high = Integer.parseInt(max.trim());
+            return row -> {
+                if (!catalogue.hasInt(row, field)) {
+                    return false;
+                }
+                int value = catalogue.getInt(row, field);
+                return value >= low && value <= high;
+            };
+        }
+        return row -> {
+            String value = catalogue.getValue(row, field);
+            return value != null && value.compareTo(min) >= 0 && value.compareTo(max) <= 0;
+        };
+    }
+
+    /**
+     * Counts the matches of one search per value of each facet field and per price bucket. Dictionary
+     * fields are counted by code, and the codes are turned into values once at the end, with spellings
+     * that differ only in case counted together, as filters treat them as the same value.
+     */
+    private class FacetCounter {
+        private final int[] fields;
+        private final int[][] codeCounts;
+        private final int priceField;
+        private final int[] bucketCounts = new int[PRICE_BUCKETS];
+
+        FacetCounter() {
+            List<Integer> found = new ArrayList<>();
+            for (String header : FACET_HEADERS) {
+                int field = catalogue.fieldOf(header);
+                if (field >= 0 && catalogue.isDictionary(field)) {
+                    found.add(field);
+                }
+            }
+            fields = found.stream().mapToInt(Integer::intValue).toArray();
+            codeCounts = new int[fields.length][];
+            for (int i = 0; i < fields.length; i++) {
+                codeCounts[i] = new int[catalogue.dictionarySize(fields[i])];
+            }
+            int price = catalogue.fieldOf("Price");
+            priceField = price >= 0 && catalogue.isNumeric(price) ? price : -1;
+        }
+
+        /**
+         * Counts the first count rows, one field at a time so each pass reads a single column.
+         */
+        void count(int[] rows, int count) {
+            for (int i = 0; i < fields.length; i++) {
+                int field = fields[i];
+                int[] counts = codeCounts[i];
+                for (int r = 0; r < count; r++) {
+                    if (catalogue.hasValue(rows[r], field)) {
+                        counts[catalogue.codeAt(rows[r], field)]++;
+                    }
+                }
+            }
+            if (priceField >= 0) {
+                for (int r = 0; r < count; r++) {
+                    if (catalogue.hasInt(rows[r], priceField)) {
+                        int price = catalogue.getInt(rows[r], priceField);
+                        if (price >= 0) {
+                            bucketCounts[Math.min(price / priceBucket, PRICE_BUCKETS - 1)]++;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns header to value to number of matches. Values are ordered by count, most first, and
+         * price buckets ("100-199", up to an open-ended last bucket such as "2000+") from the lowest up.
+         * Values without matches are left out, as are negative prices.
+         */
+        Map<String, Map<String, Integer>> counts() {
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            String[] headers = catalogue.getHeaders();
+            for (int i = 0; i < fields.length; i++) {
+                Map<String, String> spellings = new HashMap<>();
+                Map<String, Integer> merged = new HashMap<>();
+                for (int code = 0; code < codeCounts[i].length; code++) {
+                    if (codeCounts[i][code] > 0) {
+                        String value = catalogue.dictionaryValue(fields[i], code);
+                        String spelling = spellings.computeIfAbsent(value.toLowerCase(), lower -> value);
+                        merged.merge(spelling, codeCounts[i][code], Integer::sum);
+                    }
+                }
+                Map<String, Integer> values = new LinkedHashMap<>();
+                merged.entrySet().stream()
+                        .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                                .thenComparing(Map.Entry.comparingByKey()))
+                        .forEach(e -> values.put(e.getKey(), e.getValue()));
+                facets.put(headers[fields[i] + 1], values);
+            }
+            if (priceField >= 0) {
+                Map<String, Integer> values = new LinkedHashMap<>();
+                for (int bucket = 0; bucket < PRICE_BUCKETS; bucket++) {
+                    if (bucketCounts[bucket] > 0) {
+                        long low = (long) bucket * priceBucket;
+                        values.put(bucket == PRICE_BUCKETS - 1 ? low + "+" : low + "-" + (low + priceBucket - 1),
+                                bucketCounts[bucket]);
+                    }
+                }
+                facets.put(headers[priceField + 1], values);
+            }
+            return facets;
+        }
+    }
+
+    /**
+     * The sort column of one search. Numbers, ids and dictionary fields are turned into int keys that
+     * order the same way as the values, with missing values getting the lowest key; dictionary text is
+     * ranked by its position among the sorted distinct values of the dictionary: a value at position i
+     * gets 2i + 1 and a value between positions gets the even key in between. Other text fields, such as
+     * Name, have no small set of values to rank, so their rows are compared by value directly, missing
+     * values first, and only the rows that reach the page are ever compared.
+     */
+    private class SortColumn {
+        private final boolean isId;
+        private final int field;
+        private final boolean numeric;
+        /** True if rows are compared by value rather than by key. */
+        final boolean byValue;
+        private String[] sorted;
+        private int[] keyOfCode;
+
+        SortColumn(String header) {
+            isId = isId(header);
+            field = isId ? -1 : field(header);
+            numeric = isId || catalogue.isNumeric(field);
+            byValue = !numeric && !catalogue.isDictionary(field);
+            if (numeric || byValue) {
+                return;
+            }
+            String[] values = new String[catalogue.dictionarySize(field)];
+            for (int code = 0; code < values.length; code++) {
+                values[code] = catalogue.dictionaryValue(field, code);
+            }
+            sorted = distinctSorted(values);
+            keyOfCode = new int[values.length];
+            for (int code = 0; code < values.length; code++) {
+                keyOfCode[code] = keyOf(values[code]);
+            }
+        }
+
+        /**
+         * Returns the key of a row. Not used when comparing by value.
+         */
+        int key(int row) {
+            if (isId) {
+                return catalogue.idAt(row);
+            }
+            if (numeric) {
+                return catalogue.hasInt(row, field) ? catalogue.getInt(row, field) : Integer.MIN_VALUE;
+            }
+            return catalogue.hasValue(row, field) ? keyOfCode[catalogue.codeAt(row, field)] : Integer.MIN_VALUE;
+        }
+
+        /**
+         * Returns the key of a value taken from valueAt, which need not be in the catalogue any more.
+         */
+        int keyOf(Object value) {
+            if (value == null) {
+                return Integer.MIN_VALUE;
+            }
+            if (numeric) {
+                return (Integer) value;
+            }
+            int i = Arrays.binarySearch(sorted, (String) value);
+            return i >= 0 ? 2 * i + 1 : 2 * (-i - 1);
+        }
+
+        /**
+         * Compares two rows by value and then id, when comparing by value.
+         */
+        int compare(int a, int b, boolean ascending) {
+            return compareValues(catalogue.getValue(a, field), catalogue.idAt(a), catalogue.getValue(b, field),
+                    catalogue.idAt(b), ascending);
+        }
+
+        /**
+         * Compares a row with a cursor by value and then id, when comparing by value.
+         */
+        int compareToCursor(int row, SearchPage.Cursor after, boolean ascending) {
+            return compareValues(catalogue.getValue(row, field), catalogue.idAt(row), (String) after.value,
+                    after.id, ascending);
+        }
+
+        /**
+         * Returns the value of a row that the rows are ordered by.
+         */
+        Object valueAt(int row) {
+            if (isId) {
+                return catalogue.idAt(row);
+            }
+            if (numeric) {
+                return catalogue.hasInt(row, field) ? catalogue.getInt(row, field) : null;
+            }
+            return catalogue.getValue(row, field);
+        }
+    }
+
+    /**
+     * Orders missing values first, then values in the direction asked for, then ids ascending, the same
+     * order packed keys give.
+     */
+    private static int compareValues(String a, int idA, String b, int idB, boolean ascending) {
+        int order = a == null ? (b == null ? 0 : -1) : b == null ? 1 : a.compareTo(b);
+        if (order != 0) {
+            return ascending ? order : -order;
+        }
+        return Integer.compare(idA, idB);
+    }
+
+    /**
+     * Returns the distinct non-null values in sorted order.
+     */
+    private static String[] distinctSorted(String[] values) {
+        return Arrays.stream(values).filter(Objects::nonNull).distinct().sorted().toArray(String[]::new);
+    }
+
+    /**
+     * Orders the first count rows by key and id, keeping at most limit of them. Each row becomes one
+     * long with its key in the high half and its id in the low half, so comparing longs compares both.
+     * Columns compared by value go through sortByValue instead.
+     */
+    private int[] sort(int[] rows, int count, SortColumn sortColumn, boolean ascending, int limit) {
+        if (sortColumn.byValue) {
+            return sortByValue(rows, count, sortColumn, ascending, limit);
+        }
+        int keep = Math.min(count, Math.max(0, limit));
+        long[] packed = new long[keep];
+        if (keep == count) {
+            for (int i = 0; i < count; i++) {
+                packed[i] = pack(sortColumn.key(rows[i]), catalogue.idAt(rows[i]), ascending);
+            }
+            Arrays.sort(packed);
+        } else if (keep > 0) {
+            // Max-heap of the best keep rows seen so far, so the worst is always at the root
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                long value = pack(sortColumn.key(rows[i]), catalogue.idAt(rows[i]), ascending);
+                if (size < keep) {
+                    packed[size] = value;
+                    siftUp(packed, size++);
+                } else if (value < packed[0]) {
+                    packed[0] = value;
+                    siftDown(packed, keep);
+                }
+            }
+            Arrays.sort(packed);
+        }
+        int[] sorted = new int[keep];
+        for (int i = 0; i < keep; i++) {
+            sorted[i] = catalogue.rowOf((int) packed[i] ^ Integer.MIN_VALUE);
+        }
+        return sorted;
+    }
+
+    /**
+     * Orders the first count rows by comparing their values, keeping at most limit of them in a heap the
+     * size of limit, so each page costs count * log(limit) comparisons rather than a sort of every match.
+     */
+    private int[] sortByValue(int[] rows, int count, SortColumn sortColumn, boolean ascending, int limit) {
+        int keep = Math.min(count, Math.max(0, limit));
+        Comparator<Integer> order = (a, b) -> sortColumn.compare(a, b, ascending);
+        Integer[] best = new Integer[keep];
+        if (keep == count) {
+            for (int i = 0; i < count; i++) {
+                best[i] = rows[i];
+            }
+        } else if (keep > 0) {
+            // Worst of the best keep rows seen so far at the head
+            PriorityQueue<Integer> heap = new PriorityQueue<>(keep, order.reversed());
+            for (int i = 0; i < count; i++) {
+                if (heap.size() < keep) {
+                    heap.add(rows[i]);
+                } else if (sortColumn.compare(rows[i], heap.peek(), ascending) < 0) {
+                    heap.poll();
+                    heap.add(rows[i]);
+                }
+            }
+            best = heap.toArray(best);
+        }
+        Arrays.sort(best, order);
+        int[] sorted = new int[keep];
+        for (int i = 0; i < keep; i++) {
+            sorted[i] = best[i];
+        }
+        return sorted;
+    }
+
+    private static long pack(int key, int id, boolean ascending) {
+        return (long) (ascending ? key : ~key) << 32 | ((id ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+    private static void siftUp(long[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent] >= heap[i]) {
+                return;
+            }
+            long swap = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = swap;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int largest = i;
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (heap[child] > heap[largest]) {
+                    largest = child;
+                }
+            }
+            if (largest == i) {
+                return;
+            }
+            long swap = heap[largest];
+            heap[largest] = heap[i];
+            heap[i] = swap;
+            i = largest;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package furnitureCatalogue.SearchPackage;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How QueryEngine runs one search, as chosen by QueryPlanner: the access path giving the candidate rows,
+ * the conditions that path answers, and the remaining conditions checked on each candidate, most
+ * selective first so most rows are turned away by the first check. Every condition carries its estimated
+ * share of the entries, and the plan carries its estimated cost alongside the cost of each path it was
+ * chosen over, which explain() prints.
+ */
+class QueryPlan {
+    /**
+     * Where the candidate rows come from.
+     */
+    enum Access {
+        /** Every row of the catalogue. */
+        SCAN("scan"),
+        /** The rows of the ids the fuzzy name index matched. */
+        FUZZY("name index"),
+        /** The intersection of the bitmaps of the dictionary filters. */
+        BITMAP("bitmap index"),
+        /** The rows in one range, read from the range index. */
+        RANGE("range index");
+
+        private final String label;
+
+        Access(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * One part of a search: the name match, an equality filter, or a range.
+     */
+    static final class Condition {
+        enum Kind { NAME, FILTER, RANGE }
+
+        final Kind kind;
+        /** Header filtered on, or null for the name match. */
+        final String header;
+        /** Filter value or lowest value of a range. */
+        final String value;
+        /** Highest value of a range. */
+        final String max;
+        /** Estimated fraction of the entries passing, from 0 to 1. */
+        final double selectivity;
+
+        Condition(Kind kind, String header, String value, String max, double selectivity) {
+            this.kind = kind;
+            this.header = header;
+            this.value = value;
+            this.max = max;
+            this.selectivity = selectivity;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case NAME:
+                    return "name matches";
+                case FILTER:
+                    return header + " = " + value;
+                default:
+                    return header + " between " + value + " and " + max;
+            }
+        }
+    }
+
+    private final Access access;
+    private final List<Condition> driving;
+    private final List<Condition> checks;
+    private final int rows;
+    private final double cost;
+    private final Map<String, Double> alternatives;
+    private final ColumnStatistics statistics;
+
+    /**
+     * @param access Where the candidate rows come from.
+     * @param driving Conditions the access path answers.
+     * @param checks Conditions checked on every candidate, in order.
+     * @param rows Number of entries searched.
+     * @param cost Estimated cost, in rows looked at.
+     * @param alternatives Label to estimated cost of each path not chosen.
+     * @param statistics Statistics the estimates come from.
+     */
+    QueryPlan(Access access, List<Condition> driving, List<Condition> checks, int rows, double cost,
+              Map<String, Double> alternatives, ColumnStatistics statistics) {
+        this.access = access;
+        this.driving = List.copyOf(driving);
+        this.checks = List.copyOf(checks);
+        this.rows = rows;
+        this.cost = cost;
+        this.alternatives = alternatives;
+        this.statistics = statistics;
+    }
+
+    Access getAccess() {
+        return access;
+    }
+
+    List<Condition> getDriving() {
+        return driving;
+    }
+
+    List<Condition> getChecks() {
+        return checks;
+    }
+
+    double getCost() {
+        return cost;
+    }
+
+    /**
+     * @return Estimated number of candidates the access path gives.
+     */
+    double getCandidates() {
+        return rows * selectivity(driving);
+    }
+
+    /**
+     * @return Estimated number of matches, taking conditions to be independent.
+     */
+    double getEstimate() {
+        return getCandidates() * selectivity(checks);
+    }
+
+    private static double selectivity(List<Condition> conditions) {
+        double product = 1;
+        for (Condition c : conditions) {
+            product *= c.selectivity;
+        }
+        return product;
+    }
+
+    /**
+     * Describes the plan: the access path and the candidates it is expected to give, each check with the
+     * entries expected to be left after it, and the cost against the paths it was chosen over.
+     * @return One line per step.
+     */
+    String explain() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "Search of %d entries, estimated %.0f matches%n", rows,
+                getEstimate()));
+        text.append("Access: ").append(access);
+        if (!driving.isEmpty()) {
+            text.append(" on ");
+            for (int i = 0; i < driving.size(); i++) {
+                text.append(i > 0 ? ", " : "").append(driving.get(i));
+            }
+        }
+        text.append(String.format(Locale.ROOT, " (est. %.0f rows)%n", getCandidates()));
+        double left = getCandidates();
+        for (Condition c : checks) {
+            left *= c.selectivity;
+            text.append(String.format(Locale.ROOT, "  Check %s (selectivity %.3f, est. %.0f rows left)%n", c,
+                    c.selectivity, left));
+        }
+        text.append(String.format(Locale.ROOT, "Estimated cost %.0f", cost));
+        if (!alternatives.isEmpty()) {
+            text.append(" against");
+            String separator = " ";
+            for (Map.Entry<String, Double> e : alternatives.entrySet()) {
+                text.append(String.format(Locale.ROOT, "%s%s %.0f", separator, e.getKey(), e.getValue()));
+                separator = ", ";
+            }
+        }
+        text.append(String.format(Locale.ROOT, "%nStatistics of %d entries at version %d%n",
+                statistics.getRows(), statistics.getVersion()));
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+}
@@ -0,0 +1,210 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chooses how QueryEngine runs a search, from column statistics rather than fixed rules. Each condition's
+ * share of the entries is estimated (see ColumnStatistics), then every access path the search can use is
+ * costed in rows looked at: a scan of every row, the ids the fuzzy name index matched, the bitmap index
+ * over all dictionary filters, or the range index over one range. A path's cost is what it takes to find
+ * its candidates, plus one per candidate, plus one per check on every row that reaches the check, with
+ * the checks ordered most selective first. The cheapest path wins. Conditions are taken to be
+ * independent, so the estimate of several together is the product of their shares. Statistics are taken
+ * on the first search and again once they are stale, while the caller holds the catalogue's read lock.
+ */
+class QueryPlanner {
+    /**
+     * Cost of visiting one candidate row.
+     */
+    static final double ROW_COST = 1.0;
+    /**
+     * Cost of one check on one row.
+     */
+    static final double CHECK_COST = 1.0;
+    /**
+     * Cost per entry in the bitmaps that are intersected, which are compressed and read a word at a time.
+     */
+    static final double BITMAP_COST = 0.05;
+    /**
+     * Cost per row found through the range index or the name index, which looks up the row of an id.
+     */
+    static final double INDEX_COST = 0.5;
+
+    private final CatalogueStore catalogue;
+    private final BitmapIndex bitmaps;
+    private final RangeIndex rangeIndex;
+    private volatile ColumnStatistics statistics;
+
+    /**
+     * @param catalogue Catalogue to plan searches of.
+     * @param bitmaps Bitmap index following the same catalogue, or null if there is none.
+     * @param rangeIndex Range index following the same catalogue, or null if there is none.
+     */
+    QueryPlanner(CatalogueStore catalogue, BitmapIndex bitmaps, RangeIndex rangeIndex) {
+        this.catalogue = catalogue;
+        this.bitmaps = bitmaps;
+        this.rangeIndex = rangeIndex;
+    }
+
+    /**
+     * Returns the current statistics, taking them first if there are none yet or too much has changed.
+     * @return Statistics of the catalogue.
+     */
+    ColumnStatistics statistics() {
+        ColumnStatistics current = statistics;
+        if (current == null || current.isStale(catalogue)) {
+            synchronized (this) {
+                current = statistics;
+                if (current == null || current.isStale(catalogue)) {
+                    current = ColumnStatistics.analyze(catalogue);
+                    statistics = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Plans one search.
+     * @param ids Ids the result is restricted to, or null for every entry.
+     * @param filters Header to value, matched ignoring case.
+     * @param ranges Header to [min, max], both inclusive.
+     * @return Cheapest plan found.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     */
+    QueryPlan plan(int[] ids, Map<String, String> filters, Map<String, ? extends List<String>> ranges) {
+        ColumnStatistics stats = statistics();
+        int rows = catalogue.rowCount();
+        List<QueryPlan.Condition> all = new ArrayList<>();
+        QueryPlan.Condition name = null;
+        if (ids != null) {
+            name = new QueryPlan.Condition(QueryPlan.Condition.Kind.NAME, null, null, null,
+                    rows == 0 ? 0 : Math.min(1, (double) ids.length / rows));
+            all.add(name);
+        }
+        List<QueryPlan.Condition> indexedFilters = new ArrayList<>();
+        Set<Integer> indexedFields = new HashSet<>();
+        for (Map.Entry<String, String> e : filters.entrySet()) {
+            QueryPlan.Condition c = new QueryPlan.Condition(QueryPlan.Condition.Kind.FILTER, e.getKey(),
+                    e.getValue(), null, equalTo(stats, e.getKey(), e.getValue()));
+            all.add(c);
+            // One filter per field can come from the bitmaps, the others are checked on each row
+            if (bitmaps != null && !isId(e.getKey()) && bitmaps.isIndexed(field(e.getKey()))
+                    && indexedFields.add(field(e.getKey()))) {
+                indexedFilters.add(c);
+            }
+        }
+        List<QueryPlan.Condition> indexedRanges = new ArrayList<>();
+        for (Map.Entry<String, ? extends List<String>> e : ranges.entrySet()) {
+            String min = e.getValue().get(0);
+            String max = e.getValue().get(1);
+            QueryPlan.Condition c = new QueryPlan.Condition(QueryPlan.Condition.Kind.RANGE, e.getKey(), min, max,
+                    between(stats, e.getKey(), min, max));
+            all.add(c);
+            if (rangeIndex != null && rangeIndex.isIndexed(e.getKey())) {
+                indexedRanges.add(c);
+            }
+        }
+
+        // Candidate plans, each with the conditions its path answers and what finding them costs
+        List<QueryPlan> plans = new ArrayList<>();
+        if (name != null) {
+            plans.add(cost(QueryPlan.Access.FUZZY, List.of(name), all, ids, rows, ids.length * INDEX_COST, stats));
+        }
+        if (!indexedFilters.isEmpty()) {
+            double read = 0;
+            for (QueryPlan.Condition c : indexedFilters) {
+                read += c.selectivity * rows * BITMAP_COST;
+            }
+            plans.add(cost(QueryPlan.Access.BITMAP, indexedFilters, all, ids, rows, read, stats));
+        }
+        for (QueryPlan.Condition c : indexedRanges) {
+            plans.add(cost(QueryPlan.Access.RANGE, List.of(c), all, ids, rows, c.selectivity * rows * INDEX_COST,
+                    stats));
+        }
+        plans.add(cost(QueryPlan.Access.SCAN, List.of(), all, ids, rows, 0, stats));
+
+        QueryPlan best = plans.get(0);
+        for (QueryPlan plan : plans) {
+            if (plan.getCost() < best.getCost()) {
+                best = plan;
+            }
+        }
+        Map<String, Double> alternatives = new LinkedHashMap<>();
+        for (QueryPlan plan : plans) {
+            if (plan != best) {
+                alternatives.put(label(plan), plan.getCost());
+            }
+        }
+        return new QueryPlan(best.getAccess(), best.getDriving(), best.getChecks(), rows, best.getCost(),
+                alternatives, stats);
+    }
+
+    /**
+     * Costs one access path: finding its candidates, visiting each, and checking every other condition,
+     * most selective first, on the rows still left.
+     */
+    private static QueryPlan cost(QueryPlan.Access access, List<QueryPlan.Condition> driving,
+                                  List<QueryPlan.Condition> all, int[] ids, int rows, double find,
+                                  ColumnStatistics stats) {
+        List<QueryPlan.Condition> checks = new ArrayList<>(all);
+        checks.removeAll(driving);
+        checks.sort(Comparator.comparingDouble(c -> c.selectivity));
+        double left = rows;
+        for (QueryPlan.Condition c : driving) {
+            left *= c.selectivity;
+        }
+        double cost = find + left * ROW_COST;
+        for (QueryPlan.Condition c : checks) {
+            if (c.kind == QueryPlan.Condition.Kind.NAME) {
+                // Checking the name marks the rows of the matched ids first
+                cost += ids.length * INDEX_COST;
+            }
+            cost += left * CHECK_COST;
+            left *= c.selectivity;
+        }
+        return new QueryPlan(access, driving, checks, rows, cost, Map.of(), stats);
+    }
+
+    private static String label(QueryPlan plan) {
+        if (plan.getAccess() == QueryPlan.Access.RANGE) {
+            return plan.getAccess() + " on " + plan.getDriving().get(0).header;
+        }
+        return plan.getAccess().toString();
+    }
+
+    private double equalTo(ColumnStatistics stats, String header, String value) {
+        return stats.equalTo(catalogue, isId(header) ? -1 : field(header), value);
+    }
+
+    private double between(ColumnStatistics stats, String header, String min, String max) {
+        int field = isId(header) ? -1 : field(header);
+        if (field >= 0 && !catalogue.isNumeric(field)) {
+            return stats.textBetween(field);
+        }
+        return stats.between(field, Integer.parseInt(min.trim()), Integer.parseInt(max.trim()));
+    }
+
+    /**
+     * Returns true if the header names the id column rather than a field.
+     */
+    private boolean isId(String header) {
+        return header.equalsIgnoreCase(catalogue.getHeaders()[0]);
+    }
+
+    private int field(String header) {
+        int field = catalogue.fieldOf(header);
+        if (field < 0) {
+            throw new IllegalArgumentException("Unknown column: " + header);
+        }
+        return field;
+    }
+}
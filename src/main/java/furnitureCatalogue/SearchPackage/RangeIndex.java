@@ -0,0 +1,320 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Sorted index over the id and the numeric fields (Price, Quantity, Weight), answering "between min and
+ * max" without looking at rows outside the range. Each column keeps its (value, id) pairs packed into
+ * longs, in sorted blocks of at most BLOCK_SIZE, so a range is one binary search over the blocks, one
+ * within a block, and a walk to the end of the range. Adding, editing or removing an entry inserts or
+ * deletes single pairs within one block, splitting a full block in two, so the index is never rebuilt
+ * for a change it is told about. Pairs hold ids rather than rows, which the store's swap-remove does not
+ * renumber. A change the index was not told about, such as loading a snapshot, shows up as a version it
+ * has not seen, and the index is rebuilt. Lookups only read the blocks, so any number of them run at
+ * once while their callers hold the catalogue's read lock.
+ */
+class RangeIndex implements CatalogueStore.Listener {
+    /**
+     * Most pairs in one block. Inserting into a block moves at most this many pairs.
+     */
+    static final int BLOCK_SIZE = 1024;
+
+    private final CatalogueStore catalogue;
+    // The id column first, then one per field; null for fields that are not numeric
+    private final SortedColumn[] columns;
+    private volatile long version;
+
+    /**
+     * Pairs of one column, in order, split across blocks.
+     */
+    private static class SortedColumn {
+        private final ArrayList<Block> blocks = new ArrayList<>();
+
+        private static class Block {
+            final long[] keys = new long[BLOCK_SIZE];
+            int size;
+
+            long last() {
+                return keys[size - 1];
+            }
+        }
+
+        /**
+         * Fills the column from unsorted keys, leaving each block a quarter empty for later inserts.
+         */
+        SortedColumn(long[] keys, int count) {
+            Arrays.sort(keys, 0, count);
+            int fill = BLOCK_SIZE * 3 / 4;
+            for (int start = 0; start < count; start += fill) {
+                Block block = new Block();
+                block.size = Math.min(fill, count - start);
+                System.arraycopy(keys, start, block.keys, 0, block.size);
+                blocks.add(block);
+            }
+            if (blocks.isEmpty()) {
+                blocks.add(new Block());
+            }
+        }
+
+        /**
+         * Returns the block a key belongs in: the first whose last key is not below it, or the last
+         * block. Only a column's one remaining block can be empty.
+         */
+        private int blockFor(long key) {
+            int low = 0;
+            int high = blocks.size() - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (blocks.get(mid).last() < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void add(long key) {
+            int b = blockFor(key);
+            Block block = blocks.get(b);
+            if (block.size == BLOCK_SIZE) {
+                Block upper = new Block();
+                int half = BLOCK_SIZE / 2;
+                System.arraycopy(block.keys, half, upper.keys, 0, BLOCK_SIZE - half);
+                upper.size = BLOCK_SIZE - half;
+                block.size = half;
+                blocks.add(b + 1, upper);
+                if (key > block.last()) {
+                    block = upper;
+                }
+            }
+            int i = Arrays.binarySearch(block.keys, 0, block.size, key);
+            if (i < 0) {
+                i = -i - 1;
+                System.arraycopy(block.keys, i, block.keys, i + 1, block.size - i);
+                block.keys[i] = key;
+                block.size++;
+            }
+        }
+
+        void remove(long key) {
+            int b = blockFor(key);
+            Block block = blocks.get(b);
+            int i = Arrays.binarySearch(block.keys, 0, block.size, key);
+            if (i >= 0) {
+                System.arraycopy(block.keys, i + 1, block.keys, i, block.size - i - 1);
+                block.size--;
+                if (block.size == 0 && blocks.size() > 1) {
+                    blocks.remove(b);
+                }
+            }
+        }
+
+        /**
+         * Returns the ids of the keys from low to high, both inclusive, in key order.
+         */
+        int[] idsBetween(long low, long high) {
+            int[] ids = new int[16];
+            int count = 0;
+            for (int b = blockFor(low); b < blocks.size(); b++) {
+                Block block = blocks.get(b);
+                int i = Arrays.binarySearch(block.keys, 0, block.size, low);
+                for (i = i < 0 ? -i - 1 : i; i < block.size; i++) {
+                    if (block.keys[i] > high) {
+                        return Arrays.copyOf(ids, count);
+                    }
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = (int) block.keys[i];
+                }
+            }
+            return Arrays.copyOf(ids, count);
+        }
+    }
+
+    /**
+     * Builds the index over the current entries and starts following the catalogue.
+     * @param catalogue Catalogue to index.
+     */
+    RangeIndex(CatalogueStore catalogue) {
+        this.catalogue = catalogue;
+        columns = new SortedColumn[catalogue.fieldCount() + 1];
+        rebuild();
+        catalogue.addListener(this);
+    }
+
+    /**
+     * @return Catalogue this index follows.
+     */
+    CatalogueStore getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Stops following the catalogue.
+     */
+    void close() {
+        catalogue.removeListener(this);
+    }
+
+    /**
+     * Returns true if ranges on the header can be answered with rowsBetween().
+     * @param header Header of a column, ignoring case.
+     * @return True for the id column and the numeric fields.
+     */
+    boolean isIndexed(String header) {
+        return column(header) >= 0;
+    }
+
+    /**
+     * Returns the rows whose value under the header is between min and max, both inclusive, ordered by
+     * value and then id. Entries without an integer value are left out. Call with the catalogue's read
+     * lock held if other threads may change it.
+     * @param header Id or numeric header, ignoring case.
+     * @param min Lowest value.
+     * @param max Highest value.
+     * @return Matching rows.
+     * @throws IllegalArgumentException If the column is not indexed.
+     */
+    int[] rowsBetween(String header, int min, int max) {
+        int column = column(header);
+        if (column < 0) {
+            throw new IllegalArgumentException("Not a numeric column: " + header);
+        }
+        catchUp();
+        int[] rows = columns[column].idsBetween(pack(min, 0), pack(max, -1));
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = catalogue.rowOf(rows[i]);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the position in columns for a header, or -1 if it is not indexed.
+     */
+    private int column(String header) {
+        if (header.equalsIgnoreCase(catalogue.getHeaders()[0])) {
+            return 0;
+        }
+        int field = catalogue.fieldOf(header);
+        return field >= 0 && catalogue.isNumeric(field) ? field + 1 : -1;
+    }
+
+    /**
+     * Packs a value and an id into one long ordered by value first. The id is kept unsigned in the low
+     * half, so id -1 is the highest id of a value.
+     */
+    private static long pack(int value, int id) {
+        return (long) value << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    private void rebuild() {
+        int rows = catalogue.rowCount();
+        long[] keys = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            keys[row] = pack(catalogue.idAt(row), catalogue.idAt(row));
+        }
+        columns[0] = new SortedColumn(keys, rows);
+        for (int field = 0; field < catalogue.fieldCount(); field++) {
+            if (catalogue.isNumeric(field)) {
+                int count = 0;
+                for (int row = 0; row < rows; row++) {
+                    if (catalogue.hasInt(row, field)) {
+                        keys[count++] = pack(catalogue.getInt(row, field), catalogue.idAt(row));
+                    }
+                }
+                columns[field + 1] = new SortedColumn(keys, count);
+            }
+        }
+        version = catalogue.getVersion();
+    }
+
+    /**
+     * Returns the value an entry had in a numeric field before a change, or null if it had none.
+     */
+    private static Integer oldValue(ArrayList<String> old, int field) {
+        return field < old.size() ? CatalogueStore.intValueOf(old.get(field)) : null;
+    }
+
+    /**
+     * Rebuilds the columns if a change was missed. The version is written last, so a reader that sees it
+     * match never finds a rebuild half done.
+     */
+    private void catchUp() {
+        if (version != catalogue.getVersion()) {
+            synchronized (this) {
+                if (version != catalogue.getVersion()) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if this change follows directly on the last one seen. Otherwise a change was missed
+     * and the index is rebuilt from the catalogue as it is now.
+     */
+    private boolean inStep() {
+        if (catalogue.getVersion() == version + 1) {
+            version++;
+            return true;
+        }
+        rebuild();
+        return false;
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        if (inStep()) {
+            int id = catalogue.idAt(row);
+            columns[0].add(pack(id, id));
+            for (int field = 0; field < catalogue.fieldCount(); field++) {
+                if (columns[field + 1] != null && catalogue.hasInt(row, field)) {
+                    columns[field + 1].add(pack(catalogue.getInt(row, field), id));
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void rowChanged(int row, ArrayList<String> old) {
+        if (inStep()) {
+            int id = catalogue.idAt(row);
+            for (int field = 0; field < catalogue.fieldCount(); field++) {
+                if (columns[field + 1] == null) {
+                    continue;
+                }
+                Integer before = oldValue(old, field);
+                Integer after = catalogue.hasInt(row, field) ? catalogue.getInt(row, field) : null;
+                if (before != null && !before.equals(after)) {
+                    columns[field + 1].remove(pack(before, id));
+                }
+                if (after != null && !after.equals(before)) {
+                    columns[field + 1].add(pack(after, id));
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        if (inStep()) {
+            columns[0].remove(pack(id, id));
+            for (int field = 0; field < catalogue.fieldCount(); field++) {
+                Integer before = columns[field + 1] == null ? null : oldValue(old, field);
+                if (before != null) {
+                    columns[field + 1].remove(pack(before, id));
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void cleared() {
+        rebuild();
+    }
+}
@@ -0,0 +1,131 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bounded cache of advanced search results, least recently used first out. Results are only valid for
+ * the catalogue version they were computed at: the first lookup after any add, edit or remove finds a
+ * new version and empties the cache, so a stale result is never returned.
+ * @param <V> Result of one search.
+ */
+class ResultCache<V> {
+    /**
+     * Default number of results kept, overridden with -Dsearch.cacheSize.
+     */
+    static final int DEFAULT_CAPACITY = 256;
+
+    private final LinkedHashMap<List<Object>, V> entries;
+    private CatalogueStore catalogue;
+    private long version;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    ResultCache() {
+        this(Integer.getInteger("search.cacheSize", DEFAULT_CAPACITY));
+    }
+
+    /**
+     * @param capacity Most results kept at once.
+     */
+    ResultCache(int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Builds the cache key for a search. Searches that always give the same result get the same key:
+     * name and filter matching ignore case and the spacing of the name, and the order in which filters
+     * were entered does not matter.
+     * @param query Search entry.
+     * @param filters Header to value.
+     * @param ranges Header to [min, max].
+     * @param sortCategory Header to sort by.
+     * @param ascending True for ascending order.
+     * @return Key comparing equal for equivalent searches.
+     */
+    static List<Object> key(String query, Map<String, String> filters, Map<String, ? extends List<String>> ranges,
+                            String sortCategory, boolean ascending) {
+        TreeMap<String, String> normalFilters = new TreeMap<>();
+        filters.forEach((header, value) -> normalFilters.put(header.toLowerCase(), value.toLowerCase()));
+        TreeMap<String, List<String>> normalRanges = new TreeMap<>();
+        ranges.forEach((header, range) -> normalRanges.put(header.toLowerCase(), new ArrayList<>(range)));
+        return List.of(String.join(" ", query.toLowerCase().trim().split(" +")), normalFilters, normalRanges,
+                sortCategory.toLowerCase(), ascending);
+    }
+
+    /**
+     * Returns the cached result of a search, or null if the search has to run.
+     * @param catalogue Catalogue being searched.
+     * @param key Key from key().
+     * @return Result of the search, shared with the cache and not to be modified.
+     */
+    synchronized V get(CatalogueStore catalogue, List<Object> key) {
+        validate(catalogue);
+        V result = entries.get(key);
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Stores the result of a search that ran against the catalogue's current version.
+     * @param catalogue Catalogue that was searched.
+     * @param key Key from key().
+     * @param result Result of the search.
+     */
+    synchronized void put(CatalogueStore catalogue, List<Object> key, V result) {
+        validate(catalogue);
+        entries.put(key, result);
+    }
+
+    /**
+     * Empties the cache if the catalogue was swapped or has changed since the results were stored.
+     */
+    private void validate(CatalogueStore catalogue) {
+        if (catalogue != this.catalogue || catalogue.getVersion() != version) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+                entries.clear();
+            }
+            this.catalogue = catalogue;
+            version = catalogue.getVersion();
+        }
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Share of lookups answered from the cache, 0 before the first lookup.
+     */
+    synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * @return Hit rate, lookups, results held and number of times the cache was emptied by a change.
+     */
+    synchronized String getStats() {
+        return String.format("%.1f%% hit rate, %d lookups, %d results cached, %d invalidations",
+                getHitRate() * 100, hits + misses, entries.size(), invalidations);
+    }
+}
@@ -0,0 +1,74 @@
+package furnitureCatalogue.SearchPackage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One entry returned by an advanced search: its id and its values, read by header name either as text
+ * or as an integer.
+ */
+public class ResultRow {
+    private final String[] headers;
+    private final int id;
+    private final List<String> values;
+
+    /**
+     * @param headers Catalogue headers, with the id column first.
+     * @param id Id of the entry.
+     * @param values Values of the entry in header order, without the id. May be shorter than the headers.
+     */
+    ResultRow(String[] headers, int id, List<String> values) {
+        this.headers = headers;
+        this.id = id;
+        this.values = Collections.unmodifiableList(values);
+    }
+
+    /**
+     * @return Id of the entry.
+     */
+    public int getId() { return id; }
+
+    /**
+     * @return Values of the entry in header order, without the id.
+     */
+    public List<String> getValues() { return values; }
+
+    /**
+     * Returns the value under a header, ignoring case.
+     * @param header Header of the value.
+     * @return Value as text, or null if the entry has no value or there is no such header.
+     */
+    public String getString(String header) {
+        if (header.equalsIgnoreCase(headers[0])) {
+            return String.valueOf(id);
+        }
+        for (int i = 1; i < headers.length; i++) {
+            if (headers[i].equalsIgnoreCase(header)) {
+                return i - 1 < values.size() ? values.get(i - 1) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value under a header as an integer, ignoring case.
+     * @param header Header of the value.
+     * @return Value as an integer, or null if the value is missing or not an integer.
+     */
+    public Integer getInt(String header) {
+        String value = getString(header);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return id + "," + String.join(",", values);
+    }
+}
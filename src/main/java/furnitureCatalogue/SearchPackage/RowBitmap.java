@@ -0,0 +1,397 @@
+package furnitureCatalogue.SearchPackage;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of catalogue rows, laid out like a roaring bitmap. Rows are split into chunks of
+ * 65536 by their high 16 bits, and each chunk keeps its low 16 bits in whichever container is smaller:
+ * a sorted array of chars while it holds up to 4096 rows, or a 1024-word bitmap beyond that. Sparse
+ * values cost two bytes per row and common ones one bit per row, and intersecting or merging two
+ * bitmaps works chunk by chunk, 64 rows per word where both chunks are bitmaps.
+ */
+class RowBitmap {
+    /**
+     * Most rows an array container holds before it turns into a bitmap container. At this size both
+     * take 8 KB.
+     */
+    static final int ARRAY_MAX = 4096;
+
+    private Container[] chunks = new Container[0];
+    private int cardinality;
+
+    /**
+     * Adds a row to the set.
+     * @param row Row to add.
+     */
+    void add(int row) {
+        int chunk = row >>> 16;
+        if (chunk >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+        }
+        Container c = chunks[chunk];
+        int before = c == null ? 0 : c.cardinality();
+        c = c == null ? new ArrayContainer() : c;
+        chunks[chunk] = c.add((char) row);
+        cardinality += chunks[chunk].cardinality() - before;
+    }
+
+    /**
+     * Removes a row from the set, if present.
+     * @param row Row to remove.
+     */
+    void remove(int row) {
+        int chunk = row >>> 16;
+        if (chunk >= chunks.length || chunks[chunk] == null) {
+            return;
+        }
+        int before = chunks[chunk].cardinality();
+        chunks[chunk] = chunks[chunk].remove((char) row);
+        cardinality -= before - (chunks[chunk] == null ? 0 : chunks[chunk].cardinality());
+    }
+
+    /**
+     * @param row Row to look for.
+     * @return True if the row is in the set.
+     */
+    boolean contains(int row) {
+        int chunk = row >>> 16;
+        return chunk < chunks.length && chunks[chunk] != null && chunks[chunk].contains((char) row);
+    }
+
+    /**
+     * @return Number of rows in the set.
+     */
+    int getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return Rows in the set, in increasing order.
+     */
+    int[] toArray() {
+        int[] rows = new int[cardinality];
+        int position = 0;
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            if (chunks[chunk] != null) {
+                position = chunks[chunk].fill(rows, position, chunk << 16);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return Independent copy of the set.
+     */
+    RowBitmap copy() {
+        RowBitmap result = new RowBitmap();
+        result.chunks = new Container[chunks.length];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            if (chunks[chunk] != null) {
+                result.chunks[chunk] = chunks[chunk].copy();
+            }
+        }
+        result.cardinality = cardinality;
+        return result;
+    }
+
+    /**
+     * Returns the rows in both sets. Only chunks present in both are looked at.
+     * @param a First set, not modified.
+     * @param b Second set, not modified.
+     * @return New set holding the intersection.
+     */
+    static RowBitmap and(RowBitmap a, RowBitmap b) {
+        RowBitmap result = new RowBitmap();
+        result.chunks = new Container[Math.min(a.chunks.length, b.chunks.length)];
+        for (int chunk = 0; chunk < result.chunks.length; chunk++) {
+            if (a.chunks[chunk] != null && b.chunks[chunk] != null) {
+                Container c = a.chunks[chunk].and(b.chunks[chunk]);
+                result.chunks[chunk] = c;
+                result.cardinality += c == null ? 0 : c.cardinality();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rows in either set.
+     * @param a First set, not modified.
+     * @param b Second set, not modified.
+     * @return New set holding the union.
+     */
+    static RowBitmap or(RowBitmap a, RowBitmap b) {
+        RowBitmap result = new RowBitmap();
+        result.chunks = new Container[Math.max(a.chunks.length, b.chunks.length)];
+        for (int chunk = 0; chunk < result.chunks.length; chunk++) {
+            Container x = chunk < a.chunks.length ? a.chunks[chunk] : null;
+            Container y = chunk < b.chunks.length ? b.chunks[chunk] : null;
+            Container c = x == null ? (y == null ? null : y.copy()) : y == null ? x.copy() : x.or(y);
+            result.chunks[chunk] = c;
+            result.cardinality += c == null ? 0 : c.cardinality();
+        }
+        return result;
+    }
+
+    /**
+     * Low 16 bits of the rows in one chunk. Changes may return a different container to take this
+     * one's place, or null once it is empty.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container copy();
+
+        /**
+         * Writes base + each value to rows from position on, in increasing order.
+         * @return Position after the last value written.
+         */
+        abstract int fill(int[] rows, int position, int base);
+    }
+
+    /**
+     * Sorted array of the values in a sparse chunk.
+     */
+    private static class ArrayContainer extends Container {
+        char[] values;
+        int size;
+
+        ArrayContainer() {
+            values = new char[4];
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            int i = Arrays.binarySearch(values, 0, size, low);
+            if (i >= 0) {
+                return this;
+            }
+            if (size == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            i = -i - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int i = Arrays.binarySearch(values, 0, size, low);
+            if (i < 0) {
+                return this;
+            }
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            return size == 0 ? null : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(size, other.cardinality())];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < size && j < o.size) {
+                    if (values[i] < o.values[j]) {
+                        i++;
+                    } else if (values[i] > o.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return count == 0 ? null : new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            char[] result = new char[size + o.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < o.size) {
+                if (j == o.size || (i < size && values[i] < o.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == size || values[i] > o.values[j]) {
+                    result[count++] = o.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer merged = new ArrayContainer(result, count);
+            return count > ARRAY_MAX ? merged.toBitmap() : merged;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+        }
+
+        @Override
+        int fill(int[] rows, int position, int base) {
+            for (int i = 0; i < size; i++) {
+                rows[position++] = base | values[i];
+            }
+            return position;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = size;
+            return bitmap;
+        }
+    }
+
+    /**
+     * One bit per possible value of a dense chunk.
+     */
+    private static class BitmapContainer extends Container {
+        final long[] words = new long[1024];
+        int cardinality;
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before | 1L << low;
+            if (before != words[low >>> 6]) {
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before & ~(1L << low);
+            if (before != words[low >>> 6]) {
+                cardinality--;
+            }
+            return cardinality == 0 ? null : cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer o = (BitmapContainer) other;
+            // Left as a bitmap even when sparse: the result is usually intersected again, word by word
+            BitmapContainer result = new BitmapContainer();
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & o.words[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality == 0 ? null : result;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int i = 0; i < o.size; i++) {
+                    result.add(o.values[i]);
+                }
+                return result;
+            }
+            BitmapContainer o = (BitmapContainer) other;
+            result.cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] |= o.words[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result;
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer result = new BitmapContainer();
+            System.arraycopy(words, 0, result.words, 0, words.length);
+            result.cardinality = cardinality;
+            return result;
+        }
+
+        @Override
+        int fill(int[] rows, int position, int base) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    rows[position++] = base | i << 6 | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return position;
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
@@ -1,14 +1,26 @@
 package furnitureCatalogue.SearchPackage;
 
-import java.util.HashMap;
+import furnitureCatalogue.CatalogueStore;
+
+import java.time.Duration;
 import java.util.Objects;
-import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Handles communication between SearchView and SearchModel classes.
  * @author Ellie Cunningham
  */
 public class SearchController {
+    /**
+     * Default time an asynchronous search may run before it is stopped, overridden with -Dsearch.deadlineMs.
+     */
+    static final int DEFAULT_DEADLINE_MS = 5000;
+
     /**
      * Static reference of only instance of this object to be created.
      */
@@ -23,25 +35,17 @@ public class SearchController {
     private SearchView view;
 
     /**
-     * User inputted search entry.
-     */
-    protected String query;
-    /**
-     * User selected category to sort results by.
+     * In-memory catalogue the search runs against, if one has been set.
      */
-    protected String sortCategory;
+    protected volatile CatalogueStore catalogue;
     /**
-     * User selected sort order. true = ascending order, false = descending order.
+     * Runs asynchronous searches, each on its own virtual thread.
      */
-    protected boolean sortMode;
+    private final ExecutorService searches = Executors.newVirtualThreadPerTaskExecutor();
     /**
-     * Hashmap storing all text based filters (e.g., <Colour, Blue>).
+     * Time an asynchronous search may run before it is stopped.
      */
-    protected HashMap<String, String> filters;
-    /**
-     * Hashmap storing all integer based filters (e.g., <Price, [10, 50]>).
-     */
-    protected HashMap<String, ArrayList<String>> ranges;
+    private final Duration deadline;
 
     /**
      * Constructor takes no inputs, can only be run through initial getInstance() call.
@@ -50,11 +54,7 @@ public class SearchController {
         c = this;
         model = SearchModel.getInstance();
         view = SearchView.getInstance();
-        query = "";
-        sortCategory = "id";
-        sortMode = true; // default: ascending
-        filters = new HashMap<>();
-        ranges = new HashMap<>();
+        deadline = Duration.ofMillis(Integer.getInteger("search.deadlineMs", DEFAULT_DEADLINE_MS));
     }
 
     /**
@@ -68,15 +68,143 @@ public class SearchController {
         return c;
     }
 
+    /**
+     * Sets the in-memory catalogue used to resolve filters before querying.
+     * @param catalogue Catalogue loaded by CatalogueFileIO.
+     */
+    public void setCatalogue(CatalogueStore catalogue) {
+        this.catalogue = catalogue;
+    }
+
+    /**
+     * Reports how well the advanced search result cache is doing, for sizing it with -Dsearch.cacheSize.
+     * @return Hit rate, lookups, results held and invalidations.
+     */
+    public String getCacheStats() {
+        return model.getCacheStats();
+    }
+
     /**
      * Grabs information from SearchView needed to execute query then calls query() in SearchModel.
+     * @return Results to be read one entry at a time and closed when done.
+     * @throws IllegalArgumentException If a field is not in the catalogue or a bound is not an integer.
+     * @deprecated SearchView is shared, so a search read from it can change under a caller that is still
+     * setting it up. Build a SearchQuery and call searchQuery(SearchQuery) instead.
+     */
+    @Deprecated
+    public SearchResults searchQuery() {
+        return searchQuery(new SearchQuery(view.getQuery(), view.filters, view.ranges, view.getSortCategory(),
+                view.getSortMode()));
+    }
+
+    /**
+     * Runs the given search. Safe to call from several threads at once.
+     * @param query Search to run.
+     * @return Results to be read one entry at a time and closed when done.
+     * @throws IllegalArgumentException If a field is not in the catalogue or a bound is not an integer.
+     */
+    public SearchResults searchQuery(SearchQuery query) {
+        return model.query(query);
+    }
+
+    /**
+     * Returns one page of results of the given search, skipping the first offset. Safe to call from
+     * several threads at once.
+     * @param query Search to run.
+     * @param offset Number of results before the page.
+     * @param limit Most results on the page.
+     * @return Page of results with the total number of matches.
+     * @throws IllegalArgumentException If a field is not in the catalogue or a bound is not an integer.
+     */
+    public SearchPage searchPage(SearchQuery query, int offset, int limit) {
+        return model.page(query, null, offset, limit);
+    }
+
+    /**
+     * Returns the page of results of the given search after the cursor, which costs the same however far
+     * into the results it is. Pass the same query the previous page came from.
+     * @param query Search to run.
+     * @param after Cursor from SearchPage.getNext() of the previous page.
+     * @param limit Most results on the page.
+     * @return Page of results with the total number of matches.
+     * @throws IllegalArgumentException If a field is not in the catalogue or a bound is not an integer.
+     */
+    public SearchPage searchPage(SearchQuery query, SearchPage.Cursor after, int limit) {
+        return model.page(query, after, 0, limit);
+    }
+
+    /**
+     * Starts one page of the given search on a virtual thread and returns at once, stopping the search
+     * after the default deadline.
+     * @param query Search to run.
+     * @param offset Number of results before the page.
+     * @param limit Most results on the page.
+     * @return Future completed with the page; see searchPageAsync(SearchQuery, int, int, Duration).
+     */
+    public CompletableFuture<SearchPage> searchPageAsync(SearchQuery query, int offset, int limit) {
+        return searchPageAsync(query, offset, limit, deadline);
+    }
+
+    /**
+     * Starts one page of the given search on a virtual thread and returns at once, so the caller (such as
+     * the Swing event thread) never waits for it. Searches started by different callers run side by side;
+     * a caller that only wants its newest search cancels the future of the one before. The search is
+     * stopped when the deadline passes or the returned future is cancelled. A stopped search's thread is
+     * interrupted and gives up at its next check, a few thousand rows later, so stale searches stop using
+     * the CPU.
+     * @param query Search to run.
+     * @param offset Number of results before the page.
+     * @param limit Most results on the page.
+     * @param deadline Longest the search may run.
+     * @return Future completed with the page, or exceptionally with a CancellationException if it was
+     * cancelled, a TimeoutException if the deadline passed, or an IllegalArgumentException if a field is
+     * not in the catalogue or a bound is not an integer.
+     */
+    public CompletableFuture<SearchPage> searchPageAsync(SearchQuery query, int offset, int limit, Duration deadline) {
+        return startSearch(() -> searchPage(query, offset, limit), deadline);
+    }
+
+    /**
+     * Starts the page of the given search after the cursor on a virtual thread and returns at once,
+     * stopping the search after the default deadline or when the returned future is cancelled, like
+     * searchPageAsync(SearchQuery, int, int, Duration).
+     * @param query Search to run, the same the previous page came from.
+     * @param after Cursor from SearchPage.getNext() of the previous page.
+     * @param limit Most results on the page.
+     * @return Future completed with the page, or exceptionally as for searchPageAsync(SearchQuery, int,
+     * int, Duration).
+     */
+    public CompletableFuture<SearchPage> searchPageAsync(SearchQuery query, SearchPage.Cursor after, int limit) {
+        return startSearch(() -> searchPage(query, after, limit), deadline);
+    }
+
+    private CompletableFuture<SearchPage> startSearch(Supplier<SearchPage> search, Duration deadline) {
+        CompletableFuture<SearchPage> result = new CompletableFuture<>();
+        Future<?> task = searches.submit(() -> {
+            try {
+                result.complete(search.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        // However the future ends early, the search behind it stops as well
+        result.whenComplete((page, e) -> {
+            if (e != null) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Describes how the given search would run without running it: the path its candidate rows come from,
+     * its checks in the order they run, and the estimated number of entries left after each.
+     * @param query Search to describe.
+     * @return Plan of the search, one step per line.
+     * @throws IllegalArgumentException If a field is not in the catalogue or a bound is not an integer.
      */
-    public void searchQuery() {
-        query = view.getQuery();
-        sortCategory = view.getSortCategory();
-        sortMode = view.getSortMode();
-        this.filters = view.filters;
-        this.ranges = view.ranges;
-        model.query();
+    public String explain(SearchQuery query) {
+        return model.explain(query);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,340 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Long-lived in-memory H2 database holding the catalogue as one typed table, t. The table is loaded
+ * once from the in-memory catalogue and then kept in step with it: every add, edit and remove made to
+ * the catalogue is applied to the table as it happens, so a search only pays for its own query.
+ * Every column advanced search can filter or sort on has an index, which H2 updates with each change.
+ */
+class SearchDatabase implements CatalogueStore.Listener {
+    /**
+     * Rows inserted per JDBC batch while loading.
+     */
+    private static final int LOAD_BATCH = 1000;
+    /**
+     * Most prepared search statements kept open at once.
+     */
+    static final int STATEMENT_CACHE_SIZE = 64;
+    /**
+     * Open connection to a private in-memory database, which lives as long as the connection.
+     */
+    private final Connection connection;
+    /**
+     * Catalogue the table mirrors.
+     */
+    private final CatalogueStore catalogue;
+    private PreparedStatement upsert;
+    private PreparedStatement delete;
+    /**
+     * Set when a change could not be applied, so the table is rebuilt before the next query.
+     */
+    private boolean stale;
+    /**
+     * Prepared search statements not in use, by SQL text, least recently used first. The SQL only holds the shape of
+     * a search (which filters, the sort column and direction) with every value bound as a parameter, so
+     * repeated searches reuse a statement H2 has already parsed and planned.
+     */
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= STATEMENT_CACHE_SIZE) {
+                return false;
+            }
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+    private long statementHits;
+    private long statementMisses;
+    private boolean closed;
+
+    /**
+     * Creates the table from the catalogue and starts following its changes.
+     * @param catalogue Catalogue loaded by CatalogueFileIO.
+     * @throws SQLException If the database cannot be created.
+     */
+    SearchDatabase(CatalogueStore catalogue) throws SQLException {
+        this.catalogue = catalogue;
+        connection = DriverManager.getConnection("jdbc:h2:mem:");
+        String[] headers = catalogue.getHeaders();
+        StringBuilder create = new StringBuilder("CREATE TABLE t (");
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < headers.length; i++) {
+            boolean numeric = i == 0 || catalogue.isNumeric(i - 1);
+            create.append(i > 0 ? ", " : "").append(columnName(headers[i]))
+                    .append(numeric ? " INTEGER" : " VARCHAR").append(i == 0 ? " PRIMARY KEY" : "");
+            params.append(i > 0 ? ", ?" : "?");
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(create.append(")").toString());
+        }
+        upsert = connection.prepareStatement("MERGE INTO t KEY(" + columnName(headers[0]) + ") VALUES ("
+                + params + ")");
+        delete = connection.prepareStatement("DELETE FROM t WHERE " + columnName(headers[0]) + " = ?");
+        load();
+        createIndexes();
+        catalogue.addListener(this);
+    }
+
+    /**
+     * Reads a CSV file into a new catalogue, for when no in-memory catalogue has been set.
+     * @param csvPath Path of the CSV file.
+     * @return Catalogue holding every row of the file.
+     * @throws SQLException If the file cannot be read.
+     */
+    static CatalogueStore readCsv(String csvPath) throws SQLException {
+        try (Connection csv = DriverManager.getConnection("jdbc:h2:mem:");
+             Statement statement = csv.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM CSVREAD('" + csvPath.replace("'", "''") + "')")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            String[] headers = new String[meta.getColumnCount()];
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = meta.getColumnLabel(i + 1);
+            }
+            CatalogueStore catalogue = new CatalogueStore(headers);
+            while (rs.next()) {
+                ArrayList<String> row = new ArrayList<>();
+                for (int i = 2; i <= headers.length; i++) {
+                    row.add(Objects.toString(rs.getString(i), ""));
+                }
+                catalogue.put(Integer.parseInt(rs.getString(1).trim()), row);
+            }
+            return catalogue;
+        }
+    }
+
+    /**
+     * Quotes a catalogue header as an H2 column name. Plain identifiers are upper-cased, as CSVREAD
+     * does, and names such as "Furniture Type" are kept exactly as written.
+     * @param header Catalogue header.
+     * @return Quoted column name.
+     */
+    static String columnName(String header) {
+        String name = header.matches("[A-Za-z_][A-Za-z0-9_]*") ? header.toUpperCase() : header;
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Quotes a header of the catalogue as a column name, ignoring case and refusing anything that is
+     * not one of its headers so user input never reaches the SQL text.
+     * @param header Header chosen by the user.
+     * @return Quoted column name.
+     * @throws IllegalArgumentException If the catalogue has no such header.
+     */
+    String column(String header) {
+        String[] headers = catalogue.getHeaders();
+        if (header.equalsIgnoreCase(headers[0])) {
+            return columnName(headers[0]);
+        }
+        int field = catalogue.fieldOf(header);
+        if (field < 0) {
+            throw new IllegalArgumentException("Unknown column: " + header);
+        }
+        return columnName(headers[field + 1]);
+    }
+
+    /**
+     * Takes a prepared statement for the given SQL out of the cache, or prepares one if none is free.
+     * The caller has it to itself until it is handed back with release(), so results being read from one
+     * search are not closed by the next search of the same shape.
+     * @param sql Parameterized SQL.
+     * @return Prepared statement with its parameters cleared.
+     * @throws SQLException If the SQL cannot be prepared.
+     */
+    synchronized PreparedStatement acquire(String sql) throws SQLException {
+        PreparedStatement statement = statements.remove(sql);
+        if (statement != null) {
+            statementHits++;
+            statement.clearParameters();
+            return statement;
+        }
+        statementMisses++;
+        return connection.prepareStatement(sql);
+    }
+
+    /**
+     * Hands a statement from acquire() back to the cache, or closes it if the cache already holds one for
+     * the same SQL or the database has been closed.
+     * @param sql SQL the statement was acquired for.
+     * @param statement Statement to hand back.
+     */
+    synchronized void release(String sql, PreparedStatement statement) {
+        if (closed || statements.containsKey(sql)) {
+            closeQuietly(statement);
+        } else {
+            statements.put(sql, statement);
+        }
+    }
+
+    /**
+     * @return Number of searches that reused a prepared statement.
+     */
+    synchronized long getStatementHits() {
+        return statementHits;
+    }
+
+    /**
+     * @return Number of searches that had to prepare a new statement.
+     */
+    synchronized long getStatementMisses() {
+        return statementMisses;
+    }
+
+    /**
+     * @return Open connection holding table t.
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return Catalogue the table mirrors.
+     */
+    CatalogueStore getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * @return True if a change failed to apply and the table no longer matches the catalogue.
+     */
+    synchronized boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Stops following the catalogue and closes the database.
+     */
+    synchronized void close() {
+        closed = true;
+        catalogue.removeListener(this);
+        statements.values().forEach(SearchDatabase::closeQuietly);
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Inserts every catalogue row in batches inside one transaction.
+     */
+    private void load() throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            for (int row = 0; row < catalogue.rowCount(); row++) {
+                bindRow(row);
+                upsert.addBatch();
+                if (row % LOAD_BATCH == LOAD_BATCH - 1) {
+                    upsert.executeBatch();
+                }
+            }
+            upsert.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Indexes every field except Name, which is searched through the fuzzy name index instead. Numeric
+     * fields serve range filters and sorting, and text fields serve equality filters. The indexes are
+     * created after loading so they are built once in sorted order rather than row by row.
+     */
+    private void createIndexes() throws SQLException {
+        String[] headers = catalogue.getHeaders();
+        int nameField = catalogue.fieldOf("Name");
+        try (Statement statement = connection.createStatement()) {
+            for (int field = 0; field < catalogue.fieldCount(); field++) {
+                if (field != nameField) {
+                    statement.execute("CREATE INDEX " + indexName(headers[field + 1]) + " ON t("
+                            + columnName(headers[field + 1]) + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * @param header Catalogue header.
+     * @return Quoted name of the index on that header's column.
+     */
+    static String indexName(String header) {
+        return columnName("T_" + header);
+    }
+
+    /**
+     * Binds one catalogue row to the upsert statement. Numeric cells that are not integers, and fields
+     * missing from short rows, become NULL.
+     */
+    private void bindRow(int row) throws SQLException {
+        upsert.setInt(1, catalogue.idAt(row));
+        for (int field = 0; field < catalogue.fieldCount(); field++) {
+            if (catalogue.isNumeric(field)) {
+                if (catalogue.hasInt(row, field)) {
+                    upsert.setInt(field + 2, catalogue.getInt(row, field));
+                } else {
+                    upsert.setNull(field + 2, Types.INTEGER);
+                }
+            } else {
+                upsert.setString(field + 2, catalogue.getValue(row, field));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        upsertRow(row);
+    }
+
+    @Override
+    public synchronized void rowChanged(int row, ArrayList<String> old) {
+        upsertRow(row);
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+        try {
+            delete.setInt(1, id);
+            delete.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            stale = true;
+        }
+    }
+
+    @Override
+    public synchronized void cleared() {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE t");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            stale = true;
+        }
+    }
+
+    private void upsertRow(int row) {
+        try {
+            bindRow(row);
+            upsert.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            stale = true;
+        }
+    }
+}
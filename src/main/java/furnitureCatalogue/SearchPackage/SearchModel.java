@@ -1,13 +1,15 @@
 package furnitureCatalogue.SearchPackage;
 
-import furnitureCatalogue.CatalogueUI;
-import java.net.URL;
+import furnitureCatalogue.CatalogueStore;
 import java.sql.*;
 import java.util.*;
 
 /**
- * Uses the JDBC library to run SQL queries. Processes output for advanced search including quality of
- * life features such as filters, sorting, and relevancy searching all in one routine.
+ * Runs advanced searches over the in-memory catalogue through QueryEngine, or through SQL queries on
+ * the H2 search database when started with -Dsearch.engine=h2. Produces results for advanced search
+ * including quality of life features such as filters, sorting, and relevancy searching all in one routine.
+ * Each search arrives whole as a SearchQuery, so the model keeps no state about any one search and several
+ * threads may search at once.
  * @author Ellie Cunningham
  * @author Lucas Fischer
  */
@@ -21,9 +23,25 @@ public class SearchModel {
      */
     private SearchController controller;
     /**
-     * Name of file to be searched through.
+     * Name of file to be searched through when no in-memory catalogue has been set.
      */
     private String fileName;
+    /**
+     * Catalogue read from the csv file when no in-memory catalogue has been set.
+     */
+    private CatalogueStore csvCatalogue;
+    /**
+     * Long-lived database the queries run against, created on the first search.
+     */
+    private SearchDatabase database;
+    /**
+     * Indexes, engine and result cache of the current catalogue, replaced when the catalogue is swapped.
+     */
+    private volatile SearchService service;
+    /**
+     * Run searches through the H2 database instead of the engine, enabled with -Dsearch.engine=h2.
+     */
+    private volatile boolean useDatabase = "h2".equals(System.getProperty("search.engine"));
 
     /**
      * Constructor takes no inputs, can only be run through initial getInstance() call.
@@ -45,125 +63,206 @@ public class SearchModel {
         return m;
     }
 
-    // Runs entire search routine, should only ever be run from searchController.
+    /**
+     * Turns the H2 search path on or off for the following searches.
+     * @param useDatabase True to search through the database, false to use the engine.
+     */
+    void setUseDatabase(boolean useDatabase) {
+        this.useDatabase = useDatabase;
+    }
 
     /**
-     * Emulates database file in memory from csv and executes SQL queries to generate and output results
-     * for advanced search. Results are output to stream rather than returned.
-     */
-    protected void query() {
-        String url = "src/main/resources/" + fileName;
-        String order = controller.sortMode ? " ASC" : " DESC";
-        String query = controller.query.replace(" ","%");
-        // Filter requires additional formatting. Filters are used to build chunk of an sql query
-        String filter = "";
-        for (String s : controller.filters.keySet()) {
-            filter += s + " = '" + controller.filters.get(s) + "' AND ";
+     * @return Hit rate and size of the result cache.
+     */
+    String getCacheStats() {
+        SearchService current = service;
+        return current == null ? new ResultCache<>().getStats() : current.getCacheStats();
+    }
+
+    /**
+     * Returns the search service for the current catalogue, replacing it if the catalogue has been
+     * swapped. Without an in-memory catalogue the csv is read once.
+     * @return Service over the current catalogue.
+     * @throws SQLException If the csv cannot be read.
+     */
+    private SearchService service() throws SQLException {
+        SearchService current = service;
+        CatalogueStore catalogue = controller.catalogue;
+        if (current != null && catalogue != null && current.getCatalogue() == catalogue) {
+            return current;
         }
-        for (String s : controller.ranges.keySet()) {
-            filter += s + " BETWEEN " + controller.ranges.get(s).get(0)
-                    + " AND " + controller.ranges.get(s).get(1) + " AND ";
+        synchronized (this) {
+            if (catalogue == null) {
+                if (csvCatalogue == null) {
+                    csvCatalogue = SearchDatabase.readCsv("src/main/resources/" + fileName);
+                }
+                catalogue = csvCatalogue;
+            }
+            if (service == null || service.getCatalogue() != catalogue) {
+                if (service != null) {
+                    service.close();
+                }
+                service = new SearchService(catalogue);
+            }
+            return service;
         }
+    }
 
-        // Fix any lingering formatting issues from concatenations
-        if(!filter.isEmpty()) {
-            filter = filter.substring(0, filter.length() - 4);
-            filter = "WHERE " + filter;
+    /**
+     * Returns the database for the catalogue, replacing it if the catalogue has been swapped or a change
+     * failed to reach the table.
+     * @param catalogue Current catalogue.
+     * @return Database holding table t.
+     * @throws SQLException If the database cannot be created.
+     */
+    private synchronized SearchDatabase database(CatalogueStore catalogue) throws SQLException {
+        if (database != null && database.getCatalogue() == catalogue && !database.isStale()) {
+            return database;
         }
+        if (database != null) {
+            database.close();
+        }
+        database = new SearchDatabase(catalogue);
+        return database;
+    }
 
-        // Database is created locally in memory only reading from the main csv
-        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:")) {
-            // Load main csv into table
-            PreparedStatement load = connection.prepareStatement(
-                    "CREATE TABLE t AS SELECT * FROM CSVREAD('" + url + "')");
-            load.execute();
-
-            // Integer columns are by default loaded as strings, this converts them back to integers
-            PreparedStatement reformat = connection.prepareStatement(
-                    "ALTER TABLE t ALTER COLUMN id INTEGER;" +
-                    "ALTER TABLE t ALTER COLUMN Quantity INTEGER;" +
-                    "ALTER TABLE t ALTER COLUMN Weight INTEGER;" +
-                    "ALTER TABLE t ALTER COLUMN Price INTEGER;");
-            reformat.execute();
+    /**
+     * @return Database used by the last search, or null before the first one.
+     */
+    synchronized SearchDatabase currentDatabase() {
+        return database;
+    }
 
-            // Main query that generates final result
-            String format = formatQuery(query);
-            PreparedStatement searchFilter = connection.prepareStatement("(" + format +
-                    ") INTERSECT SELECT * FROM t " + filter + "ORDER BY " + controller.sortCategory + order);
-            ResultSet queryResult = searchFilter.executeQuery();
+    /**
+     * Runs the search for one page of results. Pages always come from the engine, which only sorts as
+     * far as the end of the page and continues from a cursor for the pages after it.
+     * @param query Search to run.
+     * @param after Cursor from the previous page, or null to start at the beginning.
+     * @param offset Number of results to skip, after the cursor if there is one.
+     * @param limit Most results on the page.
+     * @return Page of results, empty if the csv could not be read.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     */
+    protected SearchPage page(SearchQuery query, SearchPage.Cursor after, int offset, int limit) {
+        try {
+            return service().page(query, after, offset, limit);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new SearchPage(List.of(), List.of(), 0, 0, null, Map.of());
+        }
+    }
 
-            // Output results
-            List<String> headers = Arrays.asList("Name", "Price", "Furniture Type", "Colour",
-                                                   "Materials", "Size", "Quantity", "Company", "Style", "Weight");
-            while (queryResult.next()) {
-                StringBuilder itemString = new StringBuilder(queryResult.getInt("id") + "\t");
-                for (int i = 0; i < headers.size(); i++) {
-                    itemString.append(queryResult.getString(headers.get(i)));
-                    // Use CatalogueUI.maxLengths for spacing (assumes these are set)
-                    for (int j = 0; j <= Math.ceil((double)(CatalogueUI.maxLengths[i]) / 8.0)
-                                        - Math.floor((double)(queryResult.getString(headers.get(i)).length()) / 8.0); j++) {
-                        itemString.append("\t");
-                    }
-                }
-                System.out.println(itemString);
+    /**
+     * Runs the advanced search and returns its results to be read one at a time. Engine results are
+     * cached until the catalogue changes; database results are read from an open cursor. Every user
+     * entered value is bound as a parameter, so searches of the same shape share one prepared statement.
+     * @param query Search to run.
+     * @return Results of the search, empty if the search could not run.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     */
+    protected SearchResults query(SearchQuery query) {
+        try {
+            SearchService current = service();
+            if (!useDatabase) {
+                return current.query(query);
+            }
+            // Fuzzy name matches come from the name index, the database applies filters and sorting
+            int[] ids = current.nameMatches(query.getQuery());
+            if (ids != null && ids.length == 0) {
+                return SearchResults.empty();
             }
-            System.out.println();
+            return queryDatabase(database(current.getCatalogue()), ids, query);
         } catch (SQLException e) {
             e.printStackTrace();
+            return SearchResults.empty();
         }
     }
 
     /**
-     * Formats search entry to include 'wildcard characters' and prebuild a segment of SQL code.
-     * Leniency depends on length of query.
-     * @param query Given search entry.
-     * @return Segment of SQL query pertaining to relevancy search.
+     * Describes how the search would run, with the estimated number of entries at each step. Searches
+     * through the H2 database leave the choice of index to H2, so only the name match and the estimates
+     * come from the engine's planner.
+     * @param query Search to describe.
+     * @return Plan of the search, one step per line.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
      */
-    private String formatQuery(String query) {
-        int depth = (query.length()/3) + 1; // Represents how many wrong characters are permitted
-        String formattedQuery = "SELECT * FROM t WHERE Name LIKE '%" + query + "%'";
-        if(query.length() < 4) {
-            return formattedQuery;
-        }
-        else if(query.length() == 6) {
-            depth = 2;
-        }
-        else if(query.length() > 9) {
-            depth = 3;
+    protected String explain(SearchQuery query) {
+        try {
+            String plan = service().explain(query);
+            return useDatabase ? "Runs on the H2 database (-Dsearch.engine=h2), which picks its own index; "
+                    + "the engine would plan it as:" + System.lineSeparator() + plan : plan;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return "";
         }
+    }
 
-        List<String> permutationsBase = recursiveFormatQuery(query, depth); // Recursive function
-        // Many results from recursion are unnecessary duplicates, this filters them out.
-        List<String> permutations = new ArrayList<>();
-        for(String s : permutationsBase) {
-            if(!permutations.contains(s)) {
-                permutations.add(s);
+    /**
+     * Runs the search as one SQL query against the database.
+     * @param db Database holding table t.
+     * @param ids Ids matching the name, or null if every entry matches.
+     * @param query Search to run.
+     * @return Results read from the query's cursor.
+     * @throws SQLException If the query fails.
+     */
+    private SearchResults queryDatabase(SearchDatabase db, int[] ids, SearchQuery query) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        // Filters are used to build chunk of an sql query, in a fixed order so the shape is reused
+        StringBuilder filter = new StringBuilder();
+        if (ids != null) {
+            filter.append("WHERE id = ANY(?) ");
+            params.add(Arrays.stream(ids).boxed().toArray(Integer[]::new));
+        }
+        for (String s : new TreeSet<>(query.getFilters().keySet())) {
+            List<String> values = dictionaryMatches(db.getCatalogue(), s, query.getFilters().get(s));
+            if (values.isEmpty()) {
+                // No entry holds this value, so there is nothing to query
+                return SearchResults.empty();
             }
+            filter.append(filter.length() == 0 ? "WHERE " : "AND ").append(db.column(s)).append(" = ANY(?) ");
+            params.add(values.toArray(new String[0]));
         }
-
-        // Building the sql chunk
-        for(String s : permutations) {
-            formattedQuery += " UNION SELECT * FROM t WHERE Name LIKE '%" + s + "%'";
+        for (String s : new TreeSet<>(query.getRanges().keySet())) {
+            filter.append(filter.length() == 0 ? "WHERE " : "AND ").append(db.column(s)).append(" BETWEEN ? AND ? ");
+            params.add(query.getRanges().get(s).get(0));
+            params.add(query.getRanges().get(s).get(1));
+        }
+        // One indexed select: H2 picks the most selective index among the conditions
+        String sql = "SELECT * FROM t " + filter + "ORDER BY " + db.column(query.getSortCategory())
+                + (query.isAscending() ? " ASC" : " DESC");
+        PreparedStatement searchFilter = db.acquire(sql);
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                searchFilter.setObject(i + 1, params.get(i));
+            }
+        } catch (SQLException e) {
+            db.release(sql, searchFilter);
+            throw e;
         }
-        return formattedQuery;
+        return new SearchResults.DatabaseResults(db, sql, searchFilter);
     }
 
     /**
-     * Recursively adds wildcard character '_' to different positions in query.
-     * @param query Given search entry, may contain wildcards depending on number of recursive calls.
-     * @param depth Tracks remaining recursive calls. Subtracts 1 per iterations, breaks when > 0.
-     * @return Permutations of wildcard combinations.
+     * Resolves an equality filter against the catalogue dictionary for that column. Codes are compared
+     * once per distinct value instead of once per row, and the filter matches regardless of case.
+     * @param catalogue Catalogue being searched.
+     * @param column Column being filtered.
+     * @param value User entered filter value.
+     * @return Stored spellings of the value, empty if no entry holds it. Without a dictionary for the
+     * column the value is returned unchanged.
      */
-    private List<String> recursiveFormatQuery (String query, int depth) {
-        List<String> permutations = new ArrayList<>();
-        if(depth > 0) {
-            for (int i = 0; i < query.length(); i++) {
-                permutations.addAll(recursiveFormatQuery(query.substring(0, i) + "_" + query.substring(i + 1), depth - 1));
-            }
+    private List<String> dictionaryMatches(CatalogueStore catalogue, String column, String value) {
+        int field = catalogue.fieldOf(column);
+        if (field < 0 || !catalogue.isDictionary(field)) {
+            return List.of(value);
         }
-        else {
-            permutations.add(query);
+        boolean[] codes = catalogue.codesMatching(field, value);
+        List<String> values = new ArrayList<>();
+        for (int code = 0; code < codes.length; code++) {
+            if (codes[code]) {
+                values.add(catalogue.dictionaryValue(field, code));
+            }
         }
-        return permutations;
+        return values;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,93 @@
+package furnitureCatalogue.SearchPackage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of advanced search results, with the total number of matches, the facet counts over all of
+ * them and a cursor for the page after it. The rows are copies taken when the page was made, so later
+ * changes to the catalogue do not alter a page that is already on screen.
+ */
+public class SearchPage {
+    /**
+     * Position just after the last entry of a page: its sort value and its id. Asking for the page after
+     * a cursor continues from that position even if entries have been added or removed in the meantime.
+     */
+    public static class Cursor {
+        /**
+         * Sort value of the entry, an Integer for id and numeric fields, a String otherwise, or null if
+         * the entry has no value.
+         */
+        final Object value;
+        final int id;
+
+        Cursor(Object value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+
+    private final List<Integer> ids;
+    private final List<ArrayList<String>> rows;
+    private final int total;
+    private final int offset;
+    private final Cursor next;
+    private final Map<String, Map<String, Integer>> facets;
+
+    /**
+     * @param ids Ids of the entries on the page, in order.
+     * @param rows Values of the entries on the page, in order.
+     * @param total Number of entries matching the search.
+     * @param offset Number of matching entries before this page.
+     * @param next Cursor after the last entry, or null if this is the last page.
+     * @param facets Header to value to number of matching entries.
+     */
+    SearchPage(List<Integer> ids, List<ArrayList<String>> rows, int total, int offset, Cursor next,
+               Map<String, Map<String, Integer>> facets) {
+        this.ids = Collections.unmodifiableList(ids);
+        this.rows = Collections.unmodifiableList(rows);
+        this.total = total;
+        this.offset = offset;
+        this.next = next;
+        this.facets = Collections.unmodifiableMap(facets);
+    }
+
+    /**
+     * @return Ids of the entries on this page, in order.
+     */
+    public List<Integer> getIds() { return ids; }
+
+    /**
+     * @return Values of the entries on this page, in the same order as getIds().
+     */
+    public List<ArrayList<String>> getRows() { return rows; }
+
+    /**
+     * @return Number of entries matching the search, on every page.
+     */
+    public int getTotal() { return total; }
+
+    /**
+     * @return Number of matching entries before this page.
+     */
+    public int getOffset() { return offset; }
+
+    /**
+     * @return Cursor for the page after this one, or null if this is the last page.
+     */
+    public Cursor getNext() { return next; }
+
+    /**
+     * @return True if more entries follow this page.
+     */
+    public boolean hasNext() { return next != null; }
+
+    /**
+     * Returns the number of matching entries per value of Colour, Materials, Furniture Type, Company and
+     * Style, and per Price bucket, counted over every match rather than just this page.
+     * @return Header to value to count, values ordered by count and price buckets from the lowest.
+     */
+    public Map<String, Map<String, Integer>> getFacets() { return facets; }
+}
@@ -0,0 +1,85 @@
+package furnitureCatalogue.SearchPackage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Everything one advanced search asks for: the name entered, the filters, the ranges and the sort.
+ * A query is copied when it is made and never changes afterwards, so it can be handed to another thread
+ * or kept to fetch later pages while the view is already being edited for the next search.
+ */
+public final class SearchQuery {
+    private final String query;
+    private final Map<String, String> filters;
+    private final Map<String, List<String>> ranges;
+    private final String sortCategory;
+    private final boolean ascending;
+
+    /**
+     * @param query Search entry, blank to match every name.
+     * @param filters Header to value (e.g., <Colour, Blue>).
+     * @param ranges Header to [min, max] (e.g., <Price, [10, 50]>).
+     * @param sortCategory Header to sort by.
+     * @param ascending True for ascending order.
+     */
+    public SearchQuery(String query, Map<String, String> filters, Map<String, ? extends List<String>> ranges,
+                       String sortCategory, boolean ascending) {
+        this.query = Objects.requireNonNull(query);
+        this.filters = Collections.unmodifiableMap(new LinkedHashMap<>(filters));
+        Map<String, List<String>> copied = new LinkedHashMap<>();
+        ranges.forEach((header, range) -> copied.put(header, Collections.unmodifiableList(new ArrayList<>(range))));
+        this.ranges = Collections.unmodifiableMap(copied);
+        this.sortCategory = Objects.requireNonNull(sortCategory);
+        this.ascending = ascending;
+    }
+
+    /**
+     * @return Search entry.
+     */
+    public String getQuery() { return query; }
+
+    /**
+     * @return Header to value, unmodifiable.
+     */
+    public Map<String, String> getFilters() { return filters; }
+
+    /**
+     * @return Header to [min, max], unmodifiable.
+     */
+    public Map<String, List<String>> getRanges() { return ranges; }
+
+    /**
+     * @return Header the results are sorted by.
+     */
+    public String getSortCategory() { return sortCategory; }
+
+    /**
+     * @return True for ascending order, false for descending.
+     */
+    public boolean isAscending() { return ascending; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SearchQuery)) {
+            return false;
+        }
+        SearchQuery other = (SearchQuery) o;
+        return query.equals(other.query) && filters.equals(other.filters) && ranges.equals(other.ranges)
+                && sortCategory.equals(other.sortCategory) && ascending == other.ascending;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query, filters, ranges, sortCategory, ascending);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchQuery[" + query + ", " + filters + ", " + ranges + ", " + sortCategory
+                + (ascending ? " asc]" : " desc]");
+    }
+}
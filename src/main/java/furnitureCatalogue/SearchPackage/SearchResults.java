@@ -0,0 +1,249 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Results of an advanced search, read one entry at a time. Entries are fetched from the catalogue a page
+ * at a time, or from the database through a cursor, as they are read, so the first ones are available
+ * without waiting for the rest and reading a large result never holds all of it. Close the results when
+ * done, for example with try-with-resources, to give back the database cursor behind them.
+ */
+public abstract class SearchResults implements Iterator<ResultRow>, AutoCloseable {
+    /**
+     * Closes the results. Reading after closing finds no more entries.
+     */
+    @Override
+    public abstract void close();
+
+    /**
+     * Returns the remaining entries as a stream that closes these results when it is closed.
+     * @return Stream of the remaining entries.
+     */
+    public Stream<ResultRow> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * @return Results without any entries.
+     */
+    static SearchResults empty() {
+        return new SearchResults() {
+            @Override
+            public boolean hasNext() {
+                return false;
+            }
+
+            @Override
+            public ResultRow next() {
+                throw new NoSuchElementException();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Entries read from the catalogue, in the order the engine sorts them. Unless the search is already in
+     * the result cache, the entries are fetched from the engine a fixed-size page at a time as they are
+     * read, each page continuing from a cursor after the one before, so reading a large result holds one
+     * page rather than every match. Each read holds the catalogue's read lock, so entries can be read on
+     * one thread while another edits the catalogue. Should the catalogue change while they are being read,
+     * what was fetched is out of date, so the rest is fetched again after the last entry read.
+     */
+    static class CatalogueResults extends SearchResults {
+        /**
+         * Entries fetched from the engine per page.
+         */
+        static final int PAGE_SIZE = 256;
+
+        private final QueryEngine engine;
+        private final CatalogueStore catalogue;
+        private final String[] headers;
+        private final int[] ids;
+        private final SearchQuery query;
+        private long version;
+        private int[] rows;
+        private SearchPage page;
+        private int position;
+        private SearchPage.Cursor last;
+        private boolean closed;
+
+        /**
+         * @param engine Engine that runs the search.
+         * @param rows Every matching row in order from the result cache, valid for the catalogue's current
+         * version and not modified, or null to fetch the entries in pages.
+         * @param ids Ids matching the name, or null for every entry.
+         * @param query Search to read.
+         */
+        CatalogueResults(QueryEngine engine, int[] rows, int[] ids, SearchQuery query) {
+            this.engine = engine;
+            catalogue = engine.getCatalogue();
+            headers = catalogue.getHeaders();
+            version = catalogue.getVersion();
+            this.rows = rows;
+            this.ids = ids;
+            this.query = query;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            catalogue.readLock().lock();
+            try {
+                if (catalogue.getVersion() != version) {
+                    rows = null;
+                    page = nextPage(last);
+                } else if (rows != null) {
+                    return position < rows.length;
+                } else if (page == null) {
+                    page = nextPage(null);
+                }
+                while (position == page.getIds().size()) {
+                    if (!page.hasNext()) {
+                        return false;
+                    }
+                    page = nextPage(page.getNext());
+                }
+                return true;
+            } finally {
+                catalogue.readLock().unlock();
+            }
+        }
+
+        @Override
+        public ResultRow next() {
+            catalogue.readLock().lock();
+            try {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int i = position++;
+                if (rows != null) {
+                    last = engine.cursorAt(query.getSortCategory(), rows[i]);
+                    return new ResultRow(headers, catalogue.idAt(rows[i]), catalogue.getRow(rows[i]));
+                }
+                // The page was fetched at the current version, so the entry is still at this row
+                last = engine.cursorAt(query.getSortCategory(), catalogue.rowOf(page.getIds().get(i)));
+                return new ResultRow(headers, page.getIds().get(i), page.getRows().get(i));
+            } finally {
+                catalogue.readLock().unlock();
+            }
+        }
+
+        /**
+         * Fetches the page after a cursor at the catalogue's current version, to be read from the start.
+         */
+        private SearchPage nextPage(SearchPage.Cursor after) {
+            version = catalogue.getVersion();
+            position = 0;
+            return engine.page(ids, query.getFilters(), query.getRanges(), query.getSortCategory(),
+                    query.isAscending(), after, 0, PAGE_SIZE);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Entries read from an open database cursor. The statement goes back to the database's cache when
+     * the results are closed or read to the end.
+     */
+    static class DatabaseResults extends SearchResults {
+        private final SearchDatabase db;
+        private final String sql;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final String[] headers;
+        private boolean ready;
+        private boolean closed;
+
+        /**
+         * @param db Database the statement came from.
+         * @param sql SQL of the statement.
+         * @param statement Statement from SearchDatabase.acquire, with its parameters bound.
+         * @throws SQLException If the query fails.
+         */
+        DatabaseResults(SearchDatabase db, String sql, PreparedStatement statement) throws SQLException {
+            this.db = db;
+            this.sql = sql;
+            this.statement = statement;
+            headers = db.getCatalogue().getHeaders();
+            try {
+                resultSet = statement.executeQuery();
+            } catch (SQLException e) {
+                db.release(sql, statement);
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            if (!ready) {
+                try {
+                    ready = resultSet.next();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+                if (!ready) {
+                    close();
+                }
+            }
+            return ready;
+        }
+
+        @Override
+        public ResultRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            try {
+                List<String> values = new ArrayList<>();
+                for (int i = 2; i <= headers.length; i++) {
+                    values.add(Objects.toString(resultSet.getString(i), ""));
+                }
+                return new ResultRow(headers, resultSet.getInt(1), values);
+            } catch (SQLException e) {
+                close();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                resultSet.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            db.release(sql, statement);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Advanced search over one in-memory catalogue, safe to call from any number of threads at once. The
+ * service owns the catalogue's indexes, the engine and the result cache, but keeps nothing about any one
+ * search: each call is given the whole search as a SearchQuery. Searches hold the catalogue's read lock
+ * while they run, so they proceed side by side and only wait for an entry being added, edited or removed.
+ */
+public class SearchService implements AutoCloseable {
+    private final CatalogueStore catalogue;
+    private final FuzzyNameIndex nameIndex;
+    private final BitmapIndex bitmapIndex;
+    private final RangeIndex rangeIndex;
+    private final QueryEngine engine;
+    private final ResultCache<QueryEngine.Matches> cache = new ResultCache<>();
+
+    /**
+     * Builds the indexes over the current entries and starts following the catalogue.
+     * @param catalogue Catalogue to search.
+     */
+    public SearchService(CatalogueStore catalogue) {
+        this.catalogue = catalogue;
+        // Held so no change slips in between building an index and it starting to follow the catalogue
+        catalogue.readLock().lock();
+        try {
+            nameIndex = new FuzzyNameIndex(catalogue);
+            bitmapIndex = new BitmapIndex(catalogue);
+            rangeIndex = new RangeIndex(catalogue);
+        } finally {
+            catalogue.readLock().unlock();
+        }
+        engine = new QueryEngine(catalogue, bitmapIndex, rangeIndex);
+    }
+
+    /**
+     * @return Catalogue this service searches.
+     */
+    public CatalogueStore getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Reports how well the result cache is doing, for sizing it with -Dsearch.cacheSize.
+     * @return Hit rate, lookups, results held and invalidations.
+     */
+    public String getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Runs the search for one page of results. Every match is sorted once and cached, with the total and
+     * the facet counts, until the catalogue changes, so the pages after it and the same search run again
+     * are cut from the cached rows, whether they continue from a cursor or an offset.
+     * @param query Search to run.
+     * @param after Cursor from the previous page, or null to start at the beginning.
+     * @param offset Number of results to skip, after the cursor if there is one.
+     * @param limit Most results on the page.
+     * @return Page of results with the total number of matches.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     */
+    public SearchPage page(SearchQuery query, SearchPage.Cursor after, int offset, int limit) {
+        catalogue.readLock().lock();
+        try {
+            return engine.slice(matches(query), query.getSortCategory(), query.isAscending(), after, offset,
+                    limit);
+        } finally {
+            catalogue.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the search and returns its results to be read one at a time. If the search has been paged since
+     * the catalogue last changed, its cached rows are read; otherwise the results are fetched a page at a
+     * time as they are read, without sorting every match first.
+     * @param query Search to run.
+     * @return Results of the search.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     */
+    public SearchResults query(SearchQuery query) {
+        catalogue.readLock().lock();
+        try {
+            QueryEngine.Matches cached = cache.get(catalogue, key(query));
+            int[] ids = null;
+            if (cached == null) {
+                ids = nameMatches(query.getQuery());
+                if (ids != null && ids.length == 0) {
+                    return SearchResults.empty();
+                }
+            } else if (!query.getQuery().isBlank()) {
+                // Only needed if the catalogue changes while the results are read
+                ids = new int[cached.rows.length];
+                for (int i = 0; i < cached.rows.length; i++) {
+                    ids[i] = catalogue.idAt(cached.rows[i]);
+                }
+            }
+            return new SearchResults.CatalogueResults(engine, cached == null ? null : cached.rows, ids, query);
+        } finally {
+            catalogue.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns every match of the search from the cache, running the search if it is not there. Called
+     * with the read lock held, so the matches stay valid for the caller.
+     */
+    private QueryEngine.Matches matches(SearchQuery query) {
+        List<Object> key = key(query);
+        QueryEngine.Matches matches = cache.get(catalogue, key);
+        if (matches == null) {
+            int[] ids = nameMatches(query.getQuery());
+            matches = ids != null && ids.length == 0 ? new QueryEngine.Matches(ids, Map.of())
+                    : engine.matches(ids, query.getFilters(), query.getRanges(), query.getSortCategory(),
+                    query.isAscending());
+            cache.put(catalogue, key, matches);
+        }
+        return matches;
+    }
+
+    private static List<Object> key(SearchQuery query) {
+        return ResultCache.key(query.getQuery(), query.getFilters(), query.getRanges(), query.getSortCategory(),
+                query.isAscending());
+    }
+
+    /**
+     * Describes how the search would run without running it: where its candidate rows would come from,
+     * the order of the checks on them, and the number of entries expected at each step.
+     * @param query Search to describe.
+     * @return Plan of the search, one step per line.
+     * @throws IllegalArgumentException If a header is not in the catalogue or a bound is not an integer.
+     */
+    public String explain(SearchQuery query) {
+        catalogue.readLock().lock();
+        try {
+            int[] ids = nameMatches(query.getQuery());
+            if (ids != null && ids.length == 0) {
+                return String.format("No name matches \"%s\", so no entries are searched%n", query.getQuery());
+            }
+            return engine.plan(ids, query.getFilters(), query.getRanges()).explain()
+                    + String.format("Sort by %s %s%n", query.getSortCategory(),
+                    query.isAscending() ? "ascending" : "descending");
+        } finally {
+            catalogue.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds names matching the search entry through the fuzzy name index. Leniency depends on length of
+     * query (see FuzzyNameIndex.maxEdits).
+     * @param query Given search entry.
+     * @return Ids of matching entries, or null if the entry is blank and every entry matches.
+     */
+    int[] nameMatches(String query) {
+        if (query.isBlank()) {
+            return null;
+        }
+        catalogue.readLock().lock();
+        try {
+            return nameIndex.search(query);
+        } finally {
+            catalogue.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stops following the catalogue. Searches already running finish normally.
+     */
+    @Override
+    public void close() {
+        nameIndex.close();
+        bitmapIndex.close();
+        rangeIndex.close();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file contains tests for the CatalogueChangeLog class.
+ * It tests appending records, replaying them, and compacting the log into the CSV, including fields that
+ * span lines, quoted ids, bare quotes inside unquoted values, and a record torn by a crash.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueChangeLogTest {
+    private File csvFile;
+    private CatalogueChangeLog log;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csvFile = File.createTempFile("ChangeLog", ".csv");
+        Files.writeString(csvFile.toPath(), "id,Name,Price\n0,Chair,10\n1,Table,20\n2,Sofa,30\n");
+        log = new CatalogueChangeLog(csvFile);
+    }
+
+    @AfterEach
+    void tearDown() {
+        csvFile.delete();
+        log.getLogFile().delete();
+    }
+
+    @Test
+    void testReadRecords() throws IOException {
+        log.appendAdd("3,Stool,40");
+        log.appendEdit("1", "1,Desk,25");
+        log.appendDelete("0");
+        List<CatalogueChangeLog.Record> records = log.readRecords();
+        assertEquals(3, records.size());
+        assertEquals(CatalogueChangeLog.ADD, records.get(0).op);
+        assertEquals("3", records.get(0).id);
+        assertEquals(CatalogueChangeLog.EDIT, records.get(1).op);
+        assertEquals("1,Desk,25", records.get(1).line);
+        assertEquals(CatalogueChangeLog.DELETE, records.get(2).op);
+        assertEquals("0", records.get(2).id);
+    }
+
+    @Test
+    void testApplyKeepsOrder() throws IOException {
+        log.appendEdit("1", "1,Desk,25");
+        log.appendEdit("9", "9,Missing,0");
+        LinkedHashMap<String, String> lines = new LinkedHashMap<>();
+        lines.put("0", "0,Chair,10");
+        lines.put("1", "1,Table,20");
+        lines.put("2", "2,Sofa,30");
+        CatalogueChangeLog.apply(log.readRecords(), lines);
+        assertEquals(List.of("0,Chair,10", "1,Desk,25", "2,Sofa,30"), List.copyOf(lines.values()),
+                "Edits should replace lines in place and ignore unknown ids.");
+    }
+
+    @Test
+    void testCompact() throws IOException {
+        log.appendAdd("3,Stool,40");
+        log.appendEdit("1", "1,Desk,25");
+        log.appendDelete("0");
+        log.compact();
+        assertFalse(log.getLogFile().exists(), "Log should be removed after compaction.");
+        assertEquals(List.of("id,Name,Price", "1,Desk,25", "2,Sofa,30", "3,Stool,40"),
+                Files.readAllLines(csvFile.toPath()));
+    }
+
+    @Test
+    void testCompactThreshold() throws IOException {
+        log.setCompactThreshold(1);
+        log.appendAdd("3,Stool,40");
+        assertFalse(log.getLogFile().exists(), "Log past the threshold should be compacted.");
+        assertTrue(Files.readAllLines(csvFile.toPath()).contains("3,Stool,40"));
+    }
+
+    @Test
+    void testMultiLineFields() throws IOException {
+        String stool = CatalogueCsvReader.formatLine(3, List.of("Stool\nthree legs", "40"));
+        String desk = CatalogueCsvReader.formatLine(1, List.of("Desk, \"oak\"\r\nwide", "25"));
+        log.appendAdd(stool);
+        log.appendEdit("1", desk);
+        log.appendDelete("2");
+        List<CatalogueChangeLog.Record> records = log.readRecords();
+        assertEquals(3, records.size());
+        assertEquals("3", records.get(0).id);
+        assertEquals(stool, records.get(0).line);
+        assertEquals("1", records.get(1).id);
+        assertEquals(desk, records.get(1).line);
+        assertEquals("2", records.get(2).id);
+
+        log.compact();
+        String csv = Files.readString(csvFile.toPath());
+        assertEquals(List.of("id,Name,Price", "0,Chair,10", desk, stool), CatalogueCsvReader.splitRecords(csv));
+        // Compacting again must find the same records rather than a line per record piece
+        log.appendDelete("3");
+        log.compact();
+        assertEquals(List.of("id,Name,Price", "0,Chair,10", desk),
+                CatalogueCsvReader.splitRecords(Files.readString(csvFile.toPath())));
+    }
+
+    @Test
+    void testQuotedId() throws IOException {
+        Files.writeString(csvFile.toPath(), "id,Name,Price\n\"0\",Chair,10\n1,Table,20\n");
+        log.appendEdit("0", "0,Bench,15");
+        log.compact();
+        assertEquals(List.of("id,Name,Price", "0,Bench,15", "1,Table,20"), Files.readAllLines(csvFile.toPath()));
+    }
+
+    @Test
+    void testBareQuoteInValue() throws IOException {
+        Files.writeString(csvFile.toPath(), "id,Name,Price\n0,12\" shelf,10\n1,Table,20\n2,Sofa,30\n");
+        log.appendAdd("3,6\" stool,40");
+        log.appendEdit("1", "1,Desk,25");
+        log.appendDelete("2");
+        List<CatalogueChangeLog.Record> records = log.readRecords();
+        assertEquals(3, records.size(), "A quote inside a value should not join the records after it.");
+        assertEquals("3,6\" stool,40", records.get(0).line);
+        assertEquals("1,Desk,25", records.get(1).line);
+        assertEquals("2", records.get(2).id);
+        log.compact();
+        assertEquals(List.of("id,Name,Price", "0,12\" shelf,10", "1,Desk,25", "3,6\" stool,40"),
+                Files.readAllLines(csvFile.toPath()));
+    }
+
+    @Test
+    void testTornRecordIsTrimmed() throws IOException {
+        log.appendAdd("3,Stool,40");
+        // A crash part way through a record with an open quote
+        Files.writeString(log.getLogFile().toPath(), "A,4,\"Half", StandardOpenOption.APPEND);
+        CatalogueChangeLog reopened = new CatalogueChangeLog(csvFile);
+        reopened.appendDelete("0");
+        List<CatalogueChangeLog.Record> records = reopened.readRecords();
+        assertEquals(2, records.size());
+        assertEquals("3", records.get(0).id);
+        assertEquals(CatalogueChangeLog.DELETE, records.get(1).op);
+        assertEquals("0", records.get(1).id);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file contains tests for the CatalogueCsvReader class.
+ * It tests quoting, including bare quotes inside unquoted values, line endings, column widths and reading
+ * through small windows.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueCsvReaderTest {
+    private File csvFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csvFile = File.createTempFile("Reader", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() {
+        csvFile.delete();
+    }
+
+    @Test
+    void testQuotedFields() throws IOException {
+        Files.writeString(csvFile.toPath(),
+                "id,Name,Company\n0,\"Chair, Large\",Leon's\n1,\"The \"\"Best\"\" Sofa\",\"Line\nBreak\"\n");
+        HashMap<Integer, ArrayList<String>> catalogue = new HashMap<>();
+        int rows = new CatalogueCsvReader().read(csvFile, catalogue, new int[10]);
+        assertEquals(2, rows);
+        assertEquals(List.of("Chair, Large", "Leon's"), catalogue.get(0));
+        assertEquals(List.of("The \"Best\" Sofa", "Line\nBreak"), catalogue.get(1));
+    }
+
+    @Test
+    void testBareQuoteInValue() throws IOException {
+        Files.writeString(csvFile.toPath(),
+                "id,Name,Company\n0,12\" shelf,Leon's\n1,\"Chair, Large\",Brick\n2,Sofa 6'6\",\"x\"\n");
+        HashMap<Integer, ArrayList<String>> catalogue = new HashMap<>();
+        int rows = new CatalogueCsvReader().read(csvFile, catalogue, new int[10]);
+        assertEquals(3, rows, "A quote inside a value should not join the rows after it.");
+        assertEquals(List.of("12\" shelf", "Leon's"), catalogue.get(0));
+        assertEquals(List.of("Chair, Large", "Brick"), catalogue.get(1));
+        assertEquals(List.of("Sofa 6'6\"", "x"), catalogue.get(2));
+        assertEquals(List.of("0", "12\" shelf", "Leon's"), CatalogueCsvReader.parseLine("0,12\" shelf,Leon's"));
+        assertEquals(List.of("0,12\" shelf,Leon's", "1,x"),
+                CatalogueCsvReader.splitRecords("0,12\" shelf,Leon's\n1,x\n"));
+    }
+
+    @Test
+    void testHeadersAndMaxLengths() throws IOException {
+        Files.writeString(csvFile.toPath(), "id,Name,Price\r\n0,Chair,10\r\n1,Wide Table,2000\r\n\r\n");
+        HashMap<Integer, ArrayList<String>> catalogue = new HashMap<>();
+        int[] maxLengths = new int[10];
+        CatalogueCsvReader reader = new CatalogueCsvReader();
+        reader.read(csvFile, catalogue, maxLengths);
+        assertArrayEquals(new String[]{"id", "Name", "Price"}, reader.getHeaders());
+        assertEquals(List.of("Wide Table", "2000"), catalogue.get(1));
+        assertEquals(10, maxLengths[0]);
+        assertEquals(4, maxLengths[1]);
+    }
+
+    @Test
+    void testSmallWindow() throws IOException {
+        StringBuilder sb = new StringBuilder("id,Name,Price\n");
+        for (int i = 0; i < 500; i++) {
+            sb.append(i).append(",Item ").append(i).append(',').append(i * 3).append('\n');
+        }
+        sb.append("500,Last,1"); // No trailing line break
+        Files.writeString(csvFile.toPath(), sb.toString());
+        HashMap<Integer, ArrayList<String>> catalogue = new HashMap<>();
+        int rows = new CatalogueCsvReader().read(csvFile, 64, catalogue, new int[10]);
+        assertEquals(501, rows);
+        assertEquals(List.of("Item 250", "750"), catalogue.get(250));
+        assertEquals(List.of("Last", "1"), catalogue.get(500));
+    }
+
+    @Test
+    void testParallelMatchesSequential() throws IOException {
+        StringBuilder sb = new StringBuilder("id,Name,Price\n");
+        for (int i = 0; i < 5000; i++) {
+            sb.append(i).append(",\"Item, ").append(i).append("\",").append(i * 7).append('\n');
+        }
+        sb.append("2,Duplicate,1\n");
+        Files.writeString(csvFile.toPath(), sb.toString());
+        HashMap<Integer, ArrayList<String>> sequential = new HashMap<>();
+        int[] sequentialLengths = new int[10];
+        new CatalogueCsvReader().read(csvFile, sequential, sequentialLengths);
+        HashMap<Integer, ArrayList<String>> parallel = new HashMap<>();
+        int[] parallelLengths = new int[10];
+        CatalogueCsvReader reader = new CatalogueCsvReader();
+        CatalogueCsvReader.LoadStats stats = reader.readParallel(csvFile, new ForkJoinPool(4), 1024,
+                parallel, parallelLengths);
+        assertEquals(5001, stats.rows);
+        assertArrayEquals(new String[]{"id", "Name", "Price"}, reader.getHeaders());
+        assertEquals(sequential, parallel);
+        assertArrayEquals(sequentialLengths, parallelLengths);
+        assertEquals(List.of("Duplicate", "1"), parallel.get(2), "Later rows should win, as when read in order.");
+    }
+
+    @Test
+    void testParallelFallsBackOnQuotedLineBreaks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append(i).append(",\"Item ").append(i).append("\nsecond line, with comma\",").append(i * 7).append('\n');
+        }
+        String rows = sb.toString();
+        Files.writeString(csvFile.toPath(), "id,Name,Price\n" + rows);
+        HashMap<Integer, ArrayList<String>> sequential = new HashMap<>();
+        int[] sequentialLengths = new int[10];
+        new CatalogueCsvReader().read(csvFile, sequential, sequentialLengths);
+        HashMap<Integer, ArrayList<String>> parallel = new HashMap<>();
+        int[] parallelLengths = new int[10];
+        CatalogueCsvReader.LoadStats stats = new CatalogueCsvReader().readParallel(csvFile, new ForkJoinPool(4),
+                1024, parallel, parallelLengths);
+        assertEquals(2000, stats.rows);
+        assertEquals(1, stats.threads, "Rows split inside quotes should be read again in order.");
+        assertEquals(sequential, parallel);
+        assertArrayEquals(sequentialLengths, parallelLengths);
+        assertEquals(List.of("Item 7\nsecond line, with comma", "49"), parallel.get(7));
+
+        String flat = rows.replace("\nsecond", " second");
+        Files.writeString(csvFile.toPath(), "id,\"Name\nof item\",Price\n" + flat);
+        parallel.clear();
+        CatalogueCsvReader reader = new CatalogueCsvReader();
+        stats = reader.readParallel(csvFile, new ForkJoinPool(4), 1024, parallel, new int[10]);
+        assertEquals(1, stats.threads, "A header spanning lines should be read in order.");
+        assertArrayEquals(new String[]{"id", "Name\nof item", "Price"}, reader.getHeaders());
+        assertEquals(List.of("Item 7 second line, with comma", "49"), parallel.get(7));
+
+        Files.writeString(csvFile.toPath(), "id,Name,Price\n" + flat);
+        parallel.clear();
+        stats = new CatalogueCsvReader().readParallel(csvFile, new ForkJoinPool(4), 1024, parallel, new int[10]);
+        assertEquals(2000, stats.rows);
+        assertEquals(4, stats.threads, "Without line breaks in quotes the read should stay parallel.");
+        assertEquals(List.of("Item 7 second line, with comma", "49"), parallel.get(7));
+    }
+
+    @Test
+    void testParseAndFormatLine() {
+        List<String> row = List.of("Chair, \"Deluxe\"", "10");
+        String line = CatalogueCsvReader.formatLine(7, row);
+        assertEquals("7,\"Chair, \"\"Deluxe\"\"\",10", line);
+        assertEquals(List.of("7", "Chair, \"Deluxe\"", "10"), CatalogueCsvReader.parseLine(line));
+    }
+}
@@ -49,6 +49,7 @@ public class CatalogueFileIOTest {
         if (tempCsvFile.exists()) {
             tempCsvFile.delete();
         }
+        new File(tempCsvFile.getPath() + ".log").delete();
     }
 
     @Test
@@ -91,7 +92,18 @@ public class CatalogueFileIOTest {
         assertNull(foundLine, "The line should have been deleted and not exist in the CSV file.");
     }
 
+    @Test
+    void testEditsGoToChangeLog() throws IOException {
+        long csvLength = tempCsvFile.length();
+        fileIO.addCSVLine("500,Blue Cotton Sofa,319,Sofa,Blue,Cotton,Small,41,Leon's,Gothic,205");
+        fileIO.deleteCSVLine("500");
+        fileIO.awaitDurable();
+        assertEquals(csvLength, tempCsvFile.length(), "The CSV should not be rewritten for single-row changes.");
+        assertTrue(new File(tempCsvFile.getPath() + ".log").exists(), "Changes should be appended to the log.");
+    }
+
     private String searchCSV(String searchId) throws IOException {
+        fileIO.compactChangeLog();
         BufferedReader reader = new BufferedReader(new FileReader(tempCsvFile));
         String line;
         while ((line = reader.readLine()) != null) {
@@ -0,0 +1,28 @@
+/*
+ * This file contains the fixtures shared by the catalogue and search tests.
+ * It holds the headers of the sample catalogue and builds the rows put into a test catalogue, so each
+ * test only sets up the entries it checks.
+ */
+package furnitureCatalogue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public final class CatalogueFixtures {
+    /**
+     * Headers of Sample.csv, for tests that build a catalogue with every field.
+     */
+    public static final String[] HEADERS = {"id", "Name", "Price", "Furniture Type", "Colour", "Materials",
+            "Size", "Quantity", "Company", "Style", "Weight"};
+
+    private CatalogueFixtures() {
+    }
+
+    /**
+     * Returns a modifiable row of the given fields, in header order after the id. Later fields may be
+     * left out.
+     */
+    public static ArrayList<String> row(String... values) {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+}
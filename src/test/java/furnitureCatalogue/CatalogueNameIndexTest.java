@@ -0,0 +1,97 @@
+/*
+ * This file contains tests for the CatalogueNameIndex class.
+ * It tests finding entries by exact name and by name in any case, listing them in catalogue order, and
+ * keeping the index in step with the store as entries are added, renamed and removed.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueNameIndexTest {
+    private static final String[] HEADERS = {"id", "Name", "Price"};
+    private CatalogueStore store;
+    private CatalogueNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        store.put(10, row("Oak Table", "250"));
+        store.put(11, row("Oak Chair", "90"));
+        store.put(12, row("oak table", "260"));
+        store.put(13, row("Oak Table", "270"));
+        index = new CatalogueNameIndex(store, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.removeListener(index);
+    }
+
+    @Test
+    void testFind() {
+        assertEquals(List.of(10, 13), index.find("Oak Table"));
+        assertEquals(List.of(12), index.find("oak table"));
+        assertEquals(List.of(), index.find("Oak"));
+        assertEquals(List.of(10, 12, 13), index.findIgnoreCase("OAK TABLE"));
+        assertEquals(List.of(11), index.findIgnoreCase("oak chair"));
+    }
+
+    @Test
+    void testExactOnly() {
+        CatalogueNameIndex exact = new CatalogueNameIndex(store, false);
+        try {
+            assertEquals(List.of(10, 13), exact.find("Oak Table"));
+            assertThrows(IllegalStateException.class, () -> exact.findIgnoreCase("oak table"));
+        } finally {
+            store.removeListener(exact);
+        }
+    }
+
+    @Test
+    void testFollowsStore() {
+        store.put(14, row("Oak Table", "280"));
+        assertEquals(List.of(10, 13, 14), index.find("Oak Table"));
+        store.put(10, row("Pine Table", "250"));
+        assertEquals(List.of(13, 14), index.find("Oak Table"));
+        assertEquals(List.of(10), index.find("Pine Table"));
+        // Removing 11 moves the last row, 14, into its place
+        store.remove(11);
+        assertEquals(List.of(14, 13), index.find("Oak Table"));
+        assertEquals(List.of(), index.findIgnoreCase("Oak Chair"));
+        store.clear();
+        assertEquals(List.of(), index.findIgnoreCase("oak table"));
+        store.put(20, row("Oak Table", "1"));
+        assertEquals(List.of(20), index.find("Oak Table"));
+    }
+
+    @Test
+    void testMatchesScan() {
+        Random random = new Random(5);
+        String[] names = {"Oak Table", "oak table", "Red Stool", "RED STOOL", "Desk"};
+        for (int i = 0; i < 3000; i++) {
+            int id = random.nextInt(400);
+            if (random.nextInt(4) == 0) {
+                store.remove(id);
+            } else {
+                store.put(id, row(names[random.nextInt(names.length)], "1"));
+            }
+        }
+        for (String name : names) {
+            List<Integer> exact = new ArrayList<>();
+            List<Integer> anyCase = new ArrayList<>();
+            for (Map.Entry<Integer, ArrayList<String>> entry : store.entrySet()) {
+                if (entry.getValue().get(0).equals(name)) {
+                    exact.add(entry.getKey());
+                }
+                if (entry.getValue().get(0).equalsIgnoreCase(name)) {
+                    anyCase.add(entry.getKey());
+                }
+            }
+            assertEquals(exact, index.find(name), name);
+            assertEquals(anyCase, index.findIgnoreCase(name), name);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file contains tests for the CatalogueNameTrie class.
+ * It tests completions by prefix regardless of case, ranking by total Quantity, the limit, and keeping
+ * the trie in step with the store as names are added, renamed and removed.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueNameTrieTest {
+    private static final String[] HEADERS = {"id", "Name", "Price", "Quantity"};
+    private CatalogueStore store;
+    private CatalogueNameTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        store.put(0, row("Oak Table", "250", "10"));
+        store.put(1, row("Oak Chair", "90", "40"));
+        store.put(2, row("Oak Table", "260", "35"));
+        store.put(3, row("Oakley Sofa", "500", "5"));
+        store.put(4, row("Office Desk", "300", "20"));
+        store.put(5, row("Red Stool", "30", "100"));
+        trie = new CatalogueNameTrie(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.removeListener(trie);
+    }
+
+    @Test
+    void testComplete() {
+        // Oak Table has 45 in stock across two entries, Oak Chair 40
+        assertEquals(List.of("Oak Table", "Oak Chair", "Oakley Sofa"), trie.complete("oak", 10));
+        assertEquals(List.of("Oak Table", "Oak Chair", "Office Desk", "Oakley Sofa"), trie.complete("O", 10));
+        assertEquals(List.of("Oak Table", "Oak Chair"), trie.complete("OAK", 2));
+        assertEquals(List.of("Oakley Sofa"), trie.complete("oakl", 10));
+        assertEquals(List.of("Oak Table"), trie.complete("oak table", 10));
+        assertEquals(List.of(), trie.complete("oak tables", 10));
+        assertEquals(List.of(), trie.complete("pine", 10));
+        assertEquals(5, trie.complete("", 10).size());
+        assertEquals("Red Stool", trie.complete("", 1).get(0));
+    }
+
+    @Test
+    void testTiesAndSpellings() {
+        store.put(6, row("oak bench", "80", "40"));
+        store.put(7, row("OAK CHAIR", "95", "1"));
+        // Equal stock is broken alphabetically, and each spelling is its own completion
+        assertEquals(List.of("Oak Table", "oak bench", "Oak Chair", "Oakley Sofa", "OAK CHAIR"), trie.complete("oak", 10));
+    }
+
+    @Test
+    void testFollowsStore() {
+        store.put(8, row("Oak Wardrobe", "700", "300"));
+        assertEquals("Oak Wardrobe", trie.complete("oak", 1).get(0));
+        store.put(8, row("Pine Wardrobe", "700", "300"));
+        assertEquals(List.of("Oak Table", "Oak Chair", "Oakley Sofa"), trie.complete("oak", 10));
+        assertEquals(List.of("Pine Wardrobe"), trie.complete("p", 10));
+        store.remove(2);
+        // One Oak Table is left, with 10 in stock
+        assertEquals(List.of("Oak Chair", "Oak Table", "Oakley Sofa"), trie.complete("oak", 10));
+        store.remove(0);
+        store.remove(1);
+        assertEquals(List.of("Oakley Sofa"), trie.complete("oak", 10));
+        store.remove(3);
+        assertEquals(List.of("Office Desk"), trie.complete("o", 10));
+        store.clear();
+        assertEquals(List.of(), trie.complete("", 10));
+        store.put(9, row("Oak Table", "250", "1"));
+        assertEquals(List.of("Oak Table"), trie.complete("oa", 10));
+    }
+
+    @Test
+    void testMatchesScan() {
+        Random random = new Random(3);
+        String[] words = {"oak", "oaken", "office", "red", "reddish", "table", "tab", "chair"};
+        for (int i = 0; i < 3000; i++) {
+            int id = 100 + random.nextInt(500);
+            if (random.nextInt(5) == 0) {
+                store.remove(id);
+            } else {
+                String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                store.put(id, row(name, "1", String.valueOf(random.nextInt(50))));
+            }
+        }
+        for (String prefix : List.of("", "o", "oak", "oake", "red", "reddish t", "tab", "x")) {
+            // Total stock per name starting with the prefix, by scanning every row
+            Map<String, Long> stock = new HashMap<>();
+            for (int row = 0; row < store.rowCount(); row++) {
+                String name = store.getValue(row, 0);
+                if (name.toLowerCase().startsWith(prefix)) {
+                    stock.merge(name, (long) store.getInt(row, 2), Long::sum);
+                }
+            }
+            List<String> expected = new ArrayList<>(stock.keySet());
+            expected.sort((a, b) -> !stock.get(a).equals(stock.get(b)) ? Long.compare(stock.get(b), stock.get(a))
+                    : a.toLowerCase().compareTo(b.toLowerCase()));
+            assertEquals(expected.subList(0, Math.min(5, expected.size())), trie.complete(prefix, 5), prefix);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * This file contains tests for the CatalogueSampler class.
+ * It tests that picks follow the weights and that the weights follow adds, edits and removes.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueSamplerTest {
+    private static final String[] HEADERS = {"id", "Name", "Quantity"};
+    private CatalogueStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+    }
+
+    private Map<Integer, Integer> countPicks(CatalogueSampler sampler, int picks) {
+        Random rand = new Random(7);
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int i = 0; i < picks; i++) {
+            counts.merge(store.idAt(sampler.pickRow(rand)), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    void testPicksFollowWeights() {
+        store.put(10, row("Chair", "1"));
+        store.put(20, row("Table", "3"));
+        store.put(30, row("Sofa", "0"));
+        store.put(40, row("Stool", "12.5"));
+        store.put(50, row("Bench", "-4"));
+        CatalogueSampler sampler = new CatalogueSampler(store, store.fieldOf("Quantity"));
+        assertEquals(4, sampler.totalWeight());
+        Map<Integer, Integer> counts = countPicks(sampler, 20000);
+        assertEquals(Set.of(10, 20), counts.keySet(), "Entries without a positive weight should never be picked.");
+        assertEquals(0.75, counts.get(20) / 20000.0, 0.02);
+    }
+
+    @Test
+    void testWeightsFollowChanges() {
+        store.put(10, row("Chair", "5"));
+        store.put(20, row("Table", "5"));
+        store.put(30, row("Sofa", "5"));
+        CatalogueSampler sampler = new CatalogueSampler(store, store.fieldOf("Quantity"));
+        store.remove(10); // Sofa moves into row 0
+        store.put(20, row("Table", "0"));
+        store.put(40, row("Stool", "15"));
+        assertEquals(20, sampler.totalWeight());
+        Map<Integer, Integer> counts = countPicks(sampler, 20000);
+        assertEquals(Set.of(30, 40), counts.keySet());
+        assertEquals(0.25, counts.get(30) / 20000.0, 0.02);
+        store.clear();
+        assertEquals(-1, sampler.pickRow(new Random()));
+    }
+
+    @Test
+    void testTotalsStayConsistent() {
+        CatalogueSampler sampler = new CatalogueSampler(store, store.fieldOf("Quantity"));
+        Random rand = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            int id = rand.nextInt(300);
+            if (rand.nextInt(4) == 0) {
+                store.remove(id);
+            } else {
+                store.put(id, row("Item " + id, String.valueOf(rand.nextInt(100))));
+            }
+        }
+        long expected = 0;
+        for (int row = 0; row < store.rowCount(); row++) {
+            expected += store.getInt(row, 1);
+        }
+        assertEquals(expected, sampler.totalWeight());
+        for (int i = 0; i < 1000; i++) {
+            int row = sampler.pickRow(rand);
+            assertTrue(row >= 0 && row < store.rowCount() && store.getInt(row, 1) > 0);
+        }
+    }
+
+    @Test
+    void testRejectsTextField() {
+        assertThrows(IllegalArgumentException.class, () -> new CatalogueSampler(store, store.fieldOf("Name")));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file contains tests for the CatalogueSearchIndex class.
+ * It tests tokenizing, BM25 ranking, top-K limits, and keeping the index in step with the store.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.HEADERS;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueSearchIndexTest {
+    private CatalogueStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        store.put(0, row("Yellow Wood Chair", "490", "Chair", "Yellow", "Wood", "Small", "127", "Furnberry", "Gothic", "166"));
+        store.put(1, row("Blue Wood Stool", "360", "Stool", "Blue", "Wood", "Large", "142", "Leon's", "Gothic", "149"));
+        store.put(2, row("Purple Plastic Sofa", "162", "Sofa", "Purple", "Plastic", "Small", "72", "Leon's", "Traditional", "79"));
+        store.put(3, row("Red Oak Table", "250", "Table", "Red", "Oak", "Large", "10", "Oakley", "Modern", "80"));
+        store.put(4, row("Red Plastic Chair", "90", "Chair", "Red", "Plastic", "Small", "30", "Ikea", "Modern", "12"));
+    }
+
+    private List<Integer> ids(int[] rows) {
+        List<Integer> ids = new ArrayList<>();
+        for (int row : rows) {
+            ids.add(store.idAt(row));
+        }
+        return ids;
+    }
+
+    @Test
+    void testTokenize() {
+        assertEquals(List.of("leons", "blue", "wood", "2", "seat"), CatalogueSearchIndex.tokenize("Leon's BLUE-wood, 2 seat"));
+        assertEquals(List.of(), CatalogueSearchIndex.tokenize("  ,, "));
+    }
+
+    @Test
+    void testRanking() {
+        CatalogueSearchIndex index = new CatalogueSearchIndex(store);
+        List<Integer> redChair = ids(index.search("red chair", 2));
+        assertEquals(2, redChair.size());
+        assertEquals(4, redChair.get(0), "An entry matching both words should rank first.");
+        assertEquals(List.of(1, 2), ids(index.search("leon's", 10)), "Equal scores should be ordered by id.");
+        assertEquals(List.of(), ids(index.search("walnut", 10)));
+        assertEquals(List.of(), ids(index.search("red", 0)));
+        assertEquals(3, index.search("plastic wood", 3).length);
+    }
+
+    @Test
+    void testUpdatesFollowStore() {
+        CatalogueSearchIndex index = new CatalogueSearchIndex(store);
+        store.remove(0); // Row 4 (Red Plastic Chair) moves into row 0
+        store.put(1, row("Blue Glass Table", "360", "Table", "Blue", "Glass", "Large", "142", "Leon's", "Gothic", "149"));
+        store.put(5, row("Walnut Desk", "700", "Desk", "Brown", "Walnut", "Large", "3", "Ikea", "Modern", "40"));
+        assertEquals(List.of(4), ids(index.search("chair", 10)));
+        assertEquals(List.of(), ids(index.search("stool", 10)));
+        assertEquals(List.of(5), ids(index.search("walnut", 10)));
+        assertEquals(List.of(1, 3), ids(index.search("table", 10)));
+        store.clear();
+        assertEquals(0, index.search("table", 10).length);
+        store.put(6, row("Oak Table"));
+        assertEquals(List.of(6), ids(index.search("table", 10)));
+    }
+
+    @Test
+    void testIncrementalMatchesRebuild() {
+        CatalogueSearchIndex index = new CatalogueSearchIndex(store);
+        String[] words = {"red", "blue", "oak", "pine", "chair", "table", "sofa", "stool"};
+        Random rand = new Random(11);
+        for (int i = 0; i < 3000; i++) {
+            int id = rand.nextInt(200);
+            if (rand.nextInt(3) == 0) {
+                store.remove(id);
+            } else {
+                store.put(id, row(words[rand.nextInt(4)] + " " + words[4 + rand.nextInt(4)], "10",
+                        words[4 + rand.nextInt(4)], words[rand.nextInt(2)]));
+            }
+        }
+        CatalogueSearchIndex rebuilt = new CatalogueSearchIndex(store);
+        for (String query : List.of("red chair", "oak", "pine table sofa", "blue stool")) {
+            assertEquals(ids(rebuilt.search(query, 25)), ids(index.search(query, 25)), query);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file contains tests for the CatalogueSnapshot class.
+ * It tests that a store survives a write and read unchanged, and that damaged or foreign files are rejected.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueSnapshotTest {
+    private static final String[] HEADERS = {"id", "Name", "Price", "Colour", "Quantity"};
+    private File file;
+    private CatalogueSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = File.createTempFile("Snapshot", ".snap");
+        snapshot = new CatalogueSnapshot(file);
+    }
+
+    @AfterEach
+    void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        CatalogueStore store = new CatalogueStore(HEADERS);
+        store.put(4, row("Chair", "10", "Red", "3"));
+        store.put(7, row("Table", "300.50", "Oak", ""));
+        store.put(9, row("Sofa, large", "20"));
+        store.put(11, row("Stool", "5", "Red", "1"));
+        store.remove(4); // Leaves garbage in the text column and moves row 11 into row 0
+        int[] maxLengths = {11, 6, 3, 1};
+        snapshot.write(store, maxLengths);
+
+        int[] readLengths = new int[4];
+        CatalogueStore read = snapshot.read(readLengths);
+        assertArrayEquals(maxLengths, readLengths);
+        assertArrayEquals(HEADERS, read.getHeaders());
+        assertEquals(new LinkedHashMap<>(store), new LinkedHashMap<>(read));
+        assertEquals(row("Sofa, large", "20"), read.get(9), "Short rows should keep their width.");
+        assertFalse(read.hasInt(read.rowOf(7), read.fieldOf("Price")), "Non-canonical numbers stay text.");
+        assertEquals(read.codeAt(read.rowOf(11), 2), read.codeAt(0, 2));
+
+        read.put(12, row("Bench", "15", "Red", "2"));
+        assertEquals(row("Bench", "15", "Red", "2"), read.get(12), "A read store should accept new rows.");
+    }
+
+    @Test
+    void testWideDictionaryRoundTrip() throws IOException {
+        CatalogueStore store = new CatalogueStore(HEADERS);
+        for (int id = 0; id < 300; id++) {
+            store.put(id, row("Item" + id, String.valueOf(id), "Colour" + id, "1"));
+        }
+        snapshot.write(store, new int[4]);
+        CatalogueStore read = snapshot.read(new int[4]);
+        assertEquals(new LinkedHashMap<>(store), new LinkedHashMap<>(read));
+        assertEquals(300, read.dictionarySize(read.fieldOf("Colour")));
+    }
+
+    @Test
+    void testCorruptSnapshotIsRejected() throws IOException {
+        CatalogueStore store = new CatalogueStore(HEADERS);
+        store.put(1, row("Chair", "10", "Red", "3"));
+        snapshot.write(store, new int[4]);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file.toPath(), bytes);
+        assertThrows(IOException.class, () -> snapshot.read(new int[4]));
+    }
+
+    @Test
+    void testOtherVersionIsRejected() throws IOException {
+        CatalogueStore store = new CatalogueStore(HEADERS);
+        snapshot.write(store, new int[4]);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putInt(4, CatalogueSnapshot.VERSION + 1);
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(bytes.array(), 0, bytes.capacity() - 8);
+        bytes.putLong(bytes.capacity() - 8, crc.getValue());
+        Files.write(file.toPath(), bytes.array());
+        IOException e = assertThrows(IOException.class, () -> snapshot.read(new int[4]));
+        assertTrue(e.getMessage().contains("version"));
+    }
+
+    @Test
+    void testIsNewerThan() throws IOException {
+        assertTrue(snapshot.isNewerThan(file.lastModified() - 1000));
+        assertFalse(snapshot.isNewerThan(file.lastModified()));
+        file.delete();
+        assertFalse(snapshot.isNewerThan(0));
+    }
+}
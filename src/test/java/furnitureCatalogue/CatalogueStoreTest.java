@@ -0,0 +1,166 @@
+/*
+ * This file contains tests for the CatalogueStore class.
+ * It tests the Map view, typed column access, removing rows, and the id the id index reserves.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.HEADERS;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueStoreTest {
+    private CatalogueStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        store.put(0, row("Yellow Wood Chair", "490", "Chair", "Yellow", "Wood", "Small", "127", "Furnberry", "Gothic", "166"));
+        store.put(1, row("Blue Wood Stool", "360", "Stool", "Blue", "Wood", "Large", "142", "Leon's", "Gothic", "149"));
+        store.put(2, row("Purple Plastic Sofa", "162", "Sofa", "Purple", "Plastic", "Small", "72", "Leon's", "Traditional", "79"));
+    }
+
+    @Test
+    void testMapView() {
+        assertEquals(3, store.size());
+        assertTrue(store.containsKey(1));
+        assertFalse(store.containsKey(5));
+        assertEquals(row("Blue Wood Stool", "360", "Stool", "Blue", "Wood", "Large", "142", "Leon's", "Gothic", "149"),
+                store.get(1));
+        Set<Integer> ids = new HashSet<>();
+        for (Map.Entry<Integer, ArrayList<String>> e : store.entrySet()) {
+            ids.add(e.getKey());
+            assertEquals(store.get(e.getKey()), e.getValue());
+        }
+        assertEquals(Set.of(0, 1, 2), ids);
+    }
+
+    @Test
+    void testTypedColumns() {
+        int price = store.fieldOf("Price");
+        int row = store.rowOf(2);
+        assertTrue(store.isNumeric(price));
+        assertFalse(store.isNumeric(store.fieldOf("Name")));
+        assertTrue(store.hasInt(row, price));
+        assertEquals(162, store.getInt(row, price));
+        assertEquals("Purple Plastic Sofa", store.getValue(row, 0));
+    }
+
+    @Test
+    void testDictionaryColumns() {
+        int colour = store.fieldOf("Colour");
+        int company = store.fieldOf("Company");
+        assertTrue(store.isDictionary(colour));
+        assertFalse(store.isDictionary(store.fieldOf("Name")));
+        assertEquals(2, store.dictionarySize(company), "Leon's should be stored once.");
+        assertEquals(store.codeAt(store.rowOf(1), company), store.codeAt(store.rowOf(2), company));
+        boolean[] blue = store.codesMatching(colour, "BLUE");
+        assertTrue(blue[store.codeAt(store.rowOf(1), colour)]);
+        assertFalse(blue[store.codeAt(store.rowOf(0), colour)]);
+    }
+
+    @Test
+    void testDictionaryWidening() {
+        int company = store.fieldOf("Company");
+        for (int i = 10; i < 70010; i++) {
+            store.put(i, row("Item", "1", "Chair", "Red", "Wood", "Small", "1", "Company " + i));
+        }
+        assertEquals("Company 300", store.get(300).get(company), "Codes should survive widening past a byte.");
+        assertEquals("Company 70009", store.get(70009).get(company), "Codes should survive widening past a short.");
+        assertEquals("Furnberry", store.get(0).get(company));
+    }
+
+    @Test
+    void testNonIntegerAndShortRows() {
+        store.put(7, row("Red Leather Chair", "300.50"));
+        ArrayList<String> stored = store.get(7);
+        assertEquals(row("Red Leather Chair", "300.50"), stored, "Short rows and decimal prices should round-trip.");
+        int row = store.rowOf(7);
+        assertFalse(store.hasInt(row, 1));
+        assertFalse(store.hasValue(row, 2));
+    }
+
+    @Test
+    void testEditIsCopy() {
+        ArrayList<String> entry = store.get(0);
+        entry.set(0, "Changed");
+        assertEquals("Yellow Wood Chair", store.get(0).get(0), "Rows are copies until they are put back.");
+        store.put(0, entry);
+        assertEquals("Changed", store.get(0).get(0));
+    }
+
+    @Test
+    void testRemoveKeepsRowsDense() {
+        store.remove(0);
+        assertEquals(2, store.rowCount());
+        assertNull(store.get(0));
+        assertEquals("Purple Plastic Sofa", store.get(2).get(0));
+        assertEquals("Blue Wood Stool", store.get(1).get(0));
+        assertEquals(2, store.idAt(store.rowOf(2)));
+    }
+
+    @Test
+    void testManyRows() {
+        for (int i = 10; i < 5000; i++) {
+            store.put(i, row("Item " + i, String.valueOf(i)));
+        }
+        for (int i = 10; i < 5000; i += 2) {
+            store.remove(i);
+        }
+        for (int i = 11; i < 5000; i += 2) {
+            store.put(i, row("Renamed " + i, String.valueOf(i * 2)));
+        }
+        assertEquals(3 + 2495, store.size());
+        assertNull(store.get(4000));
+        assertEquals(row("Renamed 4001", "8002"), store.get(4001));
+        Iterator<Map.Entry<Integer, ArrayList<String>>> it = store.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getKey() >= 10) {
+                it.remove();
+            }
+        }
+        assertEquals(Set.of(0, 1, 2), store.keySet());
+    }
+
+    @Test
+    void testReservedId() {
+        assertThrows(IllegalArgumentException.class, () -> store.put(Integer.MIN_VALUE, row("Ghost", "1")));
+        assertEquals(3, store.size(), "A rejected entry should leave the store unchanged.");
+        assertFalse(store.containsKey(Integer.MIN_VALUE));
+        assertNull(store.get(Integer.MIN_VALUE));
+        assertNull(store.remove(Integer.MIN_VALUE));
+        assertEquals(Set.of(0, 1, 2), store.keySet());
+        store.put(Integer.MIN_VALUE + 1, row("Lowest", "1"));
+        assertEquals(row("Lowest", "1"), store.get(Integer.MIN_VALUE + 1));
+    }
+
+    @Test
+    void testListenerSeesSwapRemove() {
+        List<String> events = new ArrayList<>();
+        store.addListener(new CatalogueStore.Listener() {
+            @Override
+            public void rowAdded(int row) {
+                events.add("added " + row);
+            }
+
+            @Override
+            public void rowChanged(int row, ArrayList<String> old) {
+                events.add("changed " + row + " from " + old.get(0));
+            }
+
+            @Override
+            public void rowRemoved(int row, int id, ArrayList<String> old, int movedFrom) {
+                events.add("removed " + id + " at " + row + " from " + movedFrom);
+            }
+        });
+        store.put(3, row("Red Oak Table", "250"));
+        store.put(1, row("Blue Oak Stool", "360"));
+        store.remove(0);
+        store.remove(1);
+        assertEquals(List.of("added 3", "changed 1 from Blue Wood Stool", "removed 0 at 0 from 3",
+                "removed 1 at 1 from 2"), events);
+        assertEquals(3, store.idAt(0));
+        assertEquals(2, store.idAt(1));
+    }
+}
@@ -4,11 +4,29 @@
 
 package furnitureCatalogue;
 
+import furnitureCatalogue.SearchPackage.BitmapIndexTest;
+import furnitureCatalogue.SearchPackage.FuzzyNameIndexTest;
+import furnitureCatalogue.SearchPackage.QueryEngineTest;
+import furnitureCatalogue.SearchPackage.QueryPlannerTest;
+import furnitureCatalogue.SearchPackage.RangeIndexTest;
+import furnitureCatalogue.SearchPackage.ResultCacheTest;
+import furnitureCatalogue.SearchPackage.RowBitmapTest;
+import furnitureCatalogue.SearchPackage.SearchControllerTest;
+import furnitureCatalogue.SearchPackage.SearchDatabaseTest;
+import furnitureCatalogue.SearchPackage.SearchResultsTest;
+import furnitureCatalogue.SearchPackage.SearchServiceTest;
 import org.junit.platform.suite.api.SelectClasses;
 import org.junit.platform.suite.api.Suite;
 
 @Suite
-@SelectClasses({CatalogueUITest.class, CatalogueFileIOTest.class, LoginTest.class, IntegrationTests.class})
+@SelectClasses({CatalogueUITest.class, CatalogueFileIOTest.class, CatalogueChangeLogTest.class,
+        CatalogueCsvReaderTest.class, CatalogueStoreTest.class, CatalogueSnapshotTest.class,
+        CatalogueWriteBehindTest.class, CatalogueSamplerTest.class, CatalogueSearchIndexTest.class,
+        CatalogueNameTrieTest.class, CatalogueNameIndexTest.class,
+        SearchDatabaseTest.class, FuzzyNameIndexTest.class, QueryEngineTest.class, ResultCacheTest.class,
+        SearchResultsTest.class, BitmapIndexTest.class, RowBitmapTest.class, QueryPlannerTest.class,
+        RangeIndexTest.class, SearchServiceTest.class, SearchControllerTest.class,
+        LoginTest.class, IntegrationTests.class})
 public class CatalogueTestSuite {
     // Runs all tests in the suite.
 }
\ No newline at end of file
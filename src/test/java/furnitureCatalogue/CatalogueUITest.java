@@ -55,8 +55,10 @@ public class CatalogueUITest {
     void testDisplayEntries() {
         ui.displayEntriesSwing();
         String output = outContent.toString();
-        assertTrue(output.contains("193\tBlue Wooden Chair"),
-                   "Output should display the entry with ID 193 and name 'Blue Wooden Chair'.");
+        assertTrue(output.contains("0\tYellow Wood Chair"),
+                   "Output should start with the entry with ID 0 and name 'Yellow Wood Chair'.");
+        assertTrue(output.contains("Showing 50 of "),
+                   "Output should show the first page and offer the rest.");
     }
 
     @Test
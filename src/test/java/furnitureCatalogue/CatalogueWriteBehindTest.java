@@ -0,0 +1,176 @@
+/*
+ * This file contains tests for the CatalogueWriteBehind class.
+ * It tests that queued changes are coalesced, written by size and by latency, replay the same
+ * as writing every change directly, and are kept and retried when a write fails.
+ */
+package furnitureCatalogue;
+
+import org.junit.jupiter.api.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogueWriteBehindTest {
+    private File csvFile;
+    private CatalogueChangeLog log;
+    private CatalogueWriteBehind writer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csvFile = File.createTempFile("WriteBehind", ".csv");
+        Files.writeString(csvFile.toPath(), "id,Name,Price\n0,Chair,10\n1,Table,20\n2,Sofa,30\n");
+        log = new CatalogueChangeLog(csvFile);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.close();
+        }
+        csvFile.delete();
+        log.getLogFile().delete();
+    }
+
+    private List<String> logLines() throws IOException {
+        return log.getLogFile().exists() ? Files.readAllLines(log.getLogFile().toPath()) : List.of();
+    }
+
+    private void waitForLines(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (logLines().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testRepeatedEditsAreCoalesced() throws IOException {
+        writer = new CatalogueWriteBehind(log, 1000, 60_000);
+        writer.add("3,Stool,40");
+        writer.edit("3", "3,Stool,41");
+        writer.edit("3", "3,Stool,42");
+        writer.edit("1", "1,Desk,25");
+        writer.edit("1", "1,Desk,26");
+        writer.delete("2");
+        writer.awaitDurable();
+        assertEquals(List.of("A,3,Stool,42", "E,1,1,Desk,26", "D,2"), logLines());
+    }
+
+    @Test
+    void testDeleteReplacesQueuedChanges() throws IOException {
+        writer = new CatalogueWriteBehind(log, 1000, 60_000);
+        writer.add("3,Stool,40");
+        writer.delete("3");
+        writer.edit("3", "3,Stool,50"); // Edit of a deleted id is ignored on replay
+        writer.awaitDurable();
+        assertEquals(List.of("D,3"), logLines());
+    }
+
+    @Test
+    void testWritesWhenBatchIsFull() throws Exception {
+        writer = new CatalogueWriteBehind(log, 2, 60_000);
+        writer.add("3,Stool,40");
+        writer.add("4,Bench,50");
+        waitForLines(2);
+        assertEquals(2, logLines().size(), "A full batch should be written without a flush.");
+    }
+
+    @Test
+    void testWritesAfterLatency() throws Exception {
+        writer = new CatalogueWriteBehind(log, 1000, 10);
+        Thread.sleep(50); // Let the writer start waiting on an empty queue
+        writer.add("3,Stool,40");
+        waitForLines(1);
+        assertEquals(List.of("A,3,Stool,40"), logLines());
+    }
+
+    @Test
+    void testCloseDrainsQueue() throws IOException {
+        writer = new CatalogueWriteBehind(log, 1000, 60_000);
+        writer.add("3,Stool,40");
+        writer.close();
+        assertEquals(List.of("A,3,Stool,40"), logLines());
+        assertThrows(IllegalStateException.class, () -> writer.add("4,Bench,50"));
+    }
+
+    @Test
+    void testReplaysSameAsDirectWrites() throws IOException {
+        File directCsv = File.createTempFile("WriteBehindDirect", ".csv");
+        CatalogueChangeLog direct = new CatalogueChangeLog(directCsv);
+        writer = new CatalogueWriteBehind(log, 7, 60_000);
+        Random rand = new Random(42);
+        try {
+            for (int i = 0; i < 2000; i++) {
+                String id = String.valueOf(rand.nextInt(6));
+                String newID = rand.nextInt(10) == 0 ? String.valueOf(rand.nextInt(6)) : id;
+                String line = newID + ",Item" + i + "," + i;
+                switch (rand.nextInt(3)) {
+                    case 0:
+                        writer.add(line);
+                        direct.appendAdd(line);
+                        break;
+                    case 1:
+                        writer.edit(id, line);
+                        direct.appendEdit(id, line);
+                        break;
+                    default:
+                        writer.delete(id);
+                        direct.appendDelete(id);
+                }
+            }
+            writer.awaitDurable();
+            LinkedHashMap<String, String> expected = new LinkedHashMap<>(Map.of("0", "0,Chair,10", "1", "1,Table,20"));
+            LinkedHashMap<String, String> actual = new LinkedHashMap<>(expected);
+            CatalogueChangeLog.apply(direct.readRecords(), expected);
+            CatalogueChangeLog.apply(log.readRecords(), actual);
+            assertEquals(expected, actual);
+            assertTrue(logLines().size() < 2000, "Some changes should have been coalesced.");
+        } finally {
+            directCsv.delete();
+            direct.getLogFile().delete();
+        }
+    }
+
+    /**
+     * Change log whose appends fail while broken is set.
+     */
+    private static class BrokenLog extends CatalogueChangeLog {
+        volatile boolean broken = true;
+
+        BrokenLog(File csvFile) {
+            super(csvFile);
+        }
+
+        @Override
+        synchronized void append(List<Record> records) throws IOException {
+            if (broken) {
+                throw new IOException("Disk full");
+            }
+            super.append(records);
+        }
+    }
+
+    @Test
+    void testFailedWriteIsRetried() throws Exception {
+        BrokenLog broken = new BrokenLog(csvFile);
+        writer = new CatalogueWriteBehind(broken, 1000, 0);
+        writer.add("3,Stool,40");
+        IOException e = assertThrows(IOException.class, writer::awaitDurable);
+        assertEquals("Disk full", e.getMessage());
+        writer.edit("1", "1,Desk,25");
+        assertThrows(IOException.class, writer::awaitDurable, "Changes must not count as durable while failing.");
+        broken.broken = false;
+        writer.awaitDurable();
+        assertEquals(List.of("A,3,Stool,40", "E,1,1,Desk,25"), logLines(),
+                "The failed batch should be written first, ahead of later changes.");
+    }
+
+    @Test
+    void testCloseGivesUpOnBrokenLog() {
+        writer = new CatalogueWriteBehind(new BrokenLog(csvFile), 1000, 0);
+        writer.add("3,Stool,40");
+        assertTimeoutPreemptively(Duration.ofSeconds(10), writer::close);
+        assertThrows(IOException.class, writer::awaitDurable);
+    }
+}
@@ -53,16 +53,16 @@ public class IntegrationTests {
         String role = login.authenticate();
         assertEquals("admin", role, "Admin should be able to login successfully.");
         String output = outContent.toString();
-        assertTrue(output.contains("191\tRed Metal Sofa"),
-                "Output should display the entry with ID 191 and name 'Red Metal Sofa'.");
+        assertTrue(output.contains("0\tYellow Wood Chair"),
+                "Output should display the entry with ID 0 and name 'Yellow Wood Chair'.");
     }
 
     @Test
     public void testDisplayedEntries() {
         ui.displayEntriesSwing();
         String output = outContent.toString();
-        assertTrue(output.contains("191\tRed Metal Sofa"),
-                "Output should display the entry with ID 191 and name 'Red Metal Sofa'.");
+        assertTrue(output.contains("0\tYellow Wood Chair"),
+                "Output should display the entry with ID 0 and name 'Yellow Wood Chair'.");
 }
 
     @Test
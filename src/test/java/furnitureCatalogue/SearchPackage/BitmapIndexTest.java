@@ -0,0 +1,97 @@
+/*
+ * This file contains tests for the BitmapIndex class.
+ * It tests that the bitmaps follow additions, edits and removals (including the last row moving into
+ * a removed row's place), and that the engine gives the same results with and without the index.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.HEADERS;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitmapIndexTest {
+    private static final String[] COLOURS = {"Blue", "Red", "Grey", "blue"};
+    private static final String[] STYLES = {"Modern", "Gothic", "Rustic"};
+    private CatalogueStore store;
+    private BitmapIndex index;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        index = new BitmapIndex(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    private static ArrayList<String> randomRow(Random random) {
+        ArrayList<String> values = row("Chair", String.valueOf(random.nextInt(500)), "Chair",
+                COLOURS[random.nextInt(COLOURS.length)], "Wood", "Small", "1", "Leon's",
+                STYLES[random.nextInt(STYLES.length)], "10");
+        // Some entries stop before Style
+        return random.nextInt(5) == 0 ? new ArrayList<>(values.subList(0, 6)) : values;
+    }
+
+    private List<Integer> ids(QueryEngine engine, Map<String, String> filters) {
+        List<Integer> ids = new ArrayList<>();
+        for (int row : engine.search(null, filters, Map.of("Price", List.of("0", "400")), "id", true,
+                Integer.MAX_VALUE)) {
+            ids.add(store.idAt(row));
+        }
+        return ids;
+    }
+
+    @Test
+    void testMatching() {
+        store.put(0, row("Chair", "10", "Chair", "Blue", "Wood", "Small", "1", "Leon's", "Modern"));
+        store.put(1, row("Stool", "10", "Stool", "BLUE", "Oak", "Large", "1", "Leon's", "Gothic"));
+        store.put(2, row("Sofa", "10", "Sofa", "Red", "Oak", "Large", "1", "Oakley", "Modern"));
+        assertArrayEquals(new int[] {0, 1}, index.matching(Map.of(store.fieldOf("Colour"), "blue")).toArray(),
+                "Every spelling of the value should match.");
+        assertArrayEquals(new int[] {1}, index.matching(Map.of(store.fieldOf("Colour"), "blue",
+                store.fieldOf("Materials"), "oak")).toArray());
+        assertEquals(0, index.matching(Map.of(store.fieldOf("Colour"), "green")).getCardinality());
+
+        store.remove(0);
+        assertEquals(2, store.idAt(0));
+        assertArrayEquals(new int[] {0}, index.matching(Map.of(store.fieldOf("Colour"), "red")).toArray(),
+                "The last entry should be found in the row it moved to.");
+        assertArrayEquals(new int[] {1}, index.matching(Map.of(store.fieldOf("Colour"), "blue")).toArray());
+        store.put(2, row("Sofa", "10", "Sofa", "Blue"));
+        assertArrayEquals(new int[] {0, 1}, index.matching(Map.of(store.fieldOf("Colour"), "blue")).toArray());
+        assertEquals(0, index.matching(Map.of(store.fieldOf("Style"), "Modern")).getCardinality(),
+                "An edit that drops a field should leave its old bitmap.");
+        assertFalse(index.isIndexed(store.fieldOf("Name")));
+    }
+
+    @Test
+    void testSameResultsAsScan() {
+        Random random = new Random(3);
+        QueryEngine scan = new QueryEngine(store);
+        QueryEngine indexed = new QueryEngine(store, index, null);
+        for (int step = 0; step < 3000; step++) {
+            int id = random.nextInt(1500);
+            if (random.nextInt(4) == 0) {
+                store.remove(id);
+            } else {
+                store.put(id, randomRow(random));
+            }
+            if (step == 2000) {
+                store.clear();
+            }
+            if (step % 250 == 0) {
+                Map<String, String> filters = Map.of("Colour", COLOURS[random.nextInt(COLOURS.length)],
+                        "style", STYLES[random.nextInt(STYLES.length)]);
+                assertEquals(ids(scan, filters), ids(indexed, filters), "Step " + step);
+                filters = Map.of("Colour", "Red", "Company", "Leon's", "Name", "chair");
+                assertEquals(ids(scan, filters), ids(indexed, filters), "Step " + step);
+            }
+        }
+        assertEquals(List.of(), ids(indexed, Map.of("Colour", "Green", "Style", "Modern")));
+    }
+}
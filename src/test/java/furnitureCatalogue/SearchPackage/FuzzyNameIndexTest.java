@@ -0,0 +1,85 @@
+/*
+ * This file contains tests for the FuzzyNameIndex class.
+ * It tests typo tolerance, ranking, and keeping the index in step with the catalogue.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FuzzyNameIndexTest {
+    private CatalogueStore store;
+    private FuzzyNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(new String[] {"id", "Name", "Price"});
+        store.put(0, row("Yellow Wood Chair", "490"));
+        store.put(1, row("Blue Wood Stool", "360"));
+        store.put(2, row("Purple Plastic Sofa", "162"));
+        store.put(3, row("Red Leather Sofa", "700"));
+        store.put(4, row("Black Wooden Desk", "250"));
+        index = new FuzzyNameIndex(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    private static List<Integer> list(int[] ids) {
+        return Arrays.stream(ids).boxed().toList();
+    }
+
+    @Test
+    void testMaxEdits() {
+        assertEquals(0, FuzzyNameIndex.maxEdits("red"));
+        assertEquals(2, FuzzyNameIndex.maxEdits("sofa"));
+        assertEquals(2, FuzzyNameIndex.maxEdits("plasti"));
+        assertEquals(3, FuzzyNameIndex.maxEdits("red leather"));
+    }
+
+    @Test
+    void testDistance() {
+        char[] pattern = FuzzyNameIndex.pattern("wooden desk");
+        assertEquals(0, FuzzyNameIndex.distance(pattern, "black wooden desk", 3));
+        assertEquals(1, FuzzyNameIndex.distance(pattern, "black woodan desk", 3));
+        assertEquals(3, FuzzyNameIndex.distance(FuzzyNameIndex.pattern("chair"), "chir", 2),
+                "Only substitutions count, so a missing letter cannot be made up.");
+        assertEquals(0, FuzzyNameIndex.distance(FuzzyNameIndex.pattern("red sofa"), "red leather sofa", 3),
+                "Other words may appear between query words.");
+        assertEquals(4, FuzzyNameIndex.distance(FuzzyNameIndex.pattern("zzzz"), "sofa", 3));
+    }
+
+    @Test
+    void testSearch() {
+        assertEquals(List.of(4), list(index.search("Wooden Desk")));
+        assertEquals(List.of(4), list(index.search("woodin desc")), "Typos within the limit should match.");
+        assertEquals(List.of(2, 3), list(index.search("sofa")));
+        assertEquals(List.of(0, 1, 4), list(index.search("wood")));
+        assertEquals(List.of(3), list(index.search("red")), "Short queries must match exactly.");
+        assertEquals(List.of(), list(index.search("wardrobe")));
+    }
+
+    @Test
+    void testRankedByTypos() {
+        store.put(5, row("Plastic Sofa", "100"));
+        store.put(6, row("Plestic Sofa", "100"));
+        assertEquals(List.of(2, 5, 6), list(index.search("plastic sofa")));
+        assertEquals(List.of(6, 2, 5), list(index.search("plestic sofa")));
+    }
+
+    @Test
+    void testFollowsCatalogue() {
+        store.remove(0); // Row 4 moves into row 0
+        store.put(1, row("Blue Glass Table", "360"));
+        store.put(7, row("Oak Wood Bench", "120"));
+        assertEquals(List.of(4, 7), list(index.search("wood")));
+        assertEquals(List.of(1), list(index.search("glass table")));
+        store.clear();
+        assertEquals(List.of(), list(index.search("wood")));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file contains tests for the QueryEngine class.
+ * It tests filters, ranges, sorting in both directions, that a limited search returns the same
+ * first rows as a full one, that pages by offset or cursor add up to the full result, and the facet
+ * counts carried by every page.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.HEADERS;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryEngineTest {
+    private CatalogueStore store;
+    private QueryEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        store.put(0, row("Yellow Wood Chair", "490", "Chair", "Yellow", "Wood", "Small", "127", "Furnberry", "Gothic", "166"));
+        store.put(1, row("Blue Wood Stool", "360", "Stool", "Blue", "Wood", "Large", "142", "Leon's", "Gothic", "149"));
+        store.put(2, row("Purple Plastic Sofa", "162", "Sofa", "Purple", "Plastic", "Small", "72", "Leon's", "Traditional", "79"));
+        store.put(3, row("Blue Oak Table", "360", "Table", "Blue", "Oak", "Large", "10", "Oakley", "Modern", "80"));
+        store.put(4, row("Ash Bench", "n/a", "Bench", "Grey", "Ash"));
+        engine = new QueryEngine(store);
+    }
+
+    private List<Integer> ids(int[] ids, Map<String, String> filters, Map<String, List<String>> ranges,
+                              String sort, boolean ascending, int limit) {
+        List<Integer> result = new ArrayList<>();
+        for (int row : engine.search(ids, filters, ranges, sort, ascending, limit)) {
+            result.add(store.idAt(row));
+        }
+        return result;
+    }
+
+    @Test
+    void testFiltersAndRanges() {
+        assertEquals(List.of(1, 3), ids(null, Map.of("colour", "BLUE"), Map.of(), "id", true, 10),
+                "Filters should ignore case of both header and value.");
+        assertEquals(List.of(2, 3), ids(null, Map.of(), Map.of("Price", List.of("100", "360"), "Quantity", List.of("0", "100")),
+                "id", true, 10));
+        assertEquals(List.of(), ids(null, Map.of("Colour", "Green"), Map.of(), "id", true, 10));
+        assertEquals(List.of(4), ids(null, Map.of("Name", "ash bench"), Map.of(), "id", true, 10),
+                "Fields without a dictionary should be filtered too.");
+        assertEquals(List.of(3), ids(new int[] {3, 0, 7}, Map.of("Company", "oakley"), Map.of(), "id", true, 10),
+                "Only the given ids should be considered.");
+    }
+
+    @Test
+    void testSorting() {
+        assertEquals(List.of(4, 2, 1, 3, 0), ids(null, Map.of(), Map.of(), "Price", true, 10),
+                "Prices that are not integers sort first, equal prices by id.");
+        assertEquals(List.of(0, 1, 3, 2, 4), ids(null, Map.of(), Map.of(), "Price", false, 10));
+        assertEquals(List.of(4, 3, 1, 2, 0), ids(null, Map.of(), Map.of(), "Name", true, 10));
+        assertEquals(List.of(0, 2, 4, 1, 3), ids(null, Map.of(), Map.of(), "Colour", false, 10));
+        assertEquals(List.of(2, 3, 0, 1), ids(null, Map.of(), Map.of(), "Style", false, 4),
+                "Entries without a style sort last when descending.");
+    }
+
+    @Test
+    void testLimitKeepsBestRows() {
+        Random rand = new Random(7);
+        for (int i = 5; i < 500; i++) {
+            store.put(i, row("Item " + rand.nextInt(50), String.valueOf(rand.nextInt(100)), "Chair",
+                    rand.nextBoolean() ? "Blue" : "Red"));
+        }
+        for (String sort : List.of("id", "Price", "Name", "Colour")) {
+            for (boolean ascending : new boolean[] {true, false}) {
+                List<Integer> all = ids(null, Map.of(), Map.of(), sort, ascending, Integer.MAX_VALUE);
+                assertEquals(store.size(), all.size());
+                for (int limit : new int[] {0, 1, 7, 100}) {
+                    assertEquals(all.subList(0, limit), ids(null, Map.of(), Map.of(), sort, ascending, limit),
+                            sort + " limit " + limit);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testUnknownColumnsAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> engine.search(null, Map.of(), Map.of(), "Colour; 1", true, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.search(null, Map.of(), Map.of("Price", List.of("low", "10")), "id", true, 10));
+    }
+
+    @Test
+    void testPagesCoverFullResult() {
+        Random rand = new Random(11);
+        for (int i = 5; i < 300; i++) {
+            store.put(i, row("Item " + rand.nextInt(40), String.valueOf(rand.nextInt(60)), "Chair",
+                    rand.nextBoolean() ? "Blue" : "Red"));
+        }
+        Map<String, List<String>> ranges = Map.of("Price", List.of("10", "50"));
+        for (String sort : List.of("id", "Price", "Name", "Colour")) {
+            for (boolean ascending : new boolean[] {true, false}) {
+                List<Integer> all = ids(null, Map.of(), ranges, sort, ascending, Integer.MAX_VALUE);
+                List<Integer> byCursor = new ArrayList<>();
+                SearchPage page = engine.page(null, Map.of(), ranges, sort, ascending, null, 0, 7);
+                while (true) {
+                    assertEquals(all.size(), page.getTotal());
+                    assertEquals(byCursor.size(), page.getOffset());
+                    byCursor.addAll(page.getIds());
+                    if (!page.hasNext()) {
+                        break;
+                    }
+                    page = engine.page(null, Map.of(), ranges, sort, ascending, page.getNext(), 0, 7);
+                }
+                assertEquals(all, byCursor, sort + (ascending ? " ascending" : " descending"));
+                SearchPage third = engine.page(null, Map.of(), ranges, sort, ascending, null, 14, 7);
+                assertEquals(all.subList(14, 21), third.getIds());
+                assertEquals(14, third.getOffset());
+            }
+        }
+    }
+
+    @Test
+    void testCursorSurvivesChanges() {
+        SearchPage first = engine.page(null, Map.of(), Map.of(), "Name", true, null, 0, 2);
+        assertEquals(List.of(4, 3), first.getIds());
+        assertEquals("Blue Oak Table", first.getRows().get(1).get(0));
+        store.remove(3);
+        store.put(5, row("Aardvark Armchair", "10", "Chair"));
+        store.put(6, row("Blue Pine Desk", "10", "Desk"));
+        SearchPage second = engine.page(null, Map.of(), Map.of(), "Name", true, first.getNext(), 0, 2);
+        assertEquals(List.of(6, 1), second.getIds(), "The next page should start after the removed entry's name.");
+        assertEquals(2, second.getOffset(), "Entries added before the cursor should be counted.");
+        assertEquals(6, second.getTotal());
+        assertTrue(second.hasNext());
+        SearchPage last = engine.page(null, Map.of(), Map.of(), "Name", true, second.getNext(), 0, 2);
+        assertEquals(List.of(2, 0), last.getIds());
+        assertFalse(last.hasNext());
+        assertEquals(List.of(), engine.page(null, Map.of("Colour", "Green"), Map.of(), "id", true, null, 0, 2).getIds());
+    }
+
+    @Test
+    void testFacetsCountEveryMatch() {
+        store.put(5, row("Navy Pine Desk", "1250", "Desk", "blue", "Pine"));
+        SearchPage page = engine.page(null, Map.of(), Map.of("Price", List.of("100", "2000")), "Price", true, null, 0, 1);
+        assertEquals(List.of(2), page.getIds());
+        Map<String, Map<String, Integer>> facets = page.getFacets();
+        assertEquals(List.of("Colour", "Materials", "Furniture Type", "Company", "Style", "Price"),
+                new ArrayList<>(facets.keySet()));
+        assertEquals(List.of("Blue", "Purple", "Yellow"), new ArrayList<>(facets.get("Colour").keySet()),
+                "Values should be ordered by count, then by value.");
+        assertEquals(3, facets.get("Colour").get("Blue"), "Spellings differing in case should count together.");
+        assertEquals(Map.of("Wood", 2, "Plastic", 1, "Oak", 1, "Pine", 1), facets.get("Materials"));
+        assertEquals(Map.of("Gothic", 2, "Traditional", 1, "Modern", 1), facets.get("Style"),
+                "Entries without a value should not be counted.");
+        assertEquals(List.of("100-199", "300-399", "400-499", "1200-1299"), new ArrayList<>(facets.get("Price").keySet()));
+        assertEquals(2, facets.get("Price").get("300-399"));
+
+        SearchPage next = engine.page(null, Map.of(), Map.of("Price", List.of("100", "2000")), "Price", true,
+                page.getNext(), 0, 1);
+        assertEquals(facets, next.getFacets(), "Every page should carry the counts of the whole result.");
+        assertEquals(Map.of("Blue", 1), engine.page(null, Map.of("Furniture Type", "Table"), Map.of(), "id", true,
+                null, 0, 10).getFacets().get("Colour"));
+    }
+
+    @Test
+    void testLastPriceBucketIsOpenEnded() {
+        store.put(5, row("Oak Wardrobe", "1999", "Wardrobe", "Brown", "Oak"));
+        store.put(6, row("Oak Bed", "2000", "Bed", "Brown", "Oak"));
+        store.put(7, row("Marble Table", "9500", "Table", "White", "Marble"));
+        Map<String, Integer> prices = engine.page(null, Map.of(), Map.of("Price", List.of("1500", "10000")), "id", true,
+                null, 0, 1).getFacets().get("Price");
+        assertEquals(List.of("1900-1999", "2000+"), new ArrayList<>(prices.keySet()));
+        assertEquals(2, prices.get("2000+"));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This file contains tests for the QueryPlanner, QueryPlan and ColumnStatistics classes.
+ * It tests the column statistics and the estimates made from them, that the planner picks the path the
+ * statistics favour and checks the most selective conditions first, that statistics are taken again once
+ * enough has changed, that every plan finds the same entries as a plain scan, and the explain output.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryPlannerTest {
+    private static final String[] HEADERS = {"id", "Name", "Price", "Colour", "Style", "Quantity"};
+    private static final String[] COLOURS = {"Red", "Blue", "Green", "Black", "White"};
+    private static final String[] STYLES = {"Modern", "Gothic", "Rustic", "Traditional"};
+    private static final int ROWS = 4000;
+    private CatalogueStore store;
+    private BitmapIndex bitmaps;
+    private RangeIndex rangeIndex;
+    private QueryEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        Random random = new Random(17);
+        for (int id = 0; id < ROWS; id++) {
+            store.put(id, row(random, id));
+        }
+        bitmaps = new BitmapIndex(store);
+        rangeIndex = new RangeIndex(store);
+        engine = new QueryEngine(store, bitmaps, rangeIndex);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bitmaps.close();
+        rangeIndex.close();
+    }
+
+    /**
+     * One entry in forty is Gold, prices are spread evenly over 0 to 999, and one quantity in ten is
+     * missing.
+     */
+    private static ArrayList<String> row(Random random, int id) {
+        String colour = id % 40 == 0 ? "Gold" : COLOURS[random.nextInt(COLOURS.length)];
+        String quantity = random.nextInt(10) == 0 ? "n/a" : String.valueOf(random.nextInt(100));
+        return new ArrayList<>(List.of("Item " + random.nextInt(1000), String.valueOf(random.nextInt(1000)), colour,
+                STYLES[random.nextInt(STYLES.length)], quantity));
+    }
+
+    private QueryPlan plan(int[] ids, Map<String, String> filters, Map<String, List<String>> ranges) {
+        return engine.plan(ids, filters, ranges);
+    }
+
+    @Test
+    void testStatistics() {
+        ColumnStatistics stats = ColumnStatistics.analyze(store);
+        int price = store.fieldOf("Price");
+        int quantity = store.fieldOf("Quantity");
+        int colour = store.fieldOf("Colour");
+        assertEquals(ROWS, stats.getRows());
+        assertEquals(0, stats.getNulls(price));
+        assertEquals(ROWS / 10, stats.getNulls(quantity), ROWS / 40);
+        assertEquals(6, stats.getDistinct(colour));
+        assertEquals(100, stats.getDistinct(quantity));
+        assertEquals(ColumnStatistics.HISTOGRAM_BUCKETS + 1, stats.getHistogram(price).length);
+        assertEquals(0, stats.getHistogram(-1)[0]);
+        assertEquals(ROWS - 1, stats.getHistogram(-1)[ColumnStatistics.HISTOGRAM_BUCKETS]);
+        assertNull(stats.getHistogram(colour));
+
+        // Dictionary filters are estimated from the codes they match, so they are exact
+        assertEquals(ROWS / 40 / (double) ROWS, stats.equalTo(store, colour, "gold"), 1e-9);
+        assertEquals(0, stats.equalTo(store, colour, "Purple"));
+        assertEquals(0.5, stats.between(price, 0, 499), 0.03);
+        assertEquals(0.1, stats.between(price, 900, 5000), 0.02);
+        assertEquals(0, stats.between(price, 2000, 3000));
+        assertEquals(0.9 * 0.5, stats.between(quantity, 50, 99), 0.04);
+        assertEquals(0.25, stats.between(-1, 1000, 1999), 0.01);
+    }
+
+    @Test
+    void testChoosesPath() {
+        QueryPlan scan = plan(null, Map.of(), Map.of());
+        assertEquals(QueryPlan.Access.SCAN, scan.getAccess());
+
+        QueryPlan gold = plan(null, Map.of("Colour", "Gold"), Map.of("Price", List.of("0", "899")));
+        assertEquals(QueryPlan.Access.BITMAP, gold.getAccess());
+        assertEquals(ROWS / 40.0, gold.getCandidates(), 1e-6);
+
+        // Blue keeps a fifth of the entries, this price range about a hundredth
+        QueryPlan narrow = plan(null, Map.of("Colour", "Blue"), Map.of("Price", List.of("100", "109")));
+        assertEquals(QueryPlan.Access.RANGE, narrow.getAccess());
+        assertEquals("Price", narrow.getDriving().get(0).header);
+        assertEquals(List.of("Colour"), narrow.getChecks().stream().map(c -> c.header).toList());
+
+        QueryPlan named = plan(new int[] {1, 2, 3}, Map.of("Colour", "Blue"), Map.of("Price", List.of("0", "499")));
+        assertEquals(QueryPlan.Access.FUZZY, named.getAccess());
+        assertEquals(3, named.getCandidates(), 1e-6);
+
+        // Checks run most selective first
+        QueryPlan ordered = plan(null, Map.of("Name", "item 5"),
+                Map.of("Quantity", List.of("0", "89"), "Price", List.of("0", "899")));
+        List<QueryPlan.Condition> checks = ordered.getChecks();
+        for (int i = 1; i < checks.size(); i++) {
+            assertTrue(checks.get(i - 1).selectivity <= checks.get(i).selectivity, ordered.explain());
+        }
+        assertEquals("Name", checks.get(0).header, ordered.explain());
+    }
+
+    @Test
+    void testStatisticsRefresh() {
+        QueryPlanner planner = new QueryPlanner(store, null, null);
+        ColumnStatistics first = planner.statistics();
+        Random random = new Random(3);
+        for (int id = ROWS; id < ROWS + ROWS / 20; id++) {
+            store.put(id, row(random, id));
+        }
+        assertSame(first, planner.statistics(), "A few changes should not retake the statistics.");
+        for (int id = ROWS + ROWS / 20; id < ROWS + ROWS / 5; id++) {
+            store.put(id, row(random, id));
+        }
+        ColumnStatistics second = planner.statistics();
+        assertNotSame(first, second);
+        assertEquals(store.rowCount(), second.getRows());
+        store.clear();
+        assertEquals(0, planner.statistics().getRows(), "Emptying the catalogue should retake the statistics.");
+    }
+
+    @Test
+    void testPlansMatchScan() {
+        QueryEngine scan = new QueryEngine(store);
+        Random random = new Random(29);
+        for (int i = 0; i < 300; i++) {
+            Map<String, String> filters = new HashMap<>();
+            Map<String, List<String>> ranges = new HashMap<>();
+            if (random.nextBoolean()) {
+                filters.put("Colour", random.nextInt(4) == 0 ? "gold" : COLOURS[random.nextInt(COLOURS.length)]);
+            }
+            if (random.nextBoolean()) {
+                filters.put("Style", STYLES[random.nextInt(STYLES.length)].toUpperCase());
+            }
+            if (random.nextBoolean()) {
+                int low = random.nextInt(1000);
+                ranges.put("Price", List.of(String.valueOf(low), String.valueOf(low + random.nextInt(300))));
+            }
+            if (random.nextBoolean()) {
+                int low = random.nextInt(100);
+                ranges.put("Quantity", List.of(String.valueOf(low), String.valueOf(low + random.nextInt(20))));
+            }
+            if (random.nextInt(4) == 0) {
+                int low = random.nextInt(ROWS);
+                ranges.put("id", List.of(String.valueOf(low), String.valueOf(low + random.nextInt(200))));
+            }
+            int[] ids = null;
+            if (random.nextInt(3) == 0) {
+                ids = random.ints(random.nextInt(2000), 0, ROWS + 10).distinct().toArray();
+            }
+            if (i % 50 == 0) {
+                // Changes the statistics have not seen yet must not change the results
+                store.put(random.nextInt(ROWS), row(random, 0));
+                store.remove(random.nextInt(ROWS));
+            }
+            String plan = engine.plan(ids, filters, ranges).explain();
+            assertArrayEquals(scan.search(ids, filters, ranges, "Price", true, Integer.MAX_VALUE),
+                    engine.search(ids, filters, ranges, "Price", true, Integer.MAX_VALUE), plan);
+            assertEquals(scan.page(ids, filters, ranges, "id", false, null, 0, 5).getFacets(),
+                    engine.page(ids, filters, ranges, "id", false, null, 0, 5).getFacets(), plan);
+        }
+    }
+
+    @Test
+    void testExplain() {
+        String text = plan(null, Map.of("Colour", "Gold"), Map.of("Price", List.of("0", "499"))).explain();
+        assertTrue(text.startsWith("Search of 4000 entries, estimated "), text);
+        assertTrue(text.contains("Access: bitmap index on Colour = Gold (est. 100 rows)"), text);
+        assertTrue(text.contains("Check Price between 0 and 499 (selectivity 0."), text);
+        assertTrue(text.contains("against range index on Price"), text);
+        assertTrue(text.contains("scan"), text);
+        assertTrue(text.contains("Statistics of 4000 entries"), text);
+
+        SearchService service = new SearchService(store);
+        try {
+            String explained = service.explain(new SearchQuery("", Map.of("Colour", "Gold"), Map.of(), "Price", false));
+            assertTrue(explained.endsWith(String.format("Sort by Price descending%n")), explained);
+            String none = service.explain(new SearchQuery("zzzzzzzz", Map.of(), Map.of(), "Price", true));
+            assertTrue(none.startsWith("No name matches"), none);
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file contains tests for the RangeIndex class.
+ * It tests ranges on the id and numeric fields, that the index follows additions, edits and removals
+ * across many blocks, and that the engine gives the same results with and without it.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RangeIndexTest {
+    private static final String[] HEADERS = {"id", "Name", "Price", "Colour", "Quantity"};
+    private CatalogueStore store;
+    private RangeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        index = new RangeIndex(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.close();
+    }
+
+    private List<Integer> ids(int[] rows) {
+        List<Integer> ids = new ArrayList<>();
+        for (int row : rows) {
+            ids.add(store.idAt(row));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the ids with a price in the range by looking at every row, ordered by price and id.
+     */
+    private List<Integer> scan(int min, int max) {
+        List<int[]> matches = new ArrayList<>();
+        int field = store.fieldOf("Price");
+        for (int row = 0; row < store.rowCount(); row++) {
+            if (store.hasInt(row, field) && store.getInt(row, field) >= min && store.getInt(row, field) <= max) {
+                matches.add(new int[] {store.getInt(row, field), store.idAt(row)});
+            }
+        }
+        matches.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+        List<Integer> ids = new ArrayList<>();
+        matches.forEach(m -> ids.add(m[1]));
+        return ids;
+    }
+
+    @Test
+    void testRanges() {
+        store.put(5, row("Chair", "300", "Blue", "2"));
+        store.put(1, row("Stool", "100", "Red", "-4"));
+        store.put(3, row("Sofa", "300", "Grey"));
+        store.put(4, row("Bench", "12.50", "Grey", "7"));
+        assertEquals(List.of(1, 3, 5), ids(index.rowsBetween("price", 0, 1000)),
+                "Ranges should be ordered by value then id, and skip values that are not integers.");
+        assertEquals(List.of(3, 5), ids(index.rowsBetween("Price", 300, 300)));
+        assertEquals(List.of(1, 5), ids(index.rowsBetween("Quantity", -10, 5)));
+        assertEquals(List.of(3, 4), ids(index.rowsBetween("ID", 2, 4)));
+        assertEquals(List.of(), ids(index.rowsBetween("Price", 500, 100)));
+        assertFalse(index.isIndexed("Colour"));
+        assertThrows(IllegalArgumentException.class, () -> index.rowsBetween("Colour", 0, 1));
+
+        store.put(4, row("Bench", "150", "Grey", "7"));
+        store.remove(1);
+        store.put(3, row("Sofa", "x", "Grey"));
+        assertEquals(List.of(4, 5), ids(index.rowsBetween("Price", 0, 1000)));
+        assertEquals(List.of(3, 4, 5), ids(index.rowsBetween("id", 0, 10)));
+    }
+
+    @Test
+    void testFollowsChanges() {
+        Random random = new Random(11);
+        for (int step = 0; step < 20000; step++) {
+            int id = random.nextInt(6000);
+            if (random.nextInt(5) == 0) {
+                store.remove(id);
+            } else {
+                store.put(id, row("Chair", String.valueOf(random.nextInt(2000) - 100), "Blue"));
+            }
+            if (step % 2500 == 0) {
+                int min = random.nextInt(1000);
+                assertEquals(scan(min, min + 300), ids(index.rowsBetween("Price", min, min + 300)), "Step " + step);
+            }
+        }
+        assertEquals(scan(Integer.MIN_VALUE, Integer.MAX_VALUE),
+                ids(index.rowsBetween("Price", Integer.MIN_VALUE, Integer.MAX_VALUE)));
+        store.clear();
+        assertEquals(List.of(), ids(index.rowsBetween("Price", 0, 1000)));
+    }
+
+    @Test
+    void testSameResultsAsScan() {
+        Random random = new Random(5);
+        for (int id = 0; id < 3000; id++) {
+            store.put(id, row("Chair", String.valueOf(random.nextInt(500)),
+                    random.nextBoolean() ? "Blue" : "Red", String.valueOf(random.nextInt(50))));
+        }
+        QueryEngine scan = new QueryEngine(store);
+        QueryEngine indexed = new QueryEngine(store, null, index);
+        Map<String, List<String>> ranges = Map.of("Price", List.of("100", "200"), "Quantity", List.of("10", "20"));
+        for (String sort : new String[] {"id", "Price", "Colour"}) {
+            assertArrayEquals(scan.search(null, Map.of("Colour", "blue"), ranges, sort, false, Integer.MAX_VALUE),
+                    indexed.search(null, Map.of("Colour", "blue"), ranges, sort, false, Integer.MAX_VALUE));
+            assertArrayEquals(scan.search(null, Map.of(), Map.of("id", List.of("10", "40")), sort, true, 20),
+                    indexed.search(null, Map.of(), Map.of("id", List.of("10", "40")), sort, true, 20));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * This file contains tests for the ResultCache class.
+ * It tests that equivalent searches share a key, that any change to the catalogue empties the cache,
+ * and that the least recently used result is evicted first.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultCacheTest {
+    private CatalogueStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(new String[] {"id", "Name", "Price", "Colour"});
+        store.put(0, row("Chair", "10", "Blue"));
+    }
+
+    private static List<Object> key(String query, String colour) {
+        return ResultCache.key(query, Map.of("Colour", colour), Map.of("Price", List.of("0", "100")), "Price", true);
+    }
+
+    @Test
+    void testEquivalentSearchesShareKey() {
+        Map<String, String> filters = new LinkedHashMap<>();
+        filters.put("Style", "Modern");
+        filters.put("colour", "BLUE");
+        Map<String, String> reversed = new LinkedHashMap<>();
+        reversed.put("Colour", "blue");
+        reversed.put("style", "modern");
+        assertEquals(ResultCache.key(" Red  Chair", filters, Map.of(), "price", true),
+                ResultCache.key("red chair", reversed, Map.of(), "Price", true));
+        assertNotEquals(ResultCache.key("red chair", filters, Map.of(), "Price", true),
+                ResultCache.key("red chair", filters, Map.of(), "Price", false));
+        assertNotEquals(key("chair", "Blue"), key("chair", "Red"));
+    }
+
+    @Test
+    void testChangesInvalidate() {
+        ResultCache<int[]> cache = new ResultCache<>(8);
+        assertNull(cache.get(store, key("chair", "Blue")));
+        cache.put(store, key("chair", "Blue"), new int[] {0});
+        assertArrayEquals(new int[] {0}, cache.get(store, key("Chair", "blue")));
+
+        store.put(1, row("Blue Chair", "20", "Blue"));
+        assertNull(cache.get(store, key("chair", "Blue")), "Adding an entry should drop cached results.");
+        cache.put(store, key("chair", "Blue"), new int[] {0, 1});
+        store.put(1, row("Blue Chair", "200", "Blue"));
+        assertNull(cache.get(store, key("chair", "Blue")), "Editing an entry should drop cached results.");
+        cache.put(store, key("chair", "Blue"), new int[] {0});
+        store.remove(0);
+        assertNull(cache.get(store, key("chair", "Blue")), "Removing an entry should drop cached results.");
+
+        CatalogueStore other = new CatalogueStore(new String[] {"id", "Name", "Price", "Colour"});
+        cache.put(store, key("chair", "Blue"), new int[0]);
+        assertNull(cache.get(other, key("chair", "Blue")), "Results belong to one catalogue.");
+        assertEquals(1, cache.getHits());
+        assertEquals(5, cache.getMisses());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        ResultCache<int[]> cache = new ResultCache<>(2);
+        cache.put(store, key("a", "Blue"), new int[] {1});
+        cache.put(store, key("b", "Blue"), new int[] {2});
+        assertNotNull(cache.get(store, key("a", "Blue")));
+        cache.put(store, key("c", "Blue"), new int[] {3});
+        assertNull(cache.get(store, key("b", "Blue")), "b was used least recently.");
+        assertNotNull(cache.get(store, key("a", "Blue")));
+        assertNotNull(cache.get(store, key("c", "Blue")));
+        assertEquals(0.75, cache.getHitRate());
+        assertTrue(cache.getStats().startsWith("75.0% hit rate, 4 lookups, 2 results cached"), cache.getStats());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file contains tests for the RowBitmap class.
+ * It tests adding and removing rows as chunks switch between arrays and bitmaps, and that
+ * intersections and unions agree with plain sets.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import org.junit.jupiter.api.*;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowBitmapTest {
+    private static int[] sorted(Set<Integer> rows) {
+        return rows.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Fills a bitmap and a set with the same random rows: a dense first chunk, a sparse second chunk
+     * and a few rows further out.
+     */
+    private static RowBitmap random(Random random, Set<Integer> rows) {
+        RowBitmap bitmap = new RowBitmap();
+        for (int i = 0; i < 20000; i++) {
+            int row = random.nextInt(4) == 0 ? 65536 + random.nextInt(65536) : random.nextInt(30000);
+            if (i % 1000 == 0) {
+                row = 200000 + random.nextInt(1000);
+            }
+            rows.add(row);
+            bitmap.add(row);
+        }
+        return bitmap;
+    }
+
+    @Test
+    void testAddAndRemove() {
+        RowBitmap bitmap = new RowBitmap();
+        Set<Integer> expected = new HashSet<>();
+        for (int row = 0; row < 10000; row++) {
+            bitmap.add(row * 3);
+            expected.add(row * 3);
+        }
+        bitmap.add(3);
+        assertEquals(10000, bitmap.getCardinality(), "Adding a row twice should not count it twice.");
+        for (int row = 0; row < 9000; row++) {
+            bitmap.remove(row * 3);
+            expected.remove(row * 3);
+        }
+        bitmap.remove(1);
+        bitmap.remove(1 << 20);
+        assertArrayEquals(sorted(expected), bitmap.toArray(), "The chunk should survive turning back into an array.");
+        assertTrue(bitmap.contains(29997));
+        assertFalse(bitmap.contains(29998));
+        for (int row : bitmap.toArray()) {
+            bitmap.remove(row);
+        }
+        assertEquals(0, bitmap.getCardinality());
+        assertFalse(bitmap.contains(29997));
+    }
+
+    @Test
+    void testAndOr() {
+        Random random = new Random(7);
+        Set<Integer> a = new HashSet<>();
+        Set<Integer> b = new HashSet<>();
+        RowBitmap x = random(random, a);
+        RowBitmap y = random(random, b);
+        Set<Integer> both = new HashSet<>(a);
+        both.retainAll(b);
+        Set<Integer> either = new HashSet<>(a);
+        either.addAll(b);
+        RowBitmap and = RowBitmap.and(x, y);
+        RowBitmap or = RowBitmap.or(x, y);
+        assertArrayEquals(sorted(both), and.toArray());
+        assertEquals(both.size(), and.getCardinality());
+        assertArrayEquals(sorted(either), or.toArray());
+        assertEquals(either.size(), or.getCardinality());
+        assertArrayEquals(sorted(a), x.toArray(), "Operands should not be changed.");
+
+        RowBitmap copy = x.copy();
+        copy.add(500000);
+        assertFalse(x.contains(500000), "Copies should be independent.");
+        assertEquals(0, RowBitmap.and(x, new RowBitmap()).getCardinality());
+    }
+}
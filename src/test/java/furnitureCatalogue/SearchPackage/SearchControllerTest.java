@@ -0,0 +1,123 @@
+/*
+ * This file contains tests for the asynchronous search of the SearchController class.
+ * It tests that an asynchronous search gives the same pages as a direct one, that searches of different
+ * callers run side by side and are only stopped by cancelling their own future, that a search past its
+ * deadline is stopped, and that an interrupted search gives up.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchControllerTest {
+    private static final String[] HEADERS = {"id", "Name", "Price", "Colour"};
+    private CatalogueStore store;
+    private SearchController controller;
+    private SearchQuery query;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        for (int id = 0; id < 20; id++) {
+            store.put(id, row("Chair " + id, String.valueOf(100 - id), id % 2 == 0 ? "Blue" : "Red"));
+        }
+        controller = SearchController.getInstance();
+        controller.setCatalogue(store);
+        query = new SearchQuery("", Map.of("Colour", "Blue"), Map.of(), "Price", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        controller.setCatalogue(null);
+    }
+
+    /**
+     * Holds the catalogue's write lock from another thread, by blocking a listener during a change,
+     * until the returned latch is counted down.
+     */
+    private CountDownLatch holdWriteLock() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CatalogueStore.Listener blocking = new CatalogueStore.Listener() {
+            @Override
+            public void rowAdded(int row) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        store.addListener(blocking);
+        Thread writer = new Thread(() -> {
+            store.put(100, row("Stool", "5", "Blue"));
+            store.removeListener(blocking);
+        });
+        writer.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    void testAsyncMatchesSync() throws Exception {
+        SearchPage page = controller.searchPageAsync(query, 0, 5).get(5, TimeUnit.SECONDS);
+        SearchPage direct = controller.searchPage(query, 0, 5);
+        assertEquals(direct.getIds(), page.getIds());
+        assertEquals(List.of(18, 16, 14, 12, 10), page.getIds());
+        assertEquals(10, page.getTotal());
+        SearchPage next = controller.searchPageAsync(query, page.getNext(), 5).get(5, TimeUnit.SECONDS);
+        assertEquals(controller.searchPage(query, page.getNext(), 5).getIds(), next.getIds());
+        assertEquals(List.of(8, 6, 4, 2, 0), next.getIds());
+    }
+
+    @Test
+    void testSearchesRunSideBySide() throws Exception {
+        // Warm up so the search service exists before the write lock is taken
+        controller.searchPage(query, 0, 1);
+        CountDownLatch release = holdWriteLock();
+        CompletableFuture<SearchPage> first = controller.searchPageAsync(query, 0, 5);
+        CompletableFuture<SearchPage> second = controller.searchPageAsync(
+                new SearchQuery("", Map.of("Colour", "Red"), Map.of(), "Price", true), 0, 5);
+        CompletableFuture<SearchPage> third = controller.searchPageAsync(query, 5, 5);
+        assertFalse(first.isDone(), "Another caller's search must not cancel this one.");
+        third.cancel(true);
+        assertThrows(CancellationException.class, () -> third.get(5, TimeUnit.SECONDS));
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        release.countDown();
+        assertEquals(List.of(100, 18, 16, 14, 12), first.get(5, TimeUnit.SECONDS).getIds());
+        assertEquals(List.of(19, 17, 15, 13, 11), second.get(5, TimeUnit.SECONDS).getIds());
+    }
+
+    @Test
+    void testDeadline() throws Exception {
+        controller.searchPage(query, 0, 1);
+        CountDownLatch release = holdWriteLock();
+        try {
+            CompletableFuture<SearchPage> slow = controller.searchPageAsync(query, 0, 5, Duration.ofMillis(50));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> slow.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, e.getCause());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testInterruptedSearchGivesUp() {
+        QueryEngine engine = new QueryEngine(store);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(CancellationException.class,
+                    () -> engine.page(null, Map.of(), Map.of(), "id", true, null, 0, 5));
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(5, engine.page(null, Map.of(), Map.of(), "id", true, null, 0, 5).getIds().size());
+    }
+}
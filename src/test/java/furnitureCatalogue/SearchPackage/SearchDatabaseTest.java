@@ -0,0 +1,129 @@
+/*
+ * This file contains tests for the SearchDatabase class.
+ * It tests that the table is typed, follows changes to the catalogue, serves advanced searches,
+ * reuses prepared statements for searches of the same shape, and answers filters from indexes.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.sql.*;
+import java.util.*;
+import static furnitureCatalogue.CatalogueFixtures.HEADERS;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchDatabaseTest {
+    private CatalogueStore store;
+    private SearchDatabase database;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        store = new CatalogueStore(HEADERS);
+        store.put(0, row("Yellow Wood Chair", "490", "Chair", "Yellow", "Wood", "Small", "127", "Furnberry", "Gothic", "166"));
+        store.put(1, row("Blue Wood Stool", "360", "Stool", "Blue", "Wood", "Large", "142", "Leon's", "Gothic", "149"));
+        store.put(2, row("Purple Plastic Sofa", "162", "Sofa", "Purple", "Plastic", "Small", "72", "Leon's", "Traditional", "79"));
+        database = new SearchDatabase(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    private List<String> names(String where) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement statement = database.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery("SELECT Name FROM t " + where + " ORDER BY id")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    @Test
+    void testTypedColumns() throws SQLException {
+        assertEquals(List.of("Yellow Wood Chair", "Blue Wood Stool", "Purple Plastic Sofa"), names("WHERE Price < 1000"),
+                "Price should compare as a number.");
+        assertEquals(List.of("Blue Wood Stool", "Purple Plastic Sofa"), names("WHERE \"Furniture Type\" <> 'Chair'"));
+    }
+
+    @Test
+    void testFollowsCatalogue() throws SQLException {
+        store.put(3, row("Red Oak Table", "250", "Table", "Red", "Oak", "Large", "10", "Oakley", "Modern", "80"));
+        store.put(1, row("Blue Wood Bench", "300.50", "Bench", "Blue", "Wood", "Large", "142", "Leon's", "Gothic", "149"));
+        store.remove(0);
+        assertEquals(List.of("Blue Wood Bench", "Purple Plastic Sofa", "Red Oak Table"), names(""));
+        assertEquals(List.of("Blue Wood Bench"), names("WHERE Price IS NULL"), "Non-integer prices become NULL.");
+        store.clear();
+        assertEquals(List.of(), names(""));
+        assertFalse(database.isStale());
+    }
+
+    @Test
+    void testAdvancedSearchUsesCatalogue() {
+        store.put(4, row("Pine Wood Desk", "120", "Desk", "Brown", "Wood", "Large", "5", "Leon's", "Modern", "60"));
+        List<String> results = search("Wood", "Price", Map.of("Company", "leon's"));
+        assertEquals(2, results.size(), results.toString());
+        assertTrue(results.get(0).startsWith("4,Pine Wood Desk"), "Entries added after loading should be found.");
+        assertTrue(results.get(1).startsWith("1,Blue Wood Stool"));
+    }
+
+    private List<String> search(String query, String sortCategory, Map<String, String> filters) {
+        SearchController controller = SearchController.getInstance();
+        controller.setCatalogue(store);
+        List<String> results = new ArrayList<>();
+        SearchQuery search = new SearchQuery(query, filters, Map.of(), sortCategory, true);
+        try (SearchResults rows = controller.searchQuery(search)) {
+            rows.forEachRemaining(r -> results.add(r.toString()));
+        } finally {
+            controller.setCatalogue(null);
+        }
+        return results;
+    }
+
+    @Test
+    void testStatementsAreReused() throws SQLException {
+        SearchModel.getInstance().setUseDatabase(true);
+        try {
+            checkStatementsAreReused();
+        } finally {
+            SearchModel.getInstance().setUseDatabase(false);
+        }
+    }
+
+    private void checkStatementsAreReused() throws SQLException {
+        search("Wood", "Price", Map.of("Company", "Leon's"));
+        SearchDatabase db = SearchModel.getInstance().currentDatabase();
+        long misses = db.getStatementMisses();
+        long hits = db.getStatementHits();
+        assertTrue(search("Sofa", "Price", Map.of("Company", "leon's")).get(0).startsWith("2,Purple Plastic Sofa"));
+        assertTrue(search("Stool", "Price", Map.of("Company", "Leon's")).get(0).startsWith("1,Blue Wood Stool"));
+        assertEquals(misses, db.getStatementMisses(), "Searches of the same shape should not prepare again.");
+        assertEquals(hits + 2, db.getStatementHits());
+
+        assertThrows(IllegalArgumentException.class, () -> search("", "Price; DROP TABLE t", Map.of()),
+                "Unknown sort columns are refused.");
+        assertEquals(3, names("").size());
+    }
+
+    private String plan(String where) throws SQLException {
+        try (Statement statement = database.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN SELECT * FROM t " + where)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    @Test
+    void testFiltersUseIndexes() throws SQLException {
+        assertTrue(plan("WHERE \"COLOUR\" = 'Blue'").contains("T_COLOUR"));
+        assertTrue(plan("WHERE \"Furniture Type\" = ANY(ARRAY['Sofa', 'Stool'])").contains("T_Furniture Type"));
+        assertTrue(plan("WHERE \"PRICE\" BETWEEN 100 AND 200").contains("T_PRICE"));
+        store.put(3, row("Red Oak Table", "150", "Table", "Red", "Oak", "Large", "10", "Oakley", "Modern", "80"));
+        store.put(2, row("Purple Plastic Sofa", "600", "Sofa", "Purple", "Plastic", "Small", "72", "Leon's", "Traditional", "79"));
+        assertEquals(List.of("Red Oak Table"), names("WHERE \"PRICE\" BETWEEN 100 AND 200"),
+                "Indexes should follow changes to the catalogue.");
+    }
+}
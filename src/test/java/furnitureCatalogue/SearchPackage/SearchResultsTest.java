@@ -0,0 +1,122 @@
+/*
+ * This file contains tests for the SearchResults class.
+ * It tests that results are read lazily, a page at a time or from the result cache, keep going when
+ * the catalogue changes while they are read, and that database results can be read side by side and give their statement back when closed.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import static furnitureCatalogue.CatalogueFixtures.HEADERS;
+import static furnitureCatalogue.CatalogueFixtures.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchResultsTest {
+    private CatalogueStore store;
+    private SearchController controller;
+    private SearchQuery query;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        for (int id = 0; id < 10; id++) {
+            store.put(id, row("Chair " + id, String.valueOf(id * 10), "Chair", "Blue"));
+        }
+        controller = SearchController.getInstance();
+        controller.setCatalogue(store);
+        query = new SearchQuery("", Map.of(), Map.of(), "Price", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        controller.setCatalogue(null);
+        SearchModel.getInstance().setUseDatabase(false);
+    }
+
+    private static List<Integer> ids(SearchResults results) {
+        List<Integer> ids = new ArrayList<>();
+        results.forEachRemaining(r -> ids.add(r.getId()));
+        return ids;
+    }
+
+    @Test
+    void testTypedRows() {
+        try (SearchResults results = controller.searchQuery(query)) {
+            ResultRow first = results.next();
+            assertEquals(0, first.getId());
+            assertEquals("Chair 0", first.getString("name"));
+            assertEquals(Integer.valueOf(0), first.getInt("Price"));
+            assertNull(first.getInt("Colour"), "Text is not an integer.");
+            assertNull(first.getString("Style"), "Fields past the end of the row are missing.");
+            assertEquals("0", first.getString("ID"));
+        }
+    }
+
+    @Test
+    void testContinuesAfterChanges() {
+        try (SearchResults results = controller.searchQuery(query)) {
+            assertEquals(0, results.next().getId());
+            assertEquals(1, results.next().getId());
+            store.remove(5);
+            store.put(20, row("Chair 20", "15", "Chair", "Blue"));
+            store.put(21, row("Chair 21", "5", "Chair", "Blue"));
+            assertEquals(List.of(20, 2, 3, 4, 6, 7, 8, 9), ids(results),
+                    "Reading should continue after the last entry read, in the catalogue as it is now.");
+        }
+    }
+
+    @Test
+    void testReadsInPages() {
+        for (int id = 10; id < 700; id++) {
+            store.put(id, row("Chair " + id, String.valueOf(id * 37 % 500), "Chair", "Blue"));
+        }
+        SearchQuery byPrice = new SearchQuery("", Map.of(), Map.of(), "Price", false);
+        QueryEngine engine = new QueryEngine(store);
+        List<Integer> expected = new ArrayList<>();
+        for (int row : engine.search(null, Map.of(), Map.of(), "Price", false, Integer.MAX_VALUE)) {
+            expected.add(store.idAt(row));
+        }
+        assertTrue(expected.size() > 2 * SearchResults.CatalogueResults.PAGE_SIZE);
+        try (SearchResults results = controller.searchQuery(byPrice)) {
+            assertEquals(expected, ids(results), "Pages should follow on from each other.");
+        }
+        controller.searchPage(byPrice, 0, 1);
+        try (SearchResults results = controller.searchQuery(byPrice)) {
+            assertEquals(expected.get(0), results.next().getId());
+            store.remove(expected.get(1));
+            expected.remove(1);
+            assertEquals(expected.subList(1, expected.size()), ids(results),
+                    "Cached rows should continue in pages once the catalogue changes.");
+        }
+    }
+
+    @Test
+    void testStreamCloses() {
+        SearchResults results = controller.searchQuery(
+                new SearchQuery("", Map.of(), Map.of("Price", List.of("20", "60")), "Price", false));
+        try (var stream = results.stream()) {
+            assertEquals(List.of(6, 5, 4), stream.limit(3).map(ResultRow::getId).collect(Collectors.toList()));
+        }
+        assertFalse(results.hasNext(), "Closing the stream should close the results.");
+    }
+
+    @Test
+    void testDatabaseResultsSideBySide() {
+        SearchModel.getInstance().setUseDatabase(true);
+        SearchResults first = controller.searchQuery(query);
+        assertEquals(0, first.next().getId());
+        try (SearchResults second = controller.searchQuery(new SearchQuery("", Map.of(), Map.of(), "Price", false))) {
+            assertEquals(9, second.next().getId());
+        }
+        SearchResults third = controller.searchQuery(query);
+        assertEquals(1, first.next().getId(), "A search of the same shape should not close open results.");
+        assertEquals(List.of(2, 3, 4, 5, 6, 7, 8, 9), ids(first));
+        assertEquals(10, ids(third).size());
+        SearchDatabase db = SearchModel.getInstance().currentDatabase();
+        long hits = db.getStatementHits();
+        controller.searchQuery(query).close();
+        assertEquals(hits + 1, db.getStatementHits(), "Statements should go back to the cache once read.");
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file contains tests for the SearchService and SearchQuery classes.
+ * It tests that a query is not affected by later changes to the maps it was made from, and that many
+ * threads searching at once while another edits the catalogue only ever see consistent results, ending
+ * with the same results as a plain scan. It also tests that pages are cut from cached results, by cursor
+ * or offset, giving the same pages as running the search each time.
+ */
+package furnitureCatalogue.SearchPackage;
+
+import furnitureCatalogue.CatalogueStore;
+import org.junit.jupiter.api.*;
+import java.util.*;
+import java.util.concurrent.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchServiceTest {
+    private static final String[] HEADERS = {"id", "Name", "Price", "Colour", "Quantity"};
+    private static final String[] COLOURS = {"Red", "Blue", "Green"};
+    private CatalogueStore store;
+    private SearchService service;
+
+    @BeforeEach
+    void setUp() {
+        store = new CatalogueStore(HEADERS);
+        Random random = new Random(7);
+        for (int id = 0; id < 3000; id++) {
+            store.put(id, row(random));
+        }
+        service = new SearchService(store);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    private static ArrayList<String> row(Random random) {
+        return new ArrayList<>(List.of("Item " + random.nextInt(500), String.valueOf(random.nextInt(1000)),
+                COLOURS[random.nextInt(COLOURS.length)], String.valueOf(random.nextInt(50))));
+    }
+
+    @Test
+    void testQueryIsCopied() {
+        HashMap<String, String> filters = new HashMap<>(Map.of("Colour", "Blue"));
+        HashMap<String, ArrayList<String>> ranges = new HashMap<>();
+        ranges.put("Price", new ArrayList<>(List.of("10", "20")));
+        SearchQuery query = new SearchQuery("chair", filters, ranges, "Price", false);
+        filters.put("Colour", "Red");
+        ranges.get("Price").set(1, "900");
+        ranges.put("Quantity", new ArrayList<>(List.of("1", "2")));
+        assertEquals(Map.of("Colour", "Blue"), query.getFilters());
+        assertEquals(Map.of("Price", List.of("10", "20")), query.getRanges());
+        assertThrows(UnsupportedOperationException.class, () -> query.getFilters().put("Style", "Modern"));
+        assertThrows(UnsupportedOperationException.class, () -> query.getRanges().get("Price").set(0, "0"));
+        assertEquals(query, new SearchQuery("chair", Map.of("Colour", "Blue"),
+                Map.of("Price", List.of("10", "20")), "Price", false));
+    }
+
+    /**
+     * Checks a page holds every match of a blue, 100 to 600 search sorted by price, and nothing else.
+     */
+    private void assertConsistent(SearchPage page) {
+        assertEquals(page.getTotal(), page.getIds().size());
+        int last = Integer.MIN_VALUE;
+        int blue = 0;
+        for (ArrayList<String> values : page.getRows()) {
+            assertEquals("Blue", values.get(2));
+            int price = Integer.parseInt(values.get(1));
+            assertTrue(price >= 100 && price <= 600, "Price out of range: " + price);
+            assertTrue(price >= last, "Not sorted by price");
+            last = price;
+        }
+        for (int count : page.getFacets().get("Colour").values()) {
+            blue += count;
+        }
+        assertEquals(page.getTotal(), blue);
+    }
+
+    @Test
+    void testConcurrentSearchesWhileEditing() throws Exception {
+        SearchQuery query = new SearchQuery("", Map.of("Colour", "blue"), Map.of("Price", List.of("100", "600")),
+                "Price", true);
+        SearchQuery named = new SearchQuery("item 12", Map.of(), Map.of(), "id", true);
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        try {
+            Future<?> writer = pool.submit(() -> {
+                Random random = new Random(11);
+                for (int i = 0; i < 3000; i++) {
+                    int id = random.nextInt(4000);
+                    if (random.nextInt(4) == 0) {
+                        store.remove(id);
+                    } else {
+                        store.put(id, row(random));
+                    }
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                readers.add(pool.submit(() -> {
+                    do {
+                        assertConsistent(service.page(query, null, 0, Integer.MAX_VALUE));
+                        try (SearchResults results = service.query(named)) {
+                            results.forEachRemaining(r -> assertTrue(r.getString("Name").startsWith("Item")));
+                        }
+                    } while (!writer.isDone());
+                    return null;
+                }));
+            }
+            writer.get(30, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        SearchPage page = service.page(query, null, 0, Integer.MAX_VALUE);
+        assertConsistent(page);
+        SearchPage scanned = new QueryEngine(store).page(null, query.getFilters(), query.getRanges(), "Price",
+                true, null, 0, Integer.MAX_VALUE);
+        assertEquals(scanned.getIds(), page.getIds());
+    }
+
+    @Test
+    void testPagesFromCache() {
+        QueryEngine engine = new QueryEngine(store);
+        for (String sort : List.of("Price", "Name", "Colour", "id")) {
+            SearchQuery query = new SearchQuery("", Map.of(), Map.of("Quantity", List.of("10", "30")), sort, false);
+            SearchPage.Cursor after = null;
+            int offset = 0;
+            do {
+                SearchPage page = service.page(query, after, 0, 97);
+                SearchPage expected = engine.page(null, query.getFilters(), query.getRanges(), sort, false, after,
+                        0, 97);
+                assertEquals(expected.getIds(), page.getIds());
+                assertEquals(expected.getTotal(), page.getTotal());
+                assertEquals(expected.getFacets(), page.getFacets());
+                assertEquals(offset, page.getOffset());
+                assertEquals(page.getIds(), service.page(query, null, offset, 97).getIds());
+                offset += page.getIds().size();
+                after = page.getNext();
+            } while (after != null);
+            assertEquals(engine.search(null, query.getFilters(), query.getRanges(), sort, false,
+                    Integer.MAX_VALUE).length, offset);
+        }
+        assertTrue(service.getCacheStats().endsWith("4 results cached, 0 invalidations"), service.getCacheStats());
+        assertFalse(service.getCacheStats().startsWith("0.0%"), service.getCacheStats());
+
+        store.remove(0);
+        SearchQuery query = new SearchQuery("", Map.of(), Map.of("Quantity", List.of("10", "30")), "id", true);
+        assertNotEquals(0, service.page(query, null, 0, 1).getIds().get(0), "A change must not serve stale pages.");
+    }
+}